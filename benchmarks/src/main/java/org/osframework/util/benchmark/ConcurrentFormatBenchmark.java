@@ -0,0 +1,30 @@
+/*
+ * File: ConcurrentFormatBenchmark.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Throughput of date formatting and midnight truncation with one benchmark
+ * thread per available processor, exposing any contention on shared state.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@Threads(Threads.MAX)
+public class ConcurrentFormatBenchmark extends FormatBenchmark {
+}
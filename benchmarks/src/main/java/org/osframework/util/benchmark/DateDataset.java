@@ -0,0 +1,208 @@
+/*
+ * File: DateDataset.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.benchmark;
+
+import java.util.Date;
+import java.util.Random;
+
+import org.osframework.util.DateNotation;
+import org.osframework.util.DateUtil;
+
+/**
+ * Generator of realistic benchmark inputs. Dates are clustered around the
+ * present, as in transaction and event data, with a tail reaching back to
+ * 1900. Invalid inputs are near misses of the kind found in real exports:
+ * impossible days and months, wrong separators, truncated values, and
+ * placeholder text.
+ * <p>All datasets are generated from a fixed seed, so repeated runs and
+ * different releases measure identical inputs.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateDataset {
+
+	/**
+	 * Number of values in each dataset; a power of two, so that benchmarks
+	 * can cycle through values with a mask.
+	 */
+	public static final int SIZE = 4096;
+
+	private static final long SEED = 20121225L;
+
+	private static final int EPOCH_DAY_2012 = 15340;
+
+	private static final String[] PLACEHOLDERS = {
+		"", "N/A", "null", "TBD", "0000-00-00", "00/00/0000", "--"
+	};
+
+	/**
+	 * Private constructor - this class cannot be instantiated.
+	 */
+	private DateDataset() {}
+
+	/**
+	 * Generate valid date strings in the specified notation.
+	 * 
+	 * @param notation notation of generated strings
+	 * @return array of {@link #SIZE} date strings
+	 */
+	public static String[] valid(DateNotation notation) {
+		final Random random = new Random(SEED);
+		final String[] values = new String[SIZE];
+		final StringBuilder buf = new StringBuilder(10);
+		for (int i = 0; i < SIZE; i++) {
+			buf.setLength(0);
+			DateUtil.formatPackedDate(DateUtil.epochDayToPacked(epochDay(random)), notation, buf);
+			values[i] = buf.toString();
+		}
+		return values;
+	}
+
+	/**
+	 * Generate strings which resemble dates in the specified notation, but
+	 * are not dates.
+	 * 
+	 * @param notation notation of generated strings
+	 * @return array of {@link #SIZE} strings
+	 */
+	public static String[] invalid(DateNotation notation) {
+		final Random random = new Random(SEED + 1L);
+		final String[] values = new String[SIZE];
+		final StringBuilder buf = new StringBuilder(10);
+		for (int i = 0; i < SIZE; i++) {
+			buf.setLength(0);
+			final int packedDate = DateUtil.epochDayToPacked(epochDay(random));
+			switch (random.nextInt(5)) {
+			case 0:
+				// Day beyond end of month
+				DateUtil.formatPackedDate(packedDate, notation, buf);
+				replaceDay(buf, notation, DateUtil.lengthOfMonth(packedDate / 10000, (packedDate / 100) % 100) + 1);
+				break;
+			case 1:
+				// Month 13
+				DateUtil.formatPackedDate(packedDate, notation, buf);
+				replaceMonth(buf, notation, 13);
+				break;
+			case 2:
+				// Wrong separator
+				DateUtil.formatPackedDate(packedDate, DateNotation.ISO8601, buf);
+				buf.setCharAt(4, '.');
+				buf.setCharAt(7, '.');
+				break;
+			case 3:
+				// Truncated
+				DateUtil.formatPackedDate(packedDate, notation, buf);
+				buf.setLength(buf.length() - 1);
+				break;
+			default:
+				buf.append(PLACEHOLDERS[random.nextInt(PLACEHOLDERS.length)]);
+				break;
+			}
+			values[i] = buf.toString();
+		}
+		return values;
+	}
+
+	/**
+	 * Generate dates, with times of day, as instants in the default time
+	 * zone.
+	 * 
+	 * @return array of {@link #SIZE} dates
+	 */
+	public static Date[] dates() {
+		final long[] millis = millis();
+		final Date[] values = new Date[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			values[i] = new Date(millis[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * Generate milliseconds instants, with times of day.
+	 * 
+	 * @return array of {@link #SIZE} milliseconds values
+	 */
+	public static long[] millis() {
+		final Random random = new Random(SEED + 2L);
+		final long[] values = new long[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			values[i] = DateUtil.epochDayToMillis(epochDay(random)) + random.nextInt(86400000);
+		}
+		return values;
+	}
+
+	/**
+	 * Generate packed date values (<code>yyyyMMdd</code>).
+	 * 
+	 * @return array of {@link #SIZE} packed date values
+	 */
+	public static int[] packedDates() {
+		final Random random = new Random(SEED + 3L);
+		final int[] values = new int[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			values[i] = DateUtil.epochDayToPacked(epochDay(random));
+		}
+		return values;
+	}
+
+	/**
+	 * @return epoch day; 90% within ten years of 2012, the rest since 1900
+	 */
+	private static int epochDay(Random random) {
+		if (random.nextInt(10) < 9) {
+			return EPOCH_DAY_2012 + random.nextInt(3653);
+		}
+		return -25567 + random.nextInt(EPOCH_DAY_2012 + 25567);
+	}
+
+	private static void replaceDay(StringBuilder buf, DateNotation notation, int day) {
+		final int index;
+		switch (notation) {
+		case US:
+			index = 3;
+			break;
+		case BASIC:
+			index = 6;
+			break;
+		default:
+			index = 8;
+			break;
+		}
+		buf.setCharAt(index, (char)('0' + day / 10));
+		buf.setCharAt(index + 1, (char)('0' + day % 10));
+	}
+
+	private static void replaceMonth(StringBuilder buf, DateNotation notation, int month) {
+		final int index;
+		switch (notation) {
+		case US:
+			index = 0;
+			break;
+		case BASIC:
+			index = 4;
+			break;
+		default:
+			index = 5;
+			break;
+		}
+		buf.setCharAt(index, (char)('0' + month / 10));
+		buf.setCharAt(index + 1, (char)('0' + month % 10));
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * File: FormatBenchmark.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osframework.util.DateNotation;
+import org.osframework.util.DateUtil;
+
+/**
+ * Single-threaded throughput of date formatting and midnight truncation.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+@Threads(1)
+@State(Scope.Thread)
+public class FormatBenchmark {
+
+	private Date[] dates;
+	private long[] millis;
+	private long[] work;
+	private int[] packedDates;
+	private final char[] buf = new char[10];
+	private int index;
+
+	@Setup
+	public void setUp() {
+		dates = DateDataset.dates();
+		millis = DateDataset.millis();
+		work = new long[millis.length];
+		packedDates = DateDataset.packedDates();
+		index = 0;
+	}
+
+	@Benchmark
+	public String formatDateToISO8601() {
+		return DateUtil.formatDateToISO8601(nextDate());
+	}
+
+	@Benchmark
+	public String formatDateToUS() {
+		return DateUtil.formatDateToUS(nextDate());
+	}
+
+	@Benchmark
+	public String formatDateToUSReverse() {
+		return DateUtil.formatDateToUSReverse(nextDate());
+	}
+
+	@Benchmark
+	public int formatDateToInt() {
+		return DateUtil.formatDateToInt(nextDate());
+	}
+
+	@Benchmark
+	public char[] formatPackedDate() {
+		DateUtil.formatPackedDate(packedDates[index++ & (DateDataset.SIZE - 1)], DateNotation.ISO8601, buf, 0);
+		return buf;
+	}
+
+	@Benchmark
+	public Date forceMidnight() {
+		return DateUtil.forceMidnight(nextDate());
+	}
+
+	@Benchmark
+	public long forceMidnightMillis() {
+		return DateUtil.forceMidnight(millis[index++ & (DateDataset.SIZE - 1)]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DateDataset.SIZE)
+	public long[] forceMidnightArray() {
+		System.arraycopy(millis, 0, work, 0, millis.length);
+		DateUtil.forceMidnight(work);
+		return work;
+	}
+
+	private Date nextDate() {
+		return dates[index++ & (DateDataset.SIZE - 1)];
+	}
+
+}
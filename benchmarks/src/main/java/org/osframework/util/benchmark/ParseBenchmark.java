@@ -0,0 +1,102 @@
+/*
+ * File: ParseBenchmark.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osframework.util.DateNotation;
+import org.osframework.util.DateUtil;
+
+/**
+ * Single-threaded throughput of date string validation and parsing, for
+ * each supported notation, over valid and invalid inputs.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+@Threads(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+
+	@Param({ "ISO8601", "US", "US_REVERSE", "BASIC" })
+	public DateNotation notation;
+
+	@Param({ "valid", "invalid" })
+	public String dataset;
+
+	private String[] values;
+	private int index;
+
+	@Setup
+	public void setUp() {
+		values = "valid".equals(dataset)
+		         ? DateDataset.valid(notation)
+		         : DateDataset.invalid(notation);
+		index = 0;
+	}
+
+	@Benchmark
+	public boolean isDate() {
+		return DateUtil.isDate(next());
+	}
+
+	@Benchmark
+	public Date parseDate() {
+		try {
+			return DateUtil.parseDate(next());
+		} catch (IllegalArgumentException iae) {
+			return null;
+		}
+	}
+
+	@Benchmark
+	public int parseToInt() {
+		try {
+			return DateUtil.parseToInt(next());
+		} catch (IllegalArgumentException iae) {
+			return DateUtil.INVALID_DATE;
+		}
+	}
+
+	@Benchmark
+	public int tryParseToInt() {
+		return DateUtil.tryParseToInt(next());
+	}
+
+	private String next() {
+		return values[index++ & (DateDataset.SIZE - 1)];
+	}
+
+}
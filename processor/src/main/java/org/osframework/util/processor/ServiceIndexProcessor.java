@@ -0,0 +1,394 @@
+/*
+ * File: ServiceIndexProcessor.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.osframework.util.ServiceIndex;
+import org.osframework.util.ServiceProvider;
+
+/**
+ * Annotation processor which writes the providers declared by
+ * {@link ServiceProvider} annotations to the standard
+ * <code>META-INF/services</code> provider-configuration files, merged with
+ * any such file already in the class output, and to a precompiled
+ * {@linkplain ServiceIndex service index}.
+ * <p>The processor is shipped apart from the Common Utilities runtime, so
+ * that it only runs in compilations which ask for it. A library declaring
+ * providers puts it on the processor path:</p>
+ * <pre>
+ * javac -processorpath common-utils-processor.jar:common-utils.jar ...
+ * </pre>
+ * <p>By default the index is partial, covering the providers of the
+ * compiled artifact only. When the option {@value #COMPLETE_OPTION} is
+ * <code>true</code>, the processor also merges the indexes, and the
+ * provider-configuration files of every indexed service type, found on the
+ * processor class path, and marks the index complete, so that
+ * <code>ServiceClassLoader</code> reads it in place of scanning the class
+ * path for each service type it lists. Service types declared only in
+ * plain provider-configuration files are not listed, and are still
+ * scanned. Each service type lists its providers in class path order, as
+ * a scan would find them. A complete index should only be built by the
+ * final application, with the same providers on its processor class path as
+ * at run time. The processor reports an error, and writes no index, if an
+ * index or a provider-configuration file on the compile class path is not
+ * on its processor class path:</p>
+ * <pre>
+ * javac -processorpath common-utils-processor.jar:&lt;runtime class path&gt; \
+ *       -Aorg.osframework.util.serviceIndex.complete=true ...
+ * </pre>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class ServiceIndexProcessor extends AbstractProcessor {
+
+	/**
+	 * Option which, when <code>true</code>, makes the written index
+	 * complete.
+	 */
+	public static final String COMPLETE_OPTION = "org.osframework.util.serviceIndex.complete";
+
+	private static final String PREFIX = "META-INF/services/";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Map<String, Set<String>> providers = new LinkedHashMap<String, Set<String>>();
+	private final ClassLoader loader;
+
+	/**
+	 * Create a processor which merges the providers visible to its own class
+	 * loader into a complete index.
+	 */
+	public ServiceIndexProcessor() {
+		this(ServiceIndexProcessor.class.getClassLoader());
+	}
+
+	/**
+	 * Create a processor which merges the providers visible to the specified
+	 * class loader into a complete index.
+	 */
+	ServiceIndexProcessor(final ClassLoader loader) {
+		this.loader = loader;
+	}
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		// Run on every compilation, so that a complete index is written
+		// even when the application declares no providers itself
+		return Collections.singleton("*");
+	}
+
+	@Override
+	public Set<String> getSupportedOptions() {
+		return Collections.singleton(COMPLETE_OPTION);
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (!roundEnv.processingOver()) {
+			collect(roundEnv);
+		} else if (!roundEnv.errorRaised()) {
+			try {
+				write();
+			} catch (IOException ioe) {
+				error("Unable to write service index: " + ioe, null);
+			}
+		}
+		return false;
+	}
+
+	private void collect(final RoundEnvironment roundEnv) {
+		final Elements elements = processingEnv.getElementUtils();
+		final Types types = processingEnv.getTypeUtils();
+		final TypeElement annotationType = elements.getTypeElement(ServiceProvider.class.getName());
+		if (null == annotationType) return;
+		for (Element e : roundEnv.getElementsAnnotatedWith(annotationType)) {
+			if (ElementKind.CLASS != e.getKind()) {
+				error("@ServiceProvider may only annotate a class", e);
+				continue;
+			}
+			final TypeElement provider = (TypeElement)e;
+			if (provider.getModifiers().contains(Modifier.ABSTRACT)) {
+				error("Provider class cannot be abstract: " + provider.getQualifiedName(), e);
+				continue;
+			}
+			if (NestingKind.MEMBER == provider.getNestingKind() && !provider.getModifiers().contains(Modifier.STATIC)) {
+				error("Provider class cannot be an inner class: " + provider.getQualifiedName(), e);
+				continue;
+			}
+			final String providerName = elements.getBinaryName(provider).toString();
+			for (TypeMirror service : serviceTypes(provider, annotationType)) {
+				if (!types.isAssignable(types.erasure(provider.asType()), types.erasure(service))) {
+					error("Provider " + providerName + " not a subtype of " + service, e);
+					continue;
+				}
+				add(providers, elements.getBinaryName((TypeElement)types.asElement(service)).toString(), providerName);
+			}
+		}
+	}
+
+	private void write() throws IOException {
+		final boolean complete = Boolean.parseBoolean(processingEnv.getOptions().get(COMPLETE_OPTION));
+		if (providers.isEmpty() && !complete) return;
+		final Filer filer = processingEnv.getFiler();
+
+		for (Map.Entry<String, Set<String>> entry : providers.entrySet()) {
+			final String resource = PREFIX + entry.getKey();
+			final Set<String> names = new LinkedHashSet<String>();
+			try {
+				final FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", resource);
+				final InputStream in = existing.openInputStream();
+				try {
+					readConfiguration(in, names);
+				} finally {
+					in.close();
+				}
+			} catch (IOException ioe) {
+				// No existing provider-configuration file
+			}
+			names.addAll(entry.getValue());
+			final Writer out = new OutputStreamWriter(
+				filer.createResource(StandardLocation.CLASS_OUTPUT, "", resource).openOutputStream(), UTF_8);
+			try {
+				for (String name : names) {
+					out.write(name);
+					out.write('\n');
+				}
+			} finally {
+				out.close();
+			}
+		}
+
+		final Map<String, Set<String>> indexed = new LinkedHashMap<String, Set<String>>(providers);
+		if (complete) {
+			if (!seesClassPath(indexed.keySet())) return;
+			mergeClassPath(indexed);
+		}
+		final Map<String, List<String>> lists = new LinkedHashMap<String, List<String>>();
+		for (Map.Entry<String, Set<String>> entry : indexed.entrySet()) {
+			lists.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+		}
+		final OutputStream out = filer.createResource(StandardLocation.CLASS_OUTPUT, "", ServiceIndex.RESOURCE)
+		                              .openOutputStream();
+		try {
+			new ServiceIndex(lists, complete).write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Merge the providers found on the processor class path, in the order in
+	 * which <code>ServiceClassLoader</code> would scan them. The class path is
+	 * walked one entry at a time, in the order of the provider-configuration
+	 * files of each service type: an entry which has an index contributes
+	 * the providers its index lists, and any other entry those of its
+	 * configuration file. An indexed entry without a configuration file for
+	 * a service type it lists, which this processor never writes, follows
+	 * every other entry.
+	 */
+	private void mergeClassPath(final Map<String, Set<String>> indexed) throws IOException {
+		final Map<String, ServiceIndex> indexes = new LinkedHashMap<String, ServiceIndex>();
+		final Enumeration<URL> indexUrls = loader.getResources(ServiceIndex.RESOURCE);
+		while (indexUrls.hasMoreElements()) {
+			final URL url = indexUrls.nextElement();
+			final InputStream in = url.openStream();
+			try {
+				final ServiceIndex index = ServiceIndex.read(in);
+				indexes.put(root(url, ServiceIndex.RESOURCE), index);
+				for (String service : index.getProviders().keySet()) {
+					if (!indexed.containsKey(service)) {
+						indexed.put(service, new LinkedHashSet<String>());
+					}
+				}
+			} finally {
+				in.close();
+			}
+		}
+		for (Map.Entry<String, Set<String>> entry : indexed.entrySet()) {
+			final String service = entry.getKey();
+			final String resource = PREFIX + service;
+			final Set<String> roots = new HashSet<String>();
+			final Enumeration<URL> configs = loader.getResources(resource);
+			while (configs.hasMoreElements()) {
+				final URL url = configs.nextElement();
+				final String root = root(url, resource);
+				roots.add(root);
+				final ServiceIndex index = indexes.get(root);
+				if (null != index) {
+					entry.getValue().addAll(index.getProviders(service));
+				} else {
+					final InputStream in = url.openStream();
+					try {
+						readConfiguration(in, entry.getValue());
+					} finally {
+						in.close();
+					}
+				}
+			}
+			for (Map.Entry<String, ServiceIndex> index : indexes.entrySet()) {
+				if (!roots.contains(index.getKey())) {
+					entry.getValue().addAll(index.getValue().getProviders(service));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determine if the processor class path holds the index and the
+	 * provider-configuration files which are on the compile class path. A
+	 * processor on a separate processor path, which does not repeat the
+	 * compile class path, would otherwise write a complete index hiding the
+	 * providers of every dependency.
+	 * 
+	 * @return <code>true</code> if so, otherwise <code>false</code> after
+	 *         reporting an error
+	 */
+	private boolean seesClassPath(final Set<String> services) {
+		final List<String> resources = new ArrayList<String>();
+		resources.add(ServiceIndex.RESOURCE);
+		for (String service : services) {
+			resources.add(PREFIX + service);
+		}
+		for (String resource : resources) {
+			if (onCompileClassPath(resource) && null == loader.getResource(resource)) {
+				error("Complete service index requires the compile class path on the processor class path: " +
+				      resource + " is on the compile class path only", null);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean onCompileClassPath(final String resource) {
+		try {
+			processingEnv.getFiler().getResource(StandardLocation.CLASS_PATH, "", resource)
+			             .openInputStream().close();
+			return true;
+		} catch (IOException ioe) {
+			return false;
+		} catch (IllegalArgumentException iae) {
+			// Class path is not a location this compiler supports
+			return false;
+		}
+	}
+
+	private void error(final String msg, final Element e) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, e);
+	}
+
+	private static List<TypeMirror> serviceTypes(final TypeElement provider, final TypeElement annotationType) {
+		final List<TypeMirror> services = new ArrayList<TypeMirror>();
+		for (AnnotationMirror mirror : provider.getAnnotationMirrors()) {
+			if (!annotationType.equals(mirror.getAnnotationType().asElement())) continue;
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+				if (!"value".contentEquals(entry.getKey().getSimpleName())) continue;
+				final Object value = entry.getValue().getValue();
+				if (value instanceof List) {
+					for (Object v : (List<?>)value) {
+						services.add((TypeMirror)((AnnotationValue)v).getValue());
+					}
+				} else {
+					services.add((TypeMirror)value);
+				}
+			}
+		}
+		return services;
+	}
+
+	/**
+	 * Get the class path entry of a resource, as the URL of the resource less
+	 * its name.
+	 */
+	private static String root(final URL url, final String resource) {
+		final String s = url.toString();
+		return s.endsWith(resource) ? s.substring(0, s.length() - resource.length()) : s;
+	}
+
+	private static void add(final Map<String, Set<String>> map, final String service, final String provider) {
+		Set<String> names = map.get(service);
+		if (null == names) {
+			names = new LinkedHashSet<String>();
+			map.put(service, names);
+		}
+		names.add(provider);
+	}
+
+	/**
+	 * Read the provider class names of a provider-configuration file. Syntax
+	 * is not validated here; <code>ServiceClassLoader</code> validates
+	 * names when the configuration file is scanned.
+	 */
+	private static void readConfiguration(final InputStream in, final Set<String> names) throws IOException {
+		final Reader reader = new InputStreamReader(in, UTF_8);
+		final BufferedReader lines = new BufferedReader(reader);
+		String line;
+		while (null != (line = lines.readLine())) {
+			final int commentIdx = line.indexOf('#');
+			if (0 <= commentIdx) {
+				line = line.substring(0, commentIdx);
+			}
+			line = line.trim();
+			if (0 != line.length()) {
+				names.add(line);
+			}
+		}
+	}
+
+}
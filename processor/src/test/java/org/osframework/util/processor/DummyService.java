@@ -0,0 +1,7 @@
+package org.osframework.util.processor;
+
+public interface DummyService {
+
+	String echoClassName();
+
+}
@@ -0,0 +1,298 @@
+/*
+ * File: ServiceIndexProcessorTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.processor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.osframework.util.ServiceIndex;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>ServiceIndexProcessor</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class ServiceIndexProcessorTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private File output;
+
+	@BeforeMethod
+	public void createOutput() throws IOException {
+		output = File.createTempFile("classes", "");
+		output.delete();
+		output.mkdirs();
+	}
+
+	@AfterMethod
+	public void deleteOutput() {
+		delete(output);
+	}
+
+	@Test
+	public void testPartialIndex() throws IOException {
+		// Existing configuration file entries are kept, and come first
+		write("META-INF/services/org.osframework.util.processor.DummyService",
+		      "# Hand-written\norg.osframework.util.processor.impl.DummyServiceDefaultImpl\n");
+		assertTrue(compile(false,
+			source("p.Plugin",
+			       "package p;\n" +
+			       "@org.osframework.util.ServiceProvider({org.osframework.util.processor.DummyService.class, Runnable.class})\n" +
+			       "public class Plugin implements org.osframework.util.processor.DummyService, Runnable {\n" +
+			       "  public String echoClassName() { return null; }\n" +
+			       "  public void run() {}\n" +
+			       "  @org.osframework.util.ServiceProvider(Runnable.class)\n" +
+			       "  public static class Nested implements Runnable { public void run() {} }\n" +
+			       "}\n")));
+		assertEquals(read("META-INF/services/org.osframework.util.processor.DummyService"),
+		             "org.osframework.util.processor.impl.DummyServiceDefaultImpl\np.Plugin\n");
+		assertEquals(read("META-INF/services/java.lang.Runnable"), "p.Plugin\np.Plugin$Nested\n");
+
+		final ServiceIndex index = readIndex();
+		assertFalse(index.isComplete());
+		assertEquals(index.getProviders(DummyService.class.getName()), Collections.singletonList("p.Plugin"));
+		assertEquals(index.getProviders(Runnable.class.getName()), Arrays.asList("p.Plugin", "p.Plugin$Nested"));
+	}
+
+	@Test
+	public void testCompleteIndex() throws IOException {
+		// Providers on the processor class path follow those compiled
+		assertTrue(compile(true,
+			source("p.Plugin",
+			       "package p;\n" +
+			       "@org.osframework.util.ServiceProvider(org.osframework.util.processor.DummyService.class)\n" +
+			       "public class Plugin implements org.osframework.util.processor.DummyService {\n" +
+			       "  public String echoClassName() { return null; }\n" +
+			       "}\n")));
+		final ServiceIndex index = readIndex();
+		assertTrue(index.isComplete());
+		assertEquals(index.getProviders(DummyService.class.getName()),
+		             Arrays.asList("p.Plugin", "org.osframework.util.processor.impl.DummyServiceDefaultImpl"));
+	}
+
+	@Test
+	public void testCompleteIndexClassPathOrder() throws IOException {
+		// Entry without an index, then an entry with one: a scan finds a.A1
+		// before b.B1, and so must the index
+		final File a = entry(null, "a.A1");
+		final Map<String, List<String>> bProviders = new LinkedHashMap<String, List<String>>();
+		bProviders.put(DummyService.class.getName(), Collections.singletonList("b.B1"));
+		bProviders.put(Runnable.class.getName(), Collections.singletonList("b.R"));
+		final File b = entry(new ServiceIndex(bProviders, false), "b.B1");
+		final File c = entry(null, "c.C1");
+		final ClassLoader loader = new URLClassLoader(new URL[] { a.toURI().toURL(), b.toURI().toURL(),
+		                                                          c.toURI().toURL() }, null);
+		try {
+			assertTrue(compile(true, loader,
+				source("p.Plugin",
+				       "package p;\n" +
+				       "@org.osframework.util.ServiceProvider(org.osframework.util.processor.DummyService.class)\n" +
+				       "public class Plugin implements org.osframework.util.processor.DummyService {\n" +
+				       "  public String echoClassName() { return null; }\n" +
+				       "}\n")));
+			final ServiceIndex index = readIndex();
+			assertTrue(index.isComplete());
+			assertEquals(index.getProviders(DummyService.class.getName()),
+			             Arrays.asList("p.Plugin", "a.A1", "b.B1", "c.C1"));
+			assertEquals(index.getProviders(Runnable.class.getName()), Collections.singletonList("b.R"));
+		} finally {
+			delete(a);
+			delete(b);
+			delete(c);
+		}
+	}
+
+	@Test
+	public void testCompleteIndexWithoutCompileClassPath() {
+		// Processor path which does not repeat the compile class path
+		final ClassLoader loader = new URLClassLoader(new URL[0], null);
+		assertFalse(compile(true, loader,
+			source("p.Plugin",
+			       "package p;\n" +
+			       "@org.osframework.util.ServiceProvider(org.osframework.util.processor.DummyService.class)\n" +
+			       "public class Plugin implements org.osframework.util.processor.DummyService {\n" +
+			       "  public String echoClassName() { return null; }\n" +
+			       "}\n")));
+		assertFalse(new File(output, ServiceIndex.RESOURCE).exists());
+	}
+
+	@Test
+	public void testCompleteIndexWithoutProviders() throws IOException {
+		assertTrue(compile(true, source("p.Other", "package p;\npublic class Other {}\n")));
+		final ServiceIndex index = readIndex();
+		assertTrue(index.isComplete());
+		assertTrue(index.getProviders().isEmpty());
+	}
+
+	@Test
+	public void testAbstractProvider() {
+		assertFalse(compile(false,
+			source("p.Plugin",
+			       "package p;\n" +
+			       "@org.osframework.util.ServiceProvider(Runnable.class)\n" +
+			       "public abstract class Plugin implements Runnable {}\n")));
+	}
+
+	@Test
+	public void testNotSubtype() {
+		assertFalse(compile(false,
+			source("p.Plugin",
+			       "package p;\n" +
+			       "@org.osframework.util.ServiceProvider(org.osframework.util.processor.DummyService.class)\n" +
+			       "public class Plugin {}\n")));
+		assertFalse(new File(output, ServiceIndex.RESOURCE).exists());
+	}
+
+	@Test
+	public void testNoProviders() {
+		assertTrue(compile(false, source("p.Other", "package p;\npublic class Other {}\n")));
+		assertFalse(new File(output, ServiceIndex.RESOURCE).exists());
+	}
+
+	private boolean compile(boolean complete, JavaFileObject... sources) {
+		return compile(complete, ServiceIndexProcessor.class.getClassLoader(), sources);
+	}
+
+	private boolean compile(boolean complete, ClassLoader loader, JavaFileObject... sources) {
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		final StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, UTF_8);
+		try {
+			files.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(output));
+			final List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+			                                           "-A" + ServiceIndexProcessor.COMPLETE_OPTION + "=" + complete);
+			final JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, options,
+			                                                           null, Arrays.asList(sources));
+			task.setProcessors(Collections.singleton(new ServiceIndexProcessor(loader)));
+			return task.call();
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+	}
+
+	private static JavaFileObject source(final String className, final String code) {
+		return new SimpleJavaFileObject(new File(className.replace('.', '/') + ".java").toURI(),
+		                                JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return code;
+			}
+		};
+	}
+
+	private void write(String resource, String content) throws IOException {
+		final File file = new File(output, resource);
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes(UTF_8));
+		} finally {
+			out.close();
+		}
+	}
+
+	private String read(String resource) throws IOException {
+		final InputStream in = new FileInputStream(new File(output, resource));
+		try {
+			final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			final byte[] bytes = new byte[4096];
+			int n;
+			while (0 <= (n = in.read(bytes))) {
+				buf.write(bytes, 0, n);
+			}
+			return new String(buf.toByteArray(), UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Create a class path entry declaring a provider of
+	 * <code>DummyService</code>, with an optional index.
+	 */
+	private static File entry(ServiceIndex index, String provider) throws IOException {
+		final File dir = File.createTempFile("entry", "");
+		dir.delete();
+		final File config = new File(dir, "META-INF/services/" + DummyService.class.getName());
+		config.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(config);
+		try {
+			out.write((provider + "\n").getBytes(UTF_8));
+		} finally {
+			out.close();
+		}
+		if (null != index) {
+			out = new FileOutputStream(new File(dir, ServiceIndex.RESOURCE));
+			try {
+				index.write(out);
+			} finally {
+				out.close();
+			}
+		}
+		return dir;
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (null != children) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private ServiceIndex readIndex() throws IOException {
+		final InputStream in = new FileInputStream(new File(output, ServiceIndex.RESOURCE));
+		try {
+			return ServiceIndex.read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+}
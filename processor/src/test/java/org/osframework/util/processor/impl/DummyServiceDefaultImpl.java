@@ -0,0 +1,17 @@
+package org.osframework.util.processor.impl;
+
+import org.osframework.util.processor.DummyService;
+
+public class DummyServiceDefaultImpl implements DummyService {
+
+	private final transient String myClassName;
+
+	public DummyServiceDefaultImpl() {
+		this.myClassName = this.getClass().getName();
+	}
+
+	public String echoClassName() {
+		return myClassName;
+	}
+
+}
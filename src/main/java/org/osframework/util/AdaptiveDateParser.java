@@ -0,0 +1,289 @@
+/*
+ * File: AdaptiveDateParser.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Stateful date parser which adapts to the dominant notation of a column of
+ * date strings. The parser examines the first values it parses with full
+ * format detection, counting the notation of each date. Once a sample of
+ * dates has been seen, the parser <em>locks</em> onto the most frequent
+ * notation and thereafter checks each value against that notation alone.
+ * A value which does not fit the locked notation is a <em>miss</em>, and is
+ * parsed again with full format detection, so the result of every parse is
+ * identical to that of <code>DateUtil.tryParse</code>. If a whole sample's
+ * worth of consecutive values miss, the parser unlocks and learns the
+ * notation again.
+ * <p>Values are parsed according to the rules of
+ * {@link DateUtil#parseDate(String)}. An instance is intended to serve a
+ * single column, and is not safe for use by multiple concurrent threads.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class AdaptiveDateParser {
+
+	/**
+	 * Default number of dates sampled before locking onto a notation.
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 32;
+
+	private final int sampleSize;
+	private final int[] sampleCounts = new int[DateUtil.NOTATIONS.length];
+	private int sampled = 0;
+	private int lockedFormat = DateUtil.DATE_ANY;
+	private int consecutiveMisses = 0;
+	private long parseCount = 0L;
+	private long missCount = 0L;
+	private long invalidCount = 0L;
+
+	/**
+	 * Create a parser which locks onto a notation after
+	 * {@link #DEFAULT_SAMPLE_SIZE} dates.
+	 */
+	public AdaptiveDateParser() {
+		this(DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 * Create a parser which locks onto a notation after the specified number
+	 * of dates.
+	 * 
+	 * @param sampleSize number of dates to sample
+	 * @throws IllegalArgumentException if sample size is less than 1
+	 */
+	public AdaptiveDateParser(final int sampleSize) {
+		Validate.isTrue((0 < sampleSize), "Sample size must be positive: ", sampleSize);
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * Parse the date represented by the specified character sequence.
+	 * 
+	 * @param s character sequence to be parsed; may be <code>null</code>
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 * @see DateUtil#tryParse(CharSequence, ParsedDate)
+	 */
+	public boolean parse(CharSequence s, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		return result.set((null == s) ? invalid() : scan(s, 0, s.length()));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character
+	 * sequence.
+	 * 
+	 * @param s character sequence containing date; may be <code>null</code>
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 * @throws IndexOutOfBoundsException if range is outside sequence bounds
+	 * @see DateUtil#tryParse(CharSequence, int, int, ParsedDate)
+	 */
+	public boolean parse(CharSequence s, int offset, int length, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		if (null == s) return result.set(invalid());
+		DateUtil.checkRange(s.length(), offset, length);
+		return result.set(scan(s, offset, offset + length));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * array.
+	 * 
+	 * @param bytes byte array containing date; may be <code>null</code>
+	 * @param offset index of first byte of range
+	 * @param length number of bytes in range
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 * @see DateUtil#tryParse(byte[], int, int, ParsedDate)
+	 */
+	public boolean parse(byte[] bytes, int offset, int length, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		if (null == bytes) return result.set(invalid());
+		DateUtil.checkRange(bytes.length, offset, length);
+		return result.set(scan(bytes, offset, offset + length));
+	}
+
+	/**
+	 * Parse the date represented by the specified character sequence to a
+	 * packed date value.
+	 * 
+	 * @param s character sequence to be parsed; may be <code>null</code>
+	 * @return packed date value (<code>yyyyMMdd</code>), or
+	 *         {@link DateUtil#INVALID_DATE} if sequence is not a date or
+	 *         represents a year after 9999
+	 * @see DateUtil#tryParseToInt(CharSequence)
+	 */
+	public int parseToInt(CharSequence s) {
+		final long packed = (null == s) ? invalid() : scan(s, 0, s.length());
+		return isPrimitive(packed) ? DateUtil.toPacked(packed) : DateUtil.INVALID_DATE;
+	}
+
+	/**
+	 * Parse the date represented by the specified character sequence to an
+	 * epoch day value.
+	 * 
+	 * @param s character sequence to be parsed; may be <code>null</code>
+	 * @return number of days since 1970-01-01, or
+	 *         {@link DateUtil#INVALID_DATE} if sequence is not a date or
+	 *         represents a year after 9999
+	 * @see DateUtil#tryParseToEpochDay(CharSequence)
+	 */
+	public int parseToEpochDay(CharSequence s) {
+		final long packed = (null == s) ? invalid() : scan(s, 0, s.length());
+		return isPrimitive(packed) ? DateUtil.toEpochDay(packed) : DateUtil.INVALID_DATE;
+	}
+
+	/**
+	 * Get the notation onto which this parser is locked.
+	 * 
+	 * @return locked notation, or <code>null</code> if parser is still
+	 *         sampling
+	 */
+	public DateNotation getLockedNotation() {
+		return (DateUtil.DATE_ANY == lockedFormat) ? null : DateUtil.NOTATIONS[lockedFormat];
+	}
+
+	/**
+	 * @return number of values parsed, including <code>null</code> values
+	 */
+	public long getParseCount() {
+		return parseCount;
+	}
+
+	/**
+	 * @return number of values which did not fit the locked notation, and so
+	 *         required full format detection
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return number of values which were not dates
+	 */
+	public long getInvalidCount() {
+		return invalidCount;
+	}
+
+	/**
+	 * Discard the learned notation and all counters, returning this parser to
+	 * its initial state.
+	 */
+	public void reset() {
+		unlock();
+		parseCount = missCount = invalidCount = 0L;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.AdaptiveDateParser[")
+		                              .append("locked=").append(getLockedNotation())
+		                              .append(",parsed=").append(parseCount)
+		                              .append(",missed=").append(missCount)
+		                              .append(",invalid=").append(invalidCount)
+		                              .append("]");
+		return buf.toString();
+	}
+
+	private long scan(Object src, int from, int to) {
+		final DateMetrics metrics = DateMetrics.active();
+		if (null == metrics) return adaptiveScan(src, from, to);
+		// A retry after a miss is part of the same parse
+		final long start = metrics.begin(DateMetrics.PARSE);
+		final long packed = adaptiveScan(src, from, to);
+		metrics.endScan(DateMetrics.PARSE, start, packed);
+		return packed;
+	}
+
+	private long adaptiveScan(Object src, int from, int to) {
+		parseCount++;
+		long packed;
+		if (DateUtil.DATE_ANY == lockedFormat) {
+			packed = DateUtil.trimAndScan(src, from, to, DateUtil.DATE_ANY, true);
+			if (DateUtil.SCAN_FAILED != packed) {
+				learn(DateUtil.scannedFormat(packed));
+			}
+		} else {
+			packed = DateUtil.trimAndScan(src, from, to, lockedFormat, true);
+			if (DateUtil.SCAN_FAILED != packed) {
+				consecutiveMisses = 0;
+			} else {
+				missCount++;
+				if (++consecutiveMisses >= sampleSize) {
+					unlock();
+				}
+				packed = DateUtil.trimAndScan(src, from, to, DateUtil.DATE_ANY, true);
+			}
+		}
+		if (DateUtil.SCAN_FAILED == packed) {
+			invalidCount++;
+		}
+		return packed;
+	}
+
+	private long invalid() {
+		parseCount++;
+		invalidCount++;
+		if (DateUtil.DATE_ANY != lockedFormat) {
+			missCount++;
+			if (++consecutiveMisses >= sampleSize) {
+				unlock();
+			}
+		}
+		return DateUtil.SCAN_FAILED;
+	}
+
+	private void learn(int format) {
+		sampleCounts[format]++;
+		if (++sampled >= sampleSize) {
+			int dominant = 0;
+			for (int i = 1; i < sampleCounts.length; i++) {
+				if (sampleCounts[i] > sampleCounts[dominant]) {
+					dominant = i;
+				}
+			}
+			lockedFormat = dominant;
+			consecutiveMisses = 0;
+		}
+	}
+
+	private void unlock() {
+		lockedFormat = DateUtil.DATE_ANY;
+		consecutiveMisses = 0;
+		sampled = 0;
+		for (int i = 0; i < sampleCounts.length; i++) {
+			sampleCounts[i] = 0;
+		}
+	}
+
+	private static boolean isPrimitive(long packed) {
+		return (DateUtil.SCAN_FAILED != packed) && (DateUtil.scannedYear(packed) <= DateUtil.MAX_YEAR_PACKED);
+	}
+
+}
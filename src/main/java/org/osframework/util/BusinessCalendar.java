@@ -0,0 +1,438 @@
+/*
+ * File: BusinessCalendar.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.BitSet;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Calendar of working days over a fixed range of dates. A day is a working
+ * day unless it falls on a weekend day of week or is a holiday.
+ * <p>Working days are stored as a bitset over the epoch days of the range,
+ * together with the number of working days preceding each 64-day word of
+ * the bitset and the word holding every 64th working day. Testing a day,
+ * counting the working days between two dates, and moving a number of
+ * working days forward or backward therefore take a constant number of
+ * steps however far apart the dates are, and create no objects.</p>
+ * <p>Dates are packed date values (<code>yyyyMMdd</code>) as defined by
+ * {@link DateUtil}. A date outside the range of the calendar is rejected,
+ * as is an operation whose result would fall outside it.</p>
+ * <p>Holiday files are plain text with one holiday per line. A line holds a
+ * date in any notation accepted by {@link DateUtil#parseToInt(String)},
+ * optionally followed by whitespace and a description. Blank lines and
+ * lines beginning with <code>#</code> are ignored:</p>
+ * <pre>
+ * # New York Stock Exchange 2012
+ * 2012-01-02 New Year's Day (observed)
+ * 2012-12-25 Christmas Day
+ * </pre>
+ * <p>Instances are immutable and are safe for use by multiple concurrent
+ * threads.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class BusinessCalendar {
+
+	/**
+	 * Default first date of a calendar range (1900-01-01).
+	 */
+	public static final int DEFAULT_FIRST_DATE = 19000101;
+
+	/**
+	 * Default last date of a calendar range (2099-12-31).
+	 */
+	public static final int DEFAULT_LAST_DATE = 20991231;
+
+	private static final String RANGE_ERROR = "Date outside calendar range: ";
+	private static final String RESULT_ERROR = "Result outside calendar range: ";
+
+	private final int firstDay;
+	private final int lastDay;
+	private final int weekendMask;
+	private final int holidayCount;
+
+	/**
+	 * Working day bits; bit <code>i</code> represents epoch day
+	 * <code>firstDay + i</code>. The final word is always zero, so that the
+	 * day after the last day of the range may be addressed.
+	 */
+	private final long[] bits;
+
+	/**
+	 * Number of working days preceding each word of the bitset.
+	 */
+	private final int[] rank;
+
+	/**
+	 * Index of the word holding working day <code>64 * i</code>.
+	 */
+	private final int[] sample;
+
+	private BusinessCalendar(final Builder builder) {
+		this.firstDay = DateUtil.packedToEpochDay(builder.firstDate);
+		this.lastDay = DateUtil.packedToEpochDay(builder.lastDate);
+		this.weekendMask = builder.weekendMask;
+		final int size = lastDay - firstDay + 1;
+		this.bits = new long[(size >>> 6) + 1];
+		int holidays = 0;
+		for (int i = 0; i < size; i++) {
+			final int dayOfWeek = DateUtil.epochDayOfWeek(firstDay + i);
+			if (0 != (weekendMask & (1 << dayOfWeek))) continue;
+			if (builder.holidays.get(firstDay - DateUtil.MIN_EPOCH_DAY + i)) {
+				holidays++;
+				continue;
+			}
+			bits[i >>> 6] |= (1L << i);
+		}
+		this.holidayCount = holidays;
+		this.rank = new int[bits.length + 1];
+		for (int w = 0; w < bits.length; w++) {
+			rank[w + 1] = rank[w] + Long.bitCount(bits[w]);
+		}
+		final int total = rank[bits.length];
+		this.sample = new int[(total >>> 6) + 1];
+		for (int w = 0, k = 0; k < sample.length; k++) {
+			while (rank[w + 1] <= (k << 6) && w < bits.length - 1) w++;
+			sample[k] = w;
+		}
+	}
+
+	/**
+	 * Get the first date of the range of this calendar.
+	 * 
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 */
+	public int getFirstDate() {
+		return DateUtil.epochDayToPacked(firstDay);
+	}
+
+	/**
+	 * Get the last date of the range of this calendar.
+	 * 
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 */
+	public int getLastDate() {
+		return DateUtil.epochDayToPacked(lastDay);
+	}
+
+	/**
+	 * Determine if the specified day of week is a weekend day.
+	 * 
+	 * @param dayOfWeek ISO day of week, from 1 (Monday) to 7 (Sunday)
+	 * @return <code>true</code> if day of week is a weekend day,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isWeekend(int dayOfWeek) {
+		return (1 <= dayOfWeek && dayOfWeek <= 7) && (0 != (weekendMask & (1 << dayOfWeek)));
+	}
+
+	/**
+	 * Determine if the specified date is a holiday. A holiday which falls on
+	 * a weekend day is not counted as a holiday.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return <code>true</code> if date is a holiday, <code>false</code>
+	 *         otherwise
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 *         or is outside the range of this calendar
+	 */
+	public boolean isHoliday(int packedDate) {
+		final int index = index(packedDate);
+		return !isWorking(index) && !isWeekend(DateUtil.epochDayOfWeek(firstDay + index));
+	}
+
+	/**
+	 * Get the number of holidays within the range of this calendar, not
+	 * counting holidays which fall on a weekend day.
+	 * 
+	 * @return number of holidays
+	 */
+	public int getHolidayCount() {
+		return holidayCount;
+	}
+
+	/**
+	 * Determine if the specified date is a working day.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return <code>true</code> if date is neither a weekend day nor a
+	 *         holiday, <code>false</code> otherwise
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 *         or is outside the range of this calendar
+	 */
+	public boolean isWorkingDay(int packedDate) {
+		return isWorking(index(packedDate));
+	}
+
+	/**
+	 * Get the first working day after the specified date.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return packed date of next working day
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 *         or is outside the range of this calendar, or there is no later
+	 *         working day within the range
+	 */
+	public int nextWorkingDay(int packedDate) {
+		return addWorkingDays(packedDate, 1);
+	}
+
+	/**
+	 * Get the last working day before the specified date.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return packed date of previous working day
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 *         or is outside the range of this calendar, or there is no
+	 *         earlier working day within the range
+	 */
+	public int previousWorkingDay(int packedDate) {
+		return addWorkingDays(packedDate, -1);
+	}
+
+	/**
+	 * Add a number of working days to the specified date. A positive number
+	 * <code>n</code> produces the <code>n</code>th working day after the
+	 * date, and a negative number the <code>-n</code>th working day before
+	 * it; the date itself is not counted in either direction. Adding zero
+	 * days produces the date unchanged, whether or not it is a working day.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @param days number of working days to add; may be negative
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 *         or is outside the range of this calendar, or result is outside
+	 *         the range
+	 */
+	public int addWorkingDays(int packedDate, int days) {
+		final int index = index(packedDate);
+		if (0 == days) return packedDate;
+		// Ordinal of the result among all working days of the range
+		final long ordinal = (days > 0)
+		                     ? (long)countBefore(index + 1) + days - 1
+		                     : (long)countBefore(index) + days;
+		if (ordinal < 0 || ordinal >= rank[bits.length]) {
+			throw new IllegalArgumentException(RESULT_ERROR + packedDate + " + " + days + " working days");
+		}
+		return DateUtil.epochDayToPacked(firstDay + select((int)ordinal));
+	}
+
+	/**
+	 * Count the working days between two dates. For <code>from &lt;=
+	 * to</code>, the result is the number of working days after
+	 * <code>from</code> up to and including <code>to</code>; otherwise it is
+	 * the negated number of working days from <code>to</code> up to but not
+	 * including <code>from</code>. The count is therefore the number of
+	 * working days which, added to <code>from</code>, produces
+	 * <code>to</code> whenever <code>to</code> is a working day.
+	 * 
+	 * @param fromPackedDate packed date value (<code>yyyyMMdd</code>)
+	 * @param toPackedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return signed number of working days
+	 * @throws IllegalArgumentException if either argument is not a valid
+	 *         packed date or is outside the range of this calendar
+	 * @see #addWorkingDays(int, int)
+	 */
+	public int workingDaysBetween(int fromPackedDate, int toPackedDate) {
+		final int from = index(fromPackedDate);
+		final int to = index(toPackedDate);
+		return (from <= to)
+		       ? countBefore(to + 1) - countBefore(from + 1)
+		       : countBefore(to) - countBefore(from);
+	}
+
+	/**
+	 * Get the index within the range of the specified date.
+	 */
+	private int index(int packedDate) {
+		final int epochDay = DateUtil.packedToEpochDay(packedDate);
+		Validate.isTrue((firstDay <= epochDay && epochDay <= lastDay), RANGE_ERROR, packedDate);
+		return epochDay - firstDay;
+	}
+
+	private boolean isWorking(int index) {
+		return 0 != (bits[index >>> 6] & (1L << index));
+	}
+
+	/**
+	 * Count the working days preceding the specified index.
+	 */
+	private int countBefore(int index) {
+		final int w = index >>> 6;
+		return rank[w] + Long.bitCount(bits[w] & ((1L << index) - 1L));
+	}
+
+	/**
+	 * Get the index of the working day with the specified ordinal.
+	 */
+	private int select(int ordinal) {
+		int w = sample[ordinal >>> 6];
+		while (rank[w + 1] <= ordinal) w++;
+		long word = bits[w];
+		for (int n = ordinal - rank[w]; n > 0; n--) {
+			word &= (word - 1L);
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("org.osframework.util.BusinessCalendar[")
+		           .append(getFirstDate()).append("..").append(getLastDate())
+		           .append(", holidays=").append(holidayCount)
+		           .append(']').toString();
+	}
+
+	/**
+	 * Builder of business calendars. By default a calendar covers the range
+	 * [{@link BusinessCalendar#DEFAULT_FIRST_DATE},
+	 * {@link BusinessCalendar#DEFAULT_LAST_DATE}], its weekend is Saturday
+	 * and Sunday, and it has no holidays. Holidays outside the range are
+	 * ignored.
+	 * <p>Builders are not safe for use by multiple concurrent threads.</p>
+	 */
+	public static final class Builder {
+
+		private int firstDate = DEFAULT_FIRST_DATE;
+		private int lastDate = DEFAULT_LAST_DATE;
+		private int weekendMask = (1 << 6) | (1 << 7);
+
+		/**
+		 * Holidays, by offset of epoch day from 0000-01-01 so that the range
+		 * may still be changed after they are added.
+		 */
+		private final BitSet holidays = new BitSet();
+
+		/**
+		 * Set the range of dates covered by the calendar.
+		 * 
+		 * @param fromPackedDate first date of range
+		 * @param toPackedDate last date of range
+		 * @return this builder
+		 * @throws IllegalArgumentException if either argument is not a valid
+		 *         packed date, or range is empty
+		 */
+		public Builder range(int fromPackedDate, int toPackedDate) {
+			final int from = DateUtil.packedToEpochDay(fromPackedDate);
+			final int to = DateUtil.packedToEpochDay(toPackedDate);
+			Validate.isTrue(from <= to, "Empty calendar range: ", toPackedDate);
+			this.firstDate = fromPackedDate;
+			this.lastDate = toPackedDate;
+			return this;
+		}
+
+		/**
+		 * Set the weekend days of the calendar, replacing the default weekend.
+		 * 
+		 * @param daysOfWeek ISO days of week, from 1 (Monday) to 7 (Sunday);
+		 *                   may be empty for a calendar without weekends
+		 * @return this builder
+		 * @throws IllegalArgumentException if any argument is not a day of
+		 *         week
+		 */
+		public Builder weekend(int... daysOfWeek) {
+			int mask = 0;
+			for (int dayOfWeek : daysOfWeek) {
+				Validate.isTrue((1 <= dayOfWeek && dayOfWeek <= 7), "Invalid day of week: ", dayOfWeek);
+				mask |= (1 << dayOfWeek);
+			}
+			this.weekendMask = mask;
+			return this;
+		}
+
+		/**
+		 * Add a holiday to the calendar.
+		 * 
+		 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+		 * @return this builder
+		 * @throws IllegalArgumentException if argument is not a valid packed
+		 *         date
+		 */
+		public Builder holiday(int packedDate) {
+			holidays.set(DateUtil.packedToEpochDay(packedDate) - DateUtil.MIN_EPOCH_DAY);
+			return this;
+		}
+
+		/**
+		 * Add the holidays of a holiday file to the calendar.
+		 * 
+		 * @param file holiday file, encoded in UTF-8
+		 * @return this builder
+		 * @throws IllegalArgumentException if argument is null, or a line of
+		 *         the file is not a holiday
+		 * @throws IOException if file cannot be read
+		 * @see BusinessCalendar
+		 */
+		public Builder load(File file) throws IOException {
+			Validate.notNull(file, "File argument cannot be null");
+			final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			try {
+				return load(reader);
+			} finally {
+				reader.close();
+			}
+		}
+
+		/**
+		 * Add the holidays read from a character stream to the calendar. The
+		 * stream is read to its end but is not closed.
+		 * 
+		 * @param reader character stream in the holiday file format
+		 * @return this builder
+		 * @throws IllegalArgumentException if argument is null, or a line of
+		 *         the stream is not a holiday
+		 * @throws IOException if stream cannot be read
+		 * @see BusinessCalendar
+		 */
+		public Builder load(Reader reader) throws IOException {
+			Validate.notNull(reader, "Reader argument cannot be null");
+			final BufferedReader in = new BufferedReader(reader);
+			String line;
+			for (int lineNumber = 1; null != (line = in.readLine()); lineNumber++) {
+				final String trimmed = line.trim();
+				if (0 == trimmed.length() || '#' == trimmed.charAt(0)) continue;
+				int end = 0;
+				while (end < trimmed.length() && !Character.isWhitespace(trimmed.charAt(end))) end++;
+				final int packedDate = DateUtil.tryParseToInt(trimmed.substring(0, end));
+				if (DateUtil.INVALID_DATE == packedDate) {
+					throw new IllegalArgumentException("Invalid holiday at line " + lineNumber + ": " + line);
+				}
+				holiday(packedDate);
+			}
+			return this;
+		}
+
+		/**
+		 * Build a calendar from the current state of this builder.
+		 * 
+		 * @return new business calendar
+		 */
+		public BusinessCalendar build() {
+			return new BusinessCalendar(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * File: CalendarTable.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+/**
+ * Precomputed tables of the ISO (proleptic Gregorian) calendar. The
+ * Gregorian calendar repeats exactly every 400 years, a cycle of 146097
+ * days which is also a whole number of weeks. The tables therefore describe
+ * a single cycle, and answer leap year, month length, day of year, and epoch
+ * day questions for any year with a constant number of array lookups and
+ * no object allocation.
+ * <p>Arguments are not validated; callers are expected to supply a month in
+ * range [1,12] and a day valid for the month.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class CalendarTable {
+
+	static final int YEARS_PER_CYCLE = 400;
+	static final int DAYS_PER_CYCLE = 146097;
+
+	/**
+	 * Number of days from 0000-01-01 to 1970-01-01.
+	 */
+	static final int DAYS_0000_TO_1970 = 719528;
+
+	/**
+	 * Day of cycle on which each year of the cycle begins.
+	 */
+	private static final int[] CYCLE_YEAR_START = new int[YEARS_PER_CYCLE + 1];
+
+	/**
+	 * Leap year flag of each year of the cycle.
+	 */
+	private static final boolean[] CYCLE_LEAP = new boolean[YEARS_PER_CYCLE];
+
+	/**
+	 * Length of each month, indexed by [leap][month]; month 0 is unused.
+	 */
+	private static final int[][] MONTH_LENGTH = {
+		{ 0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 },
+		{ 0, 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 }
+	};
+
+	/**
+	 * Day of year (zero-based) on which each month begins, indexed by
+	 * [leap][month]; month 0 is unused.
+	 */
+	private static final int[][] MONTH_START = new int[2][14];
+
+	/**
+	 * Month of each day of year (zero-based), indexed by [leap][day].
+	 */
+	private static final byte[][] DAY_MONTH = new byte[2][366];
+
+	static {
+		int start = 0;
+		for (int y = 0; y < YEARS_PER_CYCLE; y++) {
+			CYCLE_LEAP[y] = ((0 == (y & 3)) && ((0 != y % 100) || (0 == y % 400)));
+			CYCLE_YEAR_START[y] = start;
+			start += CYCLE_LEAP[y] ? 366 : 365;
+		}
+		CYCLE_YEAR_START[YEARS_PER_CYCLE] = start;
+		for (int leap = 0; leap < 2; leap++) {
+			int day = 0;
+			for (int m = 1; m <= 12; m++) {
+				MONTH_START[leap][m] = day;
+				for (int i = 0; i < MONTH_LENGTH[leap][m]; i++) {
+					DAY_MONTH[leap][day++] = (byte)m;
+				}
+			}
+			MONTH_START[leap][13] = day;
+		}
+	}
+
+	/**
+	 * Private constructor - this class cannot be instantiated.
+	 */
+	private CalendarTable() {}
+
+	static boolean isLeapYear(int year) {
+		return CYCLE_LEAP[yearOfCycle(year)];
+	}
+
+	static int daysInMonth(int year, int month) {
+		return MONTH_LENGTH[CYCLE_LEAP[yearOfCycle(year)] ? 1 : 0][month];
+	}
+
+	static int daysInYear(int year) {
+		return CYCLE_LEAP[yearOfCycle(year)] ? 366 : 365;
+	}
+
+	/**
+	 * @return day of year, from 1 (January 1st) to 366
+	 */
+	static int dayOfYear(int year, int month, int day) {
+		return MONTH_START[CYCLE_LEAP[yearOfCycle(year)] ? 1 : 0][month] + day;
+	}
+
+	/**
+	 * @return number of days from 1970-01-01 to the specified date
+	 */
+	static long epochDay(int year, int month, int day) {
+		final int yoc = yearOfCycle(year);
+		final long cycle = (year - yoc) / YEARS_PER_CYCLE;
+		return (cycle * DAYS_PER_CYCLE) +
+		       CYCLE_YEAR_START[yoc] +
+		       MONTH_START[CYCLE_LEAP[yoc] ? 1 : 0][month] +
+		       (day - 1) - DAYS_0000_TO_1970;
+	}
+
+	/**
+	 * @return ISO day of week of an epoch day, from 1 (Monday) to 7 (Sunday)
+	 */
+	static int dayOfWeek(long epochDay) {
+		// 1970-01-01 was a Thursday
+		return (int)DateUtil.floorMod(epochDay + 3L, 7L) + 1;
+	}
+
+	/**
+	 * Convert an epoch day to a packed date value. The year of the epoch day
+	 * must be in range [0,9999].
+	 * 
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 */
+	static int toPacked(long epochDay) {
+		final long z = epochDay + DAYS_0000_TO_1970;
+		final long cycle = DateUtil.floorDiv(z, DAYS_PER_CYCLE);
+		final int doc = (int)(z - (cycle * DAYS_PER_CYCLE));
+		// Estimate is at most one year from the actual year of cycle
+		int yoc = (int)((doc * (long)YEARS_PER_CYCLE) / DAYS_PER_CYCLE);
+		if (CYCLE_YEAR_START[yoc] > doc) {
+			yoc--;
+		} else if (CYCLE_YEAR_START[yoc + 1] <= doc) {
+			yoc++;
+		}
+		final int leap = CYCLE_LEAP[yoc] ? 1 : 0;
+		final int doy = doc - CYCLE_YEAR_START[yoc];
+		final int month = DAY_MONTH[leap][doy];
+		final int day = doy - MONTH_START[leap][month] + 1;
+		final int year = (int)(cycle * YEARS_PER_CYCLE) + yoc;
+		return (10000 * year) + (100 * month) + day;
+	}
+
+	private static int yearOfCycle(int year) {
+		final int yoc = year % YEARS_PER_CYCLE;
+		return (yoc < 0) ? (yoc + YEARS_PER_CYCLE) : yoc;
+	}
+
+}
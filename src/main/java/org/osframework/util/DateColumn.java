@@ -0,0 +1,414 @@
+/*
+ * File: DateColumn.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Compressed, sorted column of dates. Dates are held as epoch days in
+ * ascending order, and may repeat.
+ * <p>The column is divided into blocks of {@value #BLOCK_SIZE} dates. Each
+ * block is encoded by frame of reference: its first date is stored as the
+ * block base, and every date of the block is stored as its distance from
+ * the base in the fewest bits which hold the largest distance. Because the
+ * dates are sorted, the distances within a block are small; a block of
+ * dates spanning a month needs 5 bits per date rather than the 32 of an
+ * <code>int</code>. Each block occupies a whole number of <code>long</code>
+ * words, so a date is located and decoded with a few shifts.</p>
+ * <p>Random access takes constant time. Range searches are binary searches,
+ * first over the block bases and then within one block, and run directly
+ * on the encoded data.</p>
+ * <p>Instances are immutable and are safe for use by multiple concurrent
+ * threads.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateColumn {
+
+	/**
+	 * Number of dates in each encoded block.
+	 */
+	public static final int BLOCK_SIZE = 128;
+
+	private static final int BLOCK_SHIFT = 7;
+
+	private final int size;
+
+	/**
+	 * First epoch day of each block.
+	 */
+	private final int[] bases;
+
+	/**
+	 * Bits per encoded date of each block.
+	 */
+	private final byte[] widths;
+
+	/**
+	 * Index of the first word of each block within the encoded data.
+	 */
+	private final int[] offsets;
+
+	private final long[] data;
+
+	private DateColumn(final int[] sorted, final int size) {
+		final int blocks = (size + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+		this.size = size;
+		this.bases = new int[blocks];
+		this.widths = new byte[blocks];
+		this.offsets = new int[blocks];
+		int words = 0;
+		for (int b = 0; b < blocks; b++) {
+			final int first = b << BLOCK_SHIFT;
+			final int last = Math.min(first + BLOCK_SIZE, size) - 1;
+			bases[b] = sorted[first];
+			widths[b] = (byte)(32 - Integer.numberOfLeadingZeros(sorted[last] - sorted[first]));
+			offsets[b] = words;
+			// A full block of w-bit values fills exactly 2w words
+			words += widths[b] << 1;
+		}
+		this.data = new long[words];
+		for (int i = 0; i < size; i++) {
+			final int b = i >>> BLOCK_SHIFT;
+			final int width = widths[b];
+			if (0 == width) continue;
+			final long value = sorted[i] - bases[b];
+			final int bit = (i & (BLOCK_SIZE - 1)) * width;
+			final int word = offsets[b] + (bit >>> 6);
+			final int shift = bit & 63;
+			data[word] |= value << shift;
+			if (shift + width > 64) {
+				data[word + 1] |= value >>> (64 - shift);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of dates in this column.
+	 * 
+	 * @return number of dates
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the date at the specified index of this column.
+	 * 
+	 * @param index index of date
+	 * @return number of days since 1970-01-01
+	 * @throws IndexOutOfBoundsException if index is not in range
+	 *         [0,{@link #size()})
+	 */
+	public int getEpochDay(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return decode(index);
+	}
+
+	/**
+	 * Get the date at the specified index of this column.
+	 * 
+	 * @param index index of date
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IndexOutOfBoundsException if index is not in range
+	 *         [0,{@link #size()})
+	 */
+	public int getPackedDate(int index) {
+		return CalendarTable.toPacked(getEpochDay(index));
+	}
+
+	/**
+	 * Get the index of the first date of this column which is on or after
+	 * the specified date.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return index of first date on or after argument, or {@link #size()}
+	 *         if every date is before it
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 */
+	public int ceilingIndex(int packedDate) {
+		return lowerBound(DateUtil.packedToEpochDay(packedDate));
+	}
+
+	/**
+	 * Count the dates of this column within the specified range.
+	 * 
+	 * @param fromPackedDate first date of range, inclusive
+	 * @param toPackedDate last date of range, inclusive
+	 * @return number of dates in range, or zero if range is empty
+	 * @throws IllegalArgumentException if either argument is not a valid
+	 *         packed date
+	 */
+	public int countRange(int fromPackedDate, int toPackedDate) {
+		final int from = DateUtil.packedToEpochDay(fromPackedDate);
+		final int to = DateUtil.packedToEpochDay(toPackedDate);
+		return (from > to) ? 0 : lowerBound(to + 1) - lowerBound(from);
+	}
+
+	/**
+	 * Get a cursor over the dates of this column within the specified range,
+	 * in ascending order.
+	 * 
+	 * @param fromPackedDate first date of range, inclusive
+	 * @param toPackedDate last date of range, inclusive
+	 * @return cursor over dates in range
+	 * @throws IllegalArgumentException if either argument is not a valid
+	 *         packed date
+	 */
+	public Cursor range(int fromPackedDate, int toPackedDate) {
+		final int from = DateUtil.packedToEpochDay(fromPackedDate);
+		final int to = DateUtil.packedToEpochDay(toPackedDate);
+		final int start = lowerBound(from);
+		return new Cursor(start, (from > to) ? start : lowerBound(to + 1));
+	}
+
+	/**
+	 * Get a cursor over all dates of this column, in ascending order.
+	 * 
+	 * @return cursor over dates
+	 */
+	public Cursor cursor() {
+		return new Cursor(0, size);
+	}
+
+	/**
+	 * Get the approximate number of bytes of heap occupied by the encoded
+	 * dates of this column.
+	 * 
+	 * @return size of encoded data in bytes
+	 */
+	public long getEncodedSize() {
+		return (8L * data.length) + (9L * bases.length);
+	}
+
+	/**
+	 * Decode the epoch day at the specified index.
+	 */
+	private int decode(int index) {
+		final int b = index >>> BLOCK_SHIFT;
+		final int width = widths[b];
+		if (0 == width) return bases[b];
+		final int bit = (index & (BLOCK_SIZE - 1)) * width;
+		final int word = offsets[b] + (bit >>> 6);
+		final int shift = bit & 63;
+		long value = data[word] >>> shift;
+		if (shift + width > 64) {
+			value |= data[word + 1] << (64 - shift);
+		}
+		return bases[b] + (int)(value & ((1L << width) - 1L));
+	}
+
+	/**
+	 * Get the index of the first date which is on or after the specified
+	 * epoch day.
+	 */
+	private int lowerBound(int epochDay) {
+		// First block whose base is on or after the date; the answer lies in
+		// the block before it, or is the start of that block
+		int lo = 0, hi = bases.length;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (bases[mid] < epochDay) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		if (0 == lo) return 0;
+		hi = Math.min(lo << BLOCK_SHIFT, size);
+		lo = (lo - 1) << BLOCK_SHIFT;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (decode(mid) < epochDay) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("org.osframework.util.DateColumn[size=")
+		           .append(size)
+		           .append(", encodedSize=").append(getEncodedSize())
+		           .append(']').toString();
+	}
+
+	/**
+	 * Cursor over a range of the dates of a column. Cursors are not safe for
+	 * use by multiple concurrent threads.
+	 */
+	public final class Cursor {
+
+		private int index;
+		private final int end;
+
+		private Cursor(final int start, final int end) {
+			this.index = start;
+			this.end = end;
+		}
+
+		/**
+		 * Determine if this cursor has another date.
+		 * 
+		 * @return <code>true</code> if a call to a <code>next</code> method
+		 *         will return a date, <code>false</code> otherwise
+		 */
+		public boolean hasNext() {
+			return index < end;
+		}
+
+		/**
+		 * Get the index within the column of the next date of this cursor.
+		 * 
+		 * @return index of next date
+		 */
+		public int nextIndex() {
+			return index;
+		}
+
+		/**
+		 * Get the number of dates remaining in this cursor.
+		 * 
+		 * @return number of remaining dates
+		 */
+		public int remaining() {
+			return end - index;
+		}
+
+		/**
+		 * Advance this cursor and get its next date.
+		 * 
+		 * @return number of days since 1970-01-01
+		 * @throws NoSuchElementException if cursor has no more dates
+		 */
+		public int nextEpochDay() {
+			if (index >= end) throw new NoSuchElementException();
+			return decode(index++);
+		}
+
+		/**
+		 * Advance this cursor and get its next date.
+		 * 
+		 * @return packed date value (<code>yyyyMMdd</code>)
+		 * @throws NoSuchElementException if cursor has no more dates
+		 */
+		public int nextPackedDate() {
+			return CalendarTable.toPacked(nextEpochDay());
+		}
+
+	}
+
+	/**
+	 * Builder of date columns. Dates may be added in any order; they are
+	 * sorted when the column is built.
+	 * <p>Builders are not safe for use by multiple concurrent threads.</p>
+	 */
+	public static final class Builder {
+
+		private int[] epochDays = new int[BLOCK_SIZE];
+		private int size = 0;
+
+		/**
+		 * Add a date to the column.
+		 * 
+		 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+		 * @return this builder
+		 * @throws IllegalArgumentException if argument is not a valid packed
+		 *         date
+		 */
+		public Builder add(int packedDate) {
+			return addEpochDay(DateUtil.packedToEpochDay(packedDate));
+		}
+
+		/**
+		 * Add a date to the column.
+		 * 
+		 * @param epochDay number of days since 1970-01-01
+		 * @return this builder
+		 * @throws IllegalArgumentException if argument is outside the range of
+		 *         supported epoch days
+		 */
+		public Builder addEpochDay(int epochDay) {
+			Validate.isTrue((DateUtil.MIN_EPOCH_DAY <= epochDay && epochDay <= DateUtil.MAX_EPOCH_DAY),
+			                DateUtil.EPOCH_DAY_ERROR, epochDay);
+			if (size == epochDays.length) {
+				epochDays = Arrays.copyOf(epochDays, size + (size >>> 1));
+			}
+			epochDays[size++] = epochDay;
+			return this;
+		}
+
+		/**
+		 * Parse a date string and add it to the column. The string may be in
+		 * any format accepted by {@link DateUtil#parseToEpochDay(String)}.
+		 * 
+		 * @param s character sequence to be parsed
+		 * @return this builder
+		 * @throws IllegalArgumentException if argument is null or not a date
+		 */
+		public Builder add(CharSequence s) {
+			return addEpochDay(DateUtil.parseToEpochDay(s, 0, (null == s) ? 0 : s.length()));
+		}
+
+		/**
+		 * Parse the date in the specified range of an ASCII byte array and add
+		 * it to the column.
+		 * 
+		 * @param bytes byte array to be parsed
+		 * @param offset index of first byte of range
+		 * @param length number of bytes in range
+		 * @return this builder
+		 * @throws IllegalArgumentException if array is null or range is not a
+		 *         date
+		 * @throws IndexOutOfBoundsException if range is outside array bounds
+		 */
+		public Builder add(byte[] bytes, int offset, int length) {
+			return addEpochDay(DateUtil.parseToEpochDay(bytes, offset, length));
+		}
+
+		/**
+		 * Get the number of dates added to this builder.
+		 * 
+		 * @return number of dates
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Build a column of the dates added to this builder.
+		 * 
+		 * @return new date column
+		 */
+		public DateColumn build() {
+			final int[] sorted = Arrays.copyOf(epochDays, size);
+			Arrays.sort(sorted);
+			return new DateColumn(sorted, size);
+		}
+
+	}
+
+}
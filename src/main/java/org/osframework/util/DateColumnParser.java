@@ -0,0 +1,361 @@
+/*
+ * File: DateColumnParser.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Bulk parser which converts a column of date strings to a primitive array.
+ * Each value is parsed according to the rules of
+ * {@link DateUtil#parseDate(String)}. Rather than throwing an exception for
+ * each bad value, the parser records the outcome of every value in a
+ * <em>validity bitmap</em>: bit <code>i</code> of the bitmap, held in
+ * <code>validity[i >>> 6]</code> at position <code>i & 63</code>, is set if
+ * value <code>i</code> is a date and clear otherwise. The result array
+ * element of a bad value is set to zero.
+ * <p>Columns larger than {@link #PARALLEL_THRESHOLD} values are split into
+ * segments which are parsed in parallel on a fork/join pool. Segment
+ * boundaries fall on multiples of 64 values, so that no two workers write
+ * to the same bitmap word. The date scanner keeps its state in local
+ * variables, so workers share nothing and allocate nothing per value.</p>
+ * <p>Input lists are expected to support fast random access; any other list
+ * is copied to an array before parsing.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateColumnParser {
+
+	/**
+	 * Minimum number of values parsed in parallel; smaller columns, and
+	 * segments of larger columns, are parsed by a single thread.
+	 */
+	public static final int PARALLEL_THRESHOLD = 8192;
+
+	static final int OUTPUT_PACKED    = 0;
+	static final int OUTPUT_EPOCH_DAY = 1;
+	static final int OUTPUT_MILLIS    = 2;
+
+	/**
+	 * Private constructor - this class cannot be instantiated.
+	 */
+	private DateColumnParser() {}
+
+	/**
+	 * Parse an array of date strings to packed date values
+	 * (<code>yyyyMMdd</code>).
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive packed date values
+	 * @param validity bitmap to receive validity of each value
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseToInt(String)
+	 */
+	public static int parseToInt(CharSequence[] values, int[] column, long[] validity) {
+		return parseToInt(values, column, validity, SharedPool.INSTANCE);
+	}
+
+	/**
+	 * Parse an array of date strings to packed date values
+	 * (<code>yyyyMMdd</code>), using the specified fork/join pool.
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive packed date values
+	 * @param validity bitmap to receive validity of each value
+	 * @param pool fork/join pool on which to parse large columns
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseToInt(String)
+	 */
+	public static int parseToInt(CharSequence[] values, int[] column, long[] validity, ForkJoinPool pool) {
+		Validate.notNull(column, "Column argument cannot be null");
+		return parse(values, column, null, validity, OUTPUT_PACKED, pool);
+	}
+
+	/**
+	 * Parse a list of date strings to packed date values
+	 * (<code>yyyyMMdd</code>).
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive packed date values
+	 * @param validity bitmap to receive validity of each value
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseToInt(String)
+	 */
+	public static int parseToInt(List<? extends CharSequence> values, int[] column, long[] validity) {
+		return parseToInt(toArray(values), column, validity, SharedPool.INSTANCE);
+	}
+
+	/**
+	 * Parse an array of date strings to epoch day values.
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive epoch day values
+	 * @param validity bitmap to receive validity of each value
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseToEpochDay(String)
+	 */
+	public static int parseToEpochDay(CharSequence[] values, int[] column, long[] validity) {
+		return parseToEpochDay(values, column, validity, SharedPool.INSTANCE);
+	}
+
+	/**
+	 * Parse an array of date strings to epoch day values, using the specified
+	 * fork/join pool.
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive epoch day values
+	 * @param validity bitmap to receive validity of each value
+	 * @param pool fork/join pool on which to parse large columns
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseToEpochDay(String)
+	 */
+	public static int parseToEpochDay(CharSequence[] values, int[] column, long[] validity, ForkJoinPool pool) {
+		Validate.notNull(column, "Column argument cannot be null");
+		return parse(values, column, null, validity, OUTPUT_EPOCH_DAY, pool);
+	}
+
+	/**
+	 * Parse a list of date strings to epoch day values.
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive epoch day values
+	 * @param validity bitmap to receive validity of each value
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseToEpochDay(String)
+	 */
+	public static int parseToEpochDay(List<? extends CharSequence> values, int[] column, long[] validity) {
+		return parseToEpochDay(toArray(values), column, validity, SharedPool.INSTANCE);
+	}
+
+	/**
+	 * Parse an array of date strings to milliseconds values, each of which is
+	 * the instant of midnight in the default time zone.
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive milliseconds values
+	 * @param validity bitmap to receive validity of each value
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseDate(String)
+	 */
+	public static int parseToMillis(CharSequence[] values, long[] column, long[] validity) {
+		return parseToMillis(values, column, validity, SharedPool.INSTANCE);
+	}
+
+	/**
+	 * Parse an array of date strings to milliseconds values, using the
+	 * specified fork/join pool. Each value is the instant of midnight in the
+	 * default time zone.
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive milliseconds values
+	 * @param validity bitmap to receive validity of each value
+	 * @param pool fork/join pool on which to parse large columns
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseDate(String)
+	 */
+	public static int parseToMillis(CharSequence[] values, long[] column, long[] validity, ForkJoinPool pool) {
+		Validate.notNull(column, "Column argument cannot be null");
+		return parse(values, null, column, validity, OUTPUT_MILLIS, pool);
+	}
+
+	/**
+	 * Parse a list of date strings to milliseconds values, each of which is
+	 * the instant of midnight in the default time zone.
+	 * 
+	 * @param values date strings to be parsed; may contain <code>null</code>
+	 * @param column array to receive milliseconds values
+	 * @param validity bitmap to receive validity of each value
+	 * @return number of values which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @see DateUtil#parseDate(String)
+	 */
+	public static int parseToMillis(List<? extends CharSequence> values, long[] column, long[] validity) {
+		return parseToMillis(toArray(values), column, validity, SharedPool.INSTANCE);
+	}
+
+	/**
+	 * Determine if the specified bit of a validity bitmap is set.
+	 * 
+	 * @param validity bitmap populated by this class
+	 * @param index index of value
+	 * @return <code>true</code> if value at index was a date,
+	 *         <code>false</code> otherwise
+	 */
+	public static boolean isValid(long[] validity, int index) {
+		return (0L != (validity[index >>> 6] & (1L << index)));
+	}
+
+	/**
+	 * Get the number of <code>long</code> words required for the validity
+	 * bitmap of a column.
+	 * 
+	 * @param size number of values in column
+	 * @return required length of bitmap array
+	 */
+	public static int bitmapLength(int size) {
+		return (size + 63) >>> 6;
+	}
+
+	static int parse(CharSequence[] values, int[] intColumn, long[] longColumn, long[] validity, int output, ForkJoinPool pool) {
+		Validate.notNull(values, "Values argument cannot be null");
+		Validate.notNull(validity, "Validity argument cannot be null");
+		Validate.notNull(pool, "Pool argument cannot be null");
+		final int size = values.length;
+		final int columnLength = (null != intColumn) ? intColumn.length : longColumn.length;
+		Validate.isTrue(columnLength >= size, "Column array is too small: ", columnLength);
+		Validate.isTrue(validity.length >= bitmapLength(size), "Validity array is too small: ", validity.length);
+		if (size <= PARALLEL_THRESHOLD) {
+			return parseRange(values, intColumn, longColumn, validity, output, 0, size);
+		}
+		return pool.invoke(new ParseTask(values, intColumn, longColumn, validity, output, 0, size)).intValue();
+	}
+
+	/**
+	 * Parse a range of values sequentially. The range must begin on a
+	 * multiple of 64, so that each bitmap word is written exactly once.
+	 * 
+	 * @return number of values in range which are not dates
+	 */
+	static int parseRange(CharSequence[] values, int[] intColumn, long[] longColumn, long[] validity, int output, int from, int to) {
+		final int maxYear = (OUTPUT_MILLIS == output) ? DateUtil.MAX_YEAR_PARSE : DateUtil.MAX_YEAR_PACKED;
+		int invalid = 0;
+		long word = 0L;
+		for (int i = from; i < to; i++) {
+			final CharSequence s = values[i];
+			final long packed = (null == s)
+			                    ? DateUtil.SCAN_FAILED
+			                    : DateUtil.scanRange(s, 0, s.length(), true);
+			boolean valid = (DateUtil.SCAN_FAILED != packed) && (DateUtil.scannedYear(packed) <= maxYear);
+			switch (output) {
+			case OUTPUT_PACKED:
+				intColumn[i] = valid ? DateUtil.toPacked(packed) : 0;
+				break;
+			case OUTPUT_EPOCH_DAY:
+				intColumn[i] = valid ? DateUtil.toEpochDay(packed) : 0;
+				break;
+			default:
+				long millis = 0L;
+				if (valid) {
+					try {
+						millis = DateUtil.toMillis(packed);
+					} catch (IllegalArgumentException iae) {
+						// Midnight does not exist in default time zone
+						valid = false;
+					}
+				}
+				longColumn[i] = millis;
+				break;
+			}
+			if (valid) {
+				word |= (1L << i);
+			} else {
+				invalid++;
+			}
+			if ((63 == (i & 63)) || (i == to - 1)) {
+				validity[i >>> 6] = word;
+				word = 0L;
+			}
+		}
+		return invalid;
+	}
+
+	private static CharSequence[] toArray(List<? extends CharSequence> values) {
+		Validate.notNull(values, "Values argument cannot be null");
+		if (values instanceof RandomAccess) {
+			final int size = values.size();
+			final CharSequence[] array = new CharSequence[size];
+			for (int i = 0; i < size; i++) {
+				array[i] = values.get(i);
+			}
+			return array;
+		}
+		return values.toArray(new CharSequence[values.size()]);
+	}
+
+	/**
+	 * Lazily created fork/join pool shared by all callers which do not supply
+	 * a pool of their own. Worker threads of a fork/join pool are daemon
+	 * threads, so the pool does not prevent JVM shutdown.
+	 */
+	static final class SharedPool {
+		static final ForkJoinPool INSTANCE = new ForkJoinPool();
+	}
+
+	/**
+	 * Task which parses a range of a column, splitting it in half until each
+	 * segment is no larger than the parallel threshold.
+	 */
+	private static final class ParseTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = -5069458373046374725L;
+
+		private final CharSequence[] values;
+		private final int[] intColumn;
+		private final long[] longColumn;
+		private final long[] validity;
+		private final int output;
+		private final int from;
+		private final int to;
+
+		ParseTask(CharSequence[] values, int[] intColumn, long[] longColumn, long[] validity, int output, int from, int to) {
+			this.values = values;
+			this.intColumn = intColumn;
+			this.longColumn = longColumn;
+			this.validity = validity;
+			this.output = output;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Integer compute() {
+			if ((to - from) <= PARALLEL_THRESHOLD) {
+				return Integer.valueOf(parseRange(values, intColumn, longColumn, validity, output, from, to));
+			}
+			// Split on a bitmap word boundary
+			final int mid = (from + ((to - from) >>> 1)) & ~63;
+			final ParseTask left = new ParseTask(values, intColumn, longColumn, validity, output, from, mid);
+			final ParseTask right = new ParseTask(values, intColumn, longColumn, validity, output, mid, to);
+			right.fork();
+			final int invalid = left.compute().intValue();
+			return Integer.valueOf(invalid + right.join().intValue());
+		}
+	}
+
+}
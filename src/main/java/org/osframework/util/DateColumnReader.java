@@ -0,0 +1,602 @@
+/*
+ * File: DateColumnReader.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Reader which parses one column of dates from a delimited text file, such
+ * as a CSV export. The file is memory-mapped, and each field is parsed
+ * directly from the mapped bytes according to the rules of
+ * {@link DateUtil#parseToInt(String)}; no line or field strings are created.
+ * <p>Records are separated by line feeds; a carriage return before the line
+ * feed, and whitespace around a field, are ignored. Empty lines are skipped.
+ * A field enclosed in double quotes may contain the delimiter; records must
+ * not contain line breaks. Fields are assumed to hold ASCII text, which
+ * includes UTF-8 and ISO-8859 encoded files.</p>
+ * <p>A record whose date field is missing or is not a date is reported as
+ * invalid. Results are delivered either to a {@link Handler}, or into
+ * primitive arrays with a validity bitmap in the same layout as
+ * {@link DateColumnParser}.</p>
+ * <p>The file may be divided into {@link Range ranges}, each holding the
+ * records which begin within it, so that ranges can be read in parallel.
+ * Instances are immutable and safe for use by multiple concurrent
+ * threads.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateColumnReader {
+
+	/**
+	 * Receiver of the dates read from a column.
+	 */
+	public interface Handler {
+		/**
+		 * Called for each record whose field is a date.
+		 * 
+		 * @param position byte offset of record in file
+		 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+		 */
+		void date(long position, int packedDate);
+
+		/**
+		 * Called for each record whose field is missing or is not a date.
+		 * 
+		 * @param position byte offset of record in file
+		 */
+		void invalid(long position);
+	}
+
+	/**
+	 * Contiguous range of a file. A range holds the records which begin at a
+	 * byte offset within it.
+	 */
+	public static final class Range {
+		private final long start;
+		private final long end;
+
+		Range(final long start, final long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @return byte offset of range in file, inclusive
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * @return byte offset of end of range, exclusive
+		 */
+		public long getEnd() {
+			return end;
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder("org.osframework.util.DateColumnReader.Range[")
+			           .append(start).append(",").append(end).append("]")
+			           .toString();
+		}
+	}
+
+	/**
+	 * Default maximum number of bytes mapped at once.
+	 */
+	static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+	/**
+	 * Minimum number of bytes in a range read in parallel.
+	 */
+	static final long MIN_PARALLEL_RANGE = 1L << 20;
+
+	private static final int OUTPUT_COUNT = -1;
+
+	private final File file;
+	private final byte delimiter;
+	private final int column;
+	private final boolean header;
+	private final int windowSize;
+
+	/**
+	 * Create a reader of the specified zero-based column of a comma delimited
+	 * file without a header line.
+	 * 
+	 * @param file file to be read
+	 * @param column zero-based index of date column
+	 * @throws IllegalArgumentException if file is null or column is negative
+	 */
+	public DateColumnReader(final File file, final int column) {
+		this(file, ',', column, false);
+	}
+
+	/**
+	 * Create a reader of the specified zero-based column of a delimited file.
+	 * 
+	 * @param file file to be read
+	 * @param delimiter field delimiter character
+	 * @param column zero-based index of date column
+	 * @param header <code>true</code> if the first line of the file is a
+	 *        header line to be skipped
+	 * @throws IllegalArgumentException if file is null, delimiter is not an
+	 *         ASCII character other than line feed or double quote, or column
+	 *         is negative
+	 */
+	public DateColumnReader(final File file, final char delimiter, final int column, final boolean header) {
+		this(file, delimiter, column, header, DEFAULT_WINDOW_SIZE);
+	}
+
+	DateColumnReader(final File file, final char delimiter, final int column, final boolean header, final int windowSize) {
+		Validate.notNull(file, "File argument cannot be null");
+		Validate.isTrue((delimiter < 0x80 && '\n' != delimiter && '"' != delimiter), "Invalid delimiter: ", delimiter);
+		Validate.isTrue((0 <= column), "Column must not be negative: ", column);
+		this.file = file;
+		this.delimiter = (byte)delimiter;
+		this.column = column;
+		this.header = header;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Divide the file into the specified number of ranges of roughly equal
+	 * size. Each range boundary is moved to the start of a line; fewer ranges
+	 * are returned if the file has fewer lines.
+	 * 
+	 * @param count requested number of ranges
+	 * @return ranges which together cover the whole file, in file order
+	 * @throws IllegalArgumentException if count is less than 1
+	 * @throws IOException if the file cannot be read
+	 */
+	public List<Range> split(int count) throws IOException {
+		Validate.isTrue((0 < count), "Count must be positive: ", count);
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final long size = channel.size();
+			final List<Range> ranges = new ArrayList<Range>(count);
+			long start = 0L;
+			for (int i = 1; i < count && start < size; i++) {
+				final long nominal = (size / count) * i;
+				final long boundary = lineStart(channel, Math.max(start, nominal), size);
+				if (boundary > start && boundary < size) {
+					ranges.add(new Range(start, boundary));
+					start = boundary;
+				}
+			}
+			ranges.add(new Range(start, size));
+			return ranges;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read the date column of the whole file in file order.
+	 * 
+	 * @param handler receiver of dates
+	 * @return number of records which are not dates
+	 * @throws IllegalArgumentException if handler is null
+	 * @throws IOException if the file cannot be read
+	 */
+	public long read(Handler handler) throws IOException {
+		Validate.notNull(handler, "Handler argument cannot be null");
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			return readRange(channel, 0L, channel.size(), handler, null, null, 0, OUTPUT_COUNT);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read the date column of the records in the specified range, in file
+	 * order. Distinct ranges may be read concurrently.
+	 * 
+	 * @param range range of file, obtained from {@link #split(int)}
+	 * @param handler receiver of dates
+	 * @return number of records which are not dates
+	 * @throws IllegalArgumentException if any argument is null
+	 * @throws IOException if the file cannot be read
+	 */
+	public long read(Range range, Handler handler) throws IOException {
+		Validate.notNull(range, "Range argument cannot be null");
+		Validate.notNull(handler, "Handler argument cannot be null");
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			return readRange(channel, range.start, Math.min(range.end, channel.size()), handler, null, null, 0, OUTPUT_COUNT);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Count the records of the file, excluding the header line and empty
+	 * lines.
+	 * 
+	 * @return number of records
+	 * @throws IOException if the file cannot be read
+	 */
+	public long countRecords() throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			return readRange(channel, 0L, channel.size(), null, null, null, 0, OUTPUT_COUNT);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read the date column to packed date values (<code>yyyyMMdd</code>).
+	 * Value <code>i</code> of the column array, and bit <code>i</code> of the
+	 * validity bitmap, describe record <code>i</code> of the file.
+	 * 
+	 * @param column array to receive packed date values; must hold at least
+	 *        {@link #countRecords()} values
+	 * @param validity bitmap to receive validity of each value
+	 * @return number of records which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @throws IOException if the file cannot be read
+	 * @see DateColumnParser#isValid(long[], int)
+	 */
+	public int readToInt(int[] column, long[] validity) throws IOException {
+		return readToInt(column, validity, DateColumnParser.SharedPool.INSTANCE);
+	}
+
+	/**
+	 * Read the date column to packed date values (<code>yyyyMMdd</code>),
+	 * reading large files in parallel on the specified fork/join pool.
+	 * 
+	 * @param column array to receive packed date values; must hold at least
+	 *        {@link #countRecords()} values
+	 * @param validity bitmap to receive validity of each value
+	 * @param pool fork/join pool on which to read large files
+	 * @return number of records which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @throws IOException if the file cannot be read
+	 */
+	public int readToInt(int[] column, long[] validity, ForkJoinPool pool) throws IOException {
+		return readColumn(column, validity, DateColumnParser.OUTPUT_PACKED, pool);
+	}
+
+	/**
+	 * Read the date column to epoch day values. Value <code>i</code> of the
+	 * column array, and bit <code>i</code> of the validity bitmap, describe
+	 * record <code>i</code> of the file.
+	 * 
+	 * @param column array to receive epoch day values; must hold at least
+	 *        {@link #countRecords()} values
+	 * @param validity bitmap to receive validity of each value
+	 * @return number of records which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @throws IOException if the file cannot be read
+	 * @see DateColumnParser#isValid(long[], int)
+	 */
+	public int readToEpochDay(int[] column, long[] validity) throws IOException {
+		return readToEpochDay(column, validity, DateColumnParser.SharedPool.INSTANCE);
+	}
+
+	/**
+	 * Read the date column to epoch day values, reading large files in
+	 * parallel on the specified fork/join pool.
+	 * 
+	 * @param column array to receive epoch day values; must hold at least
+	 *        {@link #countRecords()} values
+	 * @param validity bitmap to receive validity of each value
+	 * @param pool fork/join pool on which to read large files
+	 * @return number of records which are not dates
+	 * @throws IllegalArgumentException if any argument is null or an output
+	 *         array is too small
+	 * @throws IOException if the file cannot be read
+	 */
+	public int readToEpochDay(int[] column, long[] validity, ForkJoinPool pool) throws IOException {
+		return readColumn(column, validity, DateColumnParser.OUTPUT_EPOCH_DAY, pool);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.DateColumnReader[")
+		                              .append(file)
+		                              .append(",column=").append(column)
+		                              .append(",delimiter=").append((char)delimiter)
+		                              .append(",header=").append(header)
+		                              .append("]");
+		return buf.toString();
+	}
+
+	private int readColumn(int[] column, long[] validity, int output, ForkJoinPool pool) throws IOException {
+		Validate.notNull(column, "Column argument cannot be null");
+		Validate.notNull(validity, "Validity argument cannot be null");
+		Validate.notNull(pool, "Pool argument cannot be null");
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final long size = channel.size();
+			final int parallelism = (int)Math.max(1L, Math.min(pool.getParallelism() * 4L, size / MIN_PARALLEL_RANGE));
+			final List<Range> ranges = (1 == parallelism)
+			                           ? Collections.singletonList(new Range(0L, size))
+			                           : split(parallelism);
+			// First pass counts the records of each range, to place its values
+			final List<ReadTask> counts = new ArrayList<ReadTask>(ranges.size());
+			for (Range range : ranges) {
+				counts.add(new ReadTask(channel, range, null, null, 0, OUTPUT_COUNT));
+			}
+			invoke(pool, counts);
+			long total = 0L;
+			final List<ReadTask> reads = new ArrayList<ReadTask>(ranges.size());
+			for (int i = 0; i < ranges.size(); i++) {
+				reads.add(new ReadTask(channel, ranges.get(i), column, validity, (int)Math.min(total, Integer.MAX_VALUE), output));
+				total += counts.get(i).getRawResult().longValue();
+			}
+			Validate.isTrue(column.length >= total, "Column array is too small: ", column.length);
+			Validate.isTrue(validity.length >= DateColumnParser.bitmapLength((int)total), "Validity array is too small: ", validity.length);
+			Arrays.fill(validity, 0, DateColumnParser.bitmapLength((int)total), 0L);
+			invoke(pool, reads);
+			long invalid = 0L;
+			for (ReadTask read : reads) {
+				invalid += read.getRawResult().longValue();
+			}
+			return (int)invalid;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void invoke(ForkJoinPool pool, final List<ReadTask> tasks) throws IOException {
+		try {
+			if (1 == tasks.size()) {
+				pool.invoke(tasks.get(0));
+			} else {
+				pool.invoke(new RecursiveTask<Void>() {
+					private static final long serialVersionUID = 4632516283659012761L;
+
+					@Override
+					protected Void compute() {
+						ForkJoinTask.invokeAll(tasks);
+						return null;
+					}
+				});
+			}
+		} catch (MappingException me) {
+			Throwable cause = me.getCause();
+			while (cause instanceof MappingException) {
+				cause = cause.getCause();
+			}
+			throw (IOException)cause;
+		}
+	}
+
+	/**
+	 * Read the records which begin within a range of the file. A record is
+	 * delivered to the handler, written to the output arrays, or only
+	 * counted, according to the arguments.
+	 * 
+	 * @return number of invalid records, or of all records if counting
+	 */
+	long readRange(FileChannel channel, long from, long to, Handler handler,
+	               int[] column, long[] validity, int index, int output) throws IOException {
+		final long size = channel.size();
+		long count = 0L;
+		long word = 0L;
+		int i = index;
+		long pos = from;
+		if (header && 0L == pos) {
+			pos = lineStart(channel, 1L, size);
+		}
+		while (pos < to) {
+			final long length = Math.min((long)windowSize, size - pos);
+			final MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+			final boolean last = (pos + length == size);
+			final int limit = (int)Math.min(length, to - pos);
+			int line = 0;
+			while (line < limit) {
+				int eol = line;
+				while (eol < length && '\n' != buf.get(eol)) eol++;
+				if (eol == length && !last) {
+					if (0 == line) {
+						throw new IOException("Record at position " + pos + " is longer than " + windowSize + " bytes");
+					}
+					// Record continues beyond window; map the next window from it
+					break;
+				}
+				int end = eol;
+				if (end > line && '\r' == buf.get(end - 1)) end--;
+				if (end > line) {
+					if (OUTPUT_COUNT == output && null == handler) {
+						count++;
+					} else {
+						final long packed = field(buf, line, end);
+						final boolean valid = (DateUtil.SCAN_FAILED != packed) &&
+						                      (DateUtil.scannedYear(packed) <= DateUtil.MAX_YEAR_PACKED);
+						if (!valid) count++;
+						if (null != handler) {
+							if (valid) {
+								handler.date(pos + line, DateUtil.toPacked(packed));
+							} else {
+								handler.invalid(pos + line);
+							}
+						} else {
+							store(column, i, valid, packed, output);
+							if (valid) word |= (1L << i);
+							if (63 == (i & 63)) {
+								flush(validity, i, word, index);
+								word = 0L;
+							}
+							i++;
+						}
+					}
+				}
+				line = eol + 1;
+			}
+			pos += line;
+		}
+		if (null != validity && 0 != (i & 63)) {
+			flush(validity, i - 1, word, index);
+		}
+		return count;
+	}
+
+	/**
+	 * Locate and scan the date field of a record.
+	 * 
+	 * @return packed scan result, or {@link DateUtil#SCAN_FAILED}
+	 */
+	private long field(MappedByteBuffer buf, int start, int end) {
+		int fieldStart = start;
+		for (int c = 0; c <= column; c++) {
+			if (fieldStart > end) return DateUtil.SCAN_FAILED;
+			int p = fieldStart;
+			while (p < end && (buf.get(p) & 0xFF) <= ' ' && buf.get(p) != delimiter) p++;
+			final boolean quoted = (p < end && '"' == buf.get(p));
+			int fieldEnd = p;
+			if (quoted) {
+				fieldEnd = p + 1;
+				while (fieldEnd < end) {
+					if ('"' == buf.get(fieldEnd)) {
+						if (fieldEnd + 1 < end && '"' == buf.get(fieldEnd + 1)) {
+							fieldEnd += 2;
+							continue;
+						}
+						break;
+					}
+					fieldEnd++;
+				}
+				if (fieldEnd >= end) return DateUtil.SCAN_FAILED;
+				if (c == column) {
+					return DateUtil.scanRange(buf, p + 1, fieldEnd, true);
+				}
+			}
+			while (fieldEnd < end && delimiter != buf.get(fieldEnd)) fieldEnd++;
+			if (c == column) {
+				return DateUtil.scanRange(buf, fieldStart, fieldEnd, true);
+			}
+			fieldStart = fieldEnd + 1;
+		}
+		// This cannot happen
+		throw new Error("Column not found: " + column);
+	}
+
+	private static void store(int[] column, int i, boolean valid, long packed, int output) {
+		if (DateColumnParser.OUTPUT_PACKED == output) {
+			column[i] = valid ? DateUtil.toPacked(packed) : 0;
+		} else {
+			column[i] = valid ? DateUtil.toEpochDay(packed) : 0;
+		}
+	}
+
+	/**
+	 * Write the bitmap word holding value <code>i</code>. The first and last
+	 * words of a range may be shared with neighbouring ranges, so are merged
+	 * under lock; all other words belong to the range alone.
+	 */
+	private static void flush(long[] validity, int i, long word, int first) {
+		final int w = i >>> 6;
+		if (w == (first >>> 6) || 63 != (i & 63)) {
+			synchronized (validity) {
+				validity[w] |= word;
+			}
+		} else {
+			validity[w] = word;
+		}
+	}
+
+	/**
+	 * Find the start of the first line beginning at or after the specified
+	 * position.
+	 */
+	private long lineStart(FileChannel channel, long position, long size) throws IOException {
+		if (0L == position) return 0L;
+		long pos = position - 1L;
+		while (pos < size) {
+			final int length = (int)Math.min((long)windowSize, size - pos);
+			final MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+			for (int i = 0; i < length; i++) {
+				if ('\n' == buf.get(i)) {
+					return pos + i + 1L;
+				}
+			}
+			pos += length;
+		}
+		return size;
+	}
+
+	/**
+	 * Unchecked wrapper of an I/O exception thrown by a fork/join task.
+	 */
+	private static final class MappingException extends RuntimeException {
+		private static final long serialVersionUID = -1879024624125097713L;
+
+		MappingException(final IOException cause) {
+			super(cause);
+		}
+	}
+
+	/**
+	 * Task which reads or counts the records of one range.
+	 */
+	private final class ReadTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 2212036938436427580L;
+
+		private final FileChannel channel;
+		private final Range range;
+		private final int[] column;
+		private final long[] validity;
+		private final int index;
+		private final int output;
+
+		ReadTask(FileChannel channel, Range range, int[] column, long[] validity, int index, int output) {
+			this.channel = channel;
+			this.range = range;
+			this.column = column;
+			this.validity = validity;
+			this.index = index;
+			this.output = output;
+		}
+
+		@Override
+		protected Long compute() {
+			try {
+				return Long.valueOf(readRange(channel, range.start, range.end, null, column, validity, index, output));
+			} catch (IOException ioe) {
+				throw new MappingException(ioe);
+			}
+		}
+	}
+
+}
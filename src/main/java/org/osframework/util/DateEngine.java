@@ -0,0 +1,136 @@
+/*
+ * File: DateEngine.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+/**
+ * Service interface of the time zone and calendar engine behind
+ * {@link DateUtil}. Parsing, validation and formatting of primitive dates
+ * are done by <code>DateUtil</code> itself; an engine supplies the
+ * operations which depend on the default time zone, and the formatting of
+ * dates outside the range of packed dates.
+ * <p>Engines are discovered once, when <code>DateUtil</code> is first used,
+ * with {@link ServiceClassLoader} through
+ * <code>META-INF/services/org.osframework.util.DateEngine</code> files.
+ * Every discovered engine which is available is instantiated through its
+ * public no-argument constructor, and the one of highest priority is
+ * selected; the system property {@value #PROPERTY} may instead name the
+ * engine to use, by name or class name. The built-in
+ * {@link JodaDateEngine} has priority {@value JodaDateEngine#PRIORITY}.</p>
+ * <p>Implementations must be safe for use by multiple concurrent threads,
+ * and should not allocate on any method but <code>format</code>.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see DateUtil#getDateEngine()
+ */
+public interface DateEngine {
+
+	/**
+	 * System property naming the engine to use.
+	 */
+	String PROPERTY = "org.osframework.util.DateEngine";
+
+	/**
+	 * Get the name of this engine, such as <code>joda</code>.
+	 */
+	String getName();
+
+	/**
+	 * Get the priority of this engine. When no engine is named by
+	 * {@value #PROPERTY}, the available engine of highest priority is used;
+	 * faster engines should declare higher priorities.
+	 */
+	int getPriority();
+
+	/**
+	 * Determine if this engine can run in the current environment, for
+	 * example if the libraries it depends on are present.
+	 */
+	boolean isAvailable();
+
+	/**
+	 * Get the offset of the default time zone at the specified instant.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @return offset from UTC, in milliseconds
+	 */
+	int getOffset(long millis);
+
+	/**
+	 * Get the offset of the default time zone at the specified local time.
+	 * When the local time occurs twice, the offset of the earlier instant is
+	 * returned; when it does not occur, the offset before the transition.
+	 * 
+	 * @param localMillis milliseconds since 1970-01-01T00:00:00 local time
+	 * @return offset from UTC, in milliseconds
+	 */
+	int getOffsetFromLocal(long localMillis);
+
+	/**
+	 * Convert the specified local time to an instant in the default time
+	 * zone, leniently: a local time which does not occur is shifted by the
+	 * transition.
+	 * 
+	 * @param localMillis milliseconds since 1970-01-01T00:00:00 local time
+	 * @return milliseconds since 1970-01-01T00:00:00Z
+	 */
+	long localToMillis(long localMillis);
+
+	/**
+	 * Convert the specified ISO date and time of day to an instant in the
+	 * default time zone.
+	 * 
+	 * @param year ISO year
+	 * @param month month, from 1 (January) to 12 (December)
+	 * @param day day of month
+	 * @param millisOfDay milliseconds since the start of the day
+	 * @return milliseconds since 1970-01-01T00:00:00Z
+	 * @throws IllegalArgumentException if the date is invalid, or the local
+	 *         time does not occur in the default time zone
+	 */
+	long toMillis(int year, int month, int day, int millisOfDay);
+
+	/**
+	 * Truncate the specified instant to the start of its day in the default
+	 * time zone.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @return milliseconds instant of the start of the day
+	 * @see MidnightTruncator
+	 */
+	long startOfDay(long millis);
+
+	/**
+	 * Truncate each instant of the specified array, in place, to the start
+	 * of its day in the default time zone.
+	 * 
+	 * @param millis array of milliseconds instants
+	 * @throws IllegalArgumentException if argument is null
+	 */
+	void startOfDay(long[] millis);
+
+	/**
+	 * Format the date of the specified instant in the default time zone. This
+	 * method is used only for dates outside the range of packed dates.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param notation notation of date string
+	 * @return date string
+	 */
+	String format(long millis, DateNotation notation);
+
+}
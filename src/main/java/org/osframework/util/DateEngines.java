@@ -0,0 +1,120 @@
+/*
+ * File: DateEngines.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+
+/**
+ * Holder of the {@link DateEngine} selected for {@link DateUtil}. Selection
+ * happens once, on first use.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class DateEngines {
+
+	/**
+	 * Selected engine.
+	 */
+	static final DateEngine ENGINE = select(System.getProperty(DateEngine.PROPERTY), loader());
+
+	/**
+	 * Private constructor - this class cannot be instantiated.
+	 */
+	private DateEngines() {}
+
+	/**
+	 * Select an engine from those discovered through the specified class
+	 * loader. The engine named by the override, if any and available, is
+	 * selected; otherwise the available engine of highest priority, the first
+	 * discovered winning a tie. A provider which cannot be loaded or
+	 * instantiated is ignored, so that a broken plugin never prevents
+	 * <code>DateUtil</code> from initializing.
+	 * 
+	 * @param override engine name or class name; may be <code>null</code>
+	 * @param loader class loader to search for providers
+	 * @return selected engine, or a {@link JodaDateEngine} if no engine is
+	 *         available
+	 */
+	static DateEngine select(final String override, final ClassLoader loader) {
+		final String name = (null == override) ? null : override.trim();
+		DateEngine best = null;
+		final Iterator<Class<? extends DateEngine>> it = ServiceClassLoader.load(DateEngine.class, loader).iterator();
+		while (true) {
+			try {
+				if (!it.hasNext()) break;
+			} catch (ServiceConfigurationError sce) {
+				// Skip a provider which cannot be loaded; later providers may
+				// still be available
+				continue;
+			}
+			final DateEngine engine;
+			try {
+				engine = newEngine(it.next());
+			} catch (ServiceConfigurationError sce) {
+				continue;
+			}
+			if (null == engine) continue;
+			if (null != name && (name.equals(engine.getName()) || name.equals(engine.getClass().getName()))) {
+				return engine;
+			}
+			if (null == best || engine.getPriority() > best.getPriority()) {
+				best = engine;
+			}
+		}
+		if (null != name && 0 != name.length()) {
+			// Engine named by class, but not declared as a provider
+			try {
+				final DateEngine engine = newEngine(Class.forName(name, false, loader).asSubclass(DateEngine.class));
+				if (null != engine) return engine;
+			} catch (ClassNotFoundException cnfe) {
+				// Fall back to selection by priority
+			} catch (ClassCastException cce) {
+				// Fall back to selection by priority
+			}
+		}
+		return (null == best) ? new JodaDateEngine() : best;
+	}
+
+	/**
+	 * Instantiate an engine.
+	 * 
+	 * @return available engine, or <code>null</code> if the engine could not
+	 *         be instantiated or is not available
+	 */
+	private static DateEngine newEngine(final Class<? extends DateEngine> engineClass) {
+		try {
+			final DateEngine engine = engineClass.newInstance();
+			return engine.isAvailable() ? engine : null;
+		} catch (InstantiationException ie) {
+			return null;
+		} catch (IllegalAccessException iae) {
+			return null;
+		} catch (RuntimeException re) {
+			return null;
+		} catch (LinkageError le) {
+			return null;
+		}
+	}
+
+	private static ClassLoader loader() {
+		final ClassLoader context = Thread.currentThread().getContextClassLoader();
+		return (null == context) ? DateEngines.class.getClassLoader() : context;
+	}
+
+}
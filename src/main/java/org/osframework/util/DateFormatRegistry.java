@@ -0,0 +1,552 @@
+/*
+ * File: DateFormatRegistry.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Registry of fixed-width date layouts, compiled into a dispatcher which
+ * selects the layout of an input in constant time. Layouts are grouped by
+ * length; within a group, each layout is identified by the kind of
+ * character (digit, letter, or a particular separator) it expects at each
+ * position where any layout of the group has a separator or month name.
+ * Selecting a layout therefore reads a bounded number of characters and
+ * performs one hash table probe, however many layouts are registered.
+ * <p>A layout pattern is composed of the following fields and literal
+ * separators; letters may be enclosed in single quotes to be used as
+ * literals:</p>
+ * <table>
+ *   <tr><td><code>yyyy</code></td><td>four digit year</td></tr>
+ *   <tr><td><code>MM</code></td><td>two digit month</td></tr>
+ *   <tr><td><code>MMM</code></td><td>English month abbreviation, in any case</td></tr>
+ *   <tr><td><code>dd</code></td><td>two digit day of month</td></tr>
+ *   <tr><td><code>HH</code></td><td>two digit hour of day, optional</td></tr>
+ *   <tr><td><code>mm</code></td><td>two digit minute, optional</td></tr>
+ *   <tr><td><code>ss</code></td><td>two digit second, optional</td></tr>
+ * </table>
+ * <p>A new registry holds the layouts of the {@link DateNotation} constants:
+ * <code>yyyy-MM-dd</code>, <code>MM/dd/yyyy</code>, <code>yyyy/MM/dd</code>
+ * and <code>yyyyMMdd</code>. Layouts which cannot be told apart by length
+ * and separator positions, such as <code>dd.MM.yyyy</code> and
+ * <code>MM.dd.yyyy</code>, cannot be registered together. Inputs are trimmed
+ * of leading and trailing whitespace, and must match a layout exactly.</p>
+ * <p>The registry is safe for use by multiple concurrent threads. Each
+ * registration compiles a new dispatcher, which replaces the previous one
+ * atomically; parsing never blocks.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateFormatRegistry {
+
+	/**
+	 * Maximum length of a layout.
+	 */
+	public static final int MAX_LENGTH = 32;
+
+	private static final String[] DEFAULT_PATTERNS = {
+		DateNotation.ISO8601.getPattern(),
+		DateNotation.US.getPattern(),
+		DateNotation.US_REVERSE.getPattern(),
+		DateNotation.BASIC.getPattern()
+	};
+
+	private static final String[] MONTH_NAMES = {
+		"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"
+	};
+
+	private static final long NO_MATCH = -1L;
+
+	private final List<Layout> layouts = new ArrayList<Layout>();
+	private volatile Dispatcher dispatcher;
+
+	/**
+	 * Create a registry of the default layouts.
+	 */
+	public DateFormatRegistry() {
+		this(DEFAULT_PATTERNS);
+	}
+
+	/**
+	 * Create a registry of the specified layouts only.
+	 * 
+	 * @param patterns layout patterns
+	 * @throws IllegalArgumentException if any pattern is invalid, or
+	 *         ambiguous with another pattern
+	 */
+	public DateFormatRegistry(String... patterns) {
+		Validate.notNull(patterns, "Patterns argument cannot be null");
+		for (String pattern : patterns) {
+			layouts.add(new Layout(pattern));
+		}
+		this.dispatcher = new Dispatcher(layouts);
+	}
+
+	/**
+	 * Register an additional layout.
+	 * 
+	 * @param pattern layout pattern
+	 * @return this registry
+	 * @throws IllegalArgumentException if pattern is invalid, or ambiguous
+	 *         with a registered pattern
+	 */
+	public synchronized DateFormatRegistry register(String pattern) {
+		final Layout layout = new Layout(pattern);
+		final List<Layout> updated = new ArrayList<Layout>(layouts);
+		updated.add(layout);
+		// Compile before publishing, so a rejected pattern leaves no trace
+		final Dispatcher compiled = new Dispatcher(updated);
+		layouts.add(layout);
+		dispatcher = compiled;
+		return this;
+	}
+
+	/**
+	 * @return registered layout patterns, in registration order
+	 */
+	public synchronized List<String> getPatterns() {
+		final List<String> patterns = new ArrayList<String>(layouts.size());
+		for (Layout layout : layouts) {
+			patterns.add(layout.pattern);
+		}
+		return Collections.unmodifiableList(patterns);
+	}
+
+	/**
+	 * Determine the registered layout of the specified string.
+	 * 
+	 * @param s string to be examined; may be <code>null</code>
+	 * @return pattern of the layout which the string matches, or
+	 *         <code>null</code> if string does not represent a date
+	 */
+	public String getPattern(CharSequence s) {
+		final Dispatcher d = dispatcher;
+		final int start = start(s), end = end(s, start);
+		final Layout layout = d.select(s, start, end);
+		return (null != layout && NO_MATCH != layout.parse(s, start)) ? layout.pattern : null;
+	}
+
+	/**
+	 * Determine if the specified string represents a date in a registered
+	 * layout.
+	 * 
+	 * @param s string to be examined; may be <code>null</code>
+	 * @return <code>true</code> if string represents a date,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isDate(CharSequence s) {
+		return NO_MATCH != scan(s);
+	}
+
+	/**
+	 * Parse the date represented by the specified string to a packed date
+	 * value. Any time of day is ignored.
+	 * 
+	 * @param s date string to be parsed
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if string is not a date in a
+	 *         registered layout
+	 */
+	public int parseToInt(CharSequence s) {
+		final long result = scan(s);
+		if (NO_MATCH == result) {
+			throw new IllegalArgumentException("Invalid date string: " + s);
+		}
+		return (int)(result >>> 32);
+	}
+
+	/**
+	 * Parse the date represented by the specified string to a packed date
+	 * value without throwing an exception. Any time of day is ignored.
+	 * 
+	 * @param s string to be parsed; may be <code>null</code>
+	 * @return packed date value (<code>yyyyMMdd</code>), or
+	 *         {@link DateUtil#INVALID_DATE} if string is not a date in a
+	 *         registered layout
+	 */
+	public int tryParseToInt(CharSequence s) {
+		final long result = scan(s);
+		return (NO_MATCH == result) ? DateUtil.INVALID_DATE : (int)(result >>> 32);
+	}
+
+	/**
+	 * Parse the date and time represented by the specified string to a
+	 * milliseconds instant in the default time zone. Fields absent from the
+	 * layout are zero.
+	 * 
+	 * @param s date string to be parsed
+	 * @return milliseconds since 1970-01-01T00:00:00Z
+	 * @throws IllegalArgumentException if string is not a date in a
+	 *         registered layout, or its time does not exist in the default
+	 *         time zone
+	 */
+	public long parseToMillis(CharSequence s) {
+		final long result = scan(s);
+		if (NO_MATCH == result) {
+			throw new IllegalArgumentException("Invalid date string: " + s);
+		}
+		final int packedDate = (int)(result >>> 32);
+		final int secondOfDay = (int)result;
+		return DateEngines.ENGINE.toMillis(packedDate / 10000,
+		                                   (packedDate / 100) % 100,
+		                                   packedDate % 100,
+		                                   secondOfDay * 1000);
+	}
+
+	/**
+	 * Parse the date and time represented by the specified string.
+	 * 
+	 * @param s date string to be parsed
+	 * @return date represented by string, in the default time zone
+	 * @throws IllegalArgumentException if string is not a date in a
+	 *         registered layout
+	 * @see #parseToMillis(CharSequence)
+	 */
+	public Date parseDate(CharSequence s) {
+		return new Date(parseToMillis(s));
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.DateFormatRegistry")
+		                              .append(getPatterns());
+		return buf.toString();
+	}
+
+	/**
+	 * @return packed date in high word and second of day in low word, or
+	 *         {@link #NO_MATCH}
+	 */
+	private long scan(CharSequence s) {
+		if (null == s) return NO_MATCH;
+		final int start = start(s), end = end(s, start);
+		final Layout layout = dispatcher.select(s, start, end);
+		return (null == layout) ? NO_MATCH : layout.parse(s, start);
+	}
+
+	private static int start(CharSequence s) {
+		if (null == s) return 0;
+		int start = 0;
+		while (start < s.length() && s.charAt(start) <= ' ') start++;
+		return start;
+	}
+
+	private static int end(CharSequence s, int start) {
+		if (null == s) return 0;
+		int end = s.length();
+		while (end > start && s.charAt(end - 1) <= ' ') end--;
+		return end;
+	}
+
+	static int monthOfName(CharSequence s, int offset) {
+		final int c0 = s.charAt(offset) | 0x20, c1 = s.charAt(offset + 1) | 0x20, c2 = s.charAt(offset + 2) | 0x20;
+		for (int i = 0; i < MONTH_NAMES.length; i++) {
+			final String name = MONTH_NAMES[i];
+			if (c0 == name.charAt(0) && c1 == name.charAt(1) && c2 == name.charAt(2)) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	private static int digits2(CharSequence s, int offset) {
+		final int d1 = s.charAt(offset) - '0', d2 = s.charAt(offset + 1) - '0';
+		return (d1 < 0 || d1 > 9 || d2 < 0 || d2 > 9) ? -1 : (d1 * 10) + d2;
+	}
+
+	/**
+	 * Compiled fixed-width layout.
+	 */
+	static final class Layout {
+
+		static final byte LITERAL = 0;
+		static final byte DIGIT   = 1;
+		static final byte LETTER  = 2;
+
+		final String pattern;
+		final byte[] kinds;
+		final char[] literals;
+		int year = -1;
+		int month = -1;
+		int monthName = -1;
+		int day = -1;
+		int hour = -1;
+		int minute = -1;
+		int second = -1;
+
+		Layout(final String pattern) {
+			Validate.notEmpty(pattern, "Pattern argument cannot be empty");
+			this.pattern = pattern;
+			final StringBuilder chars = new StringBuilder();
+			final StringBuilder kindBuf = new StringBuilder();
+			int i = 0;
+			while (i < pattern.length()) {
+				final char c = pattern.charAt(i);
+				if ('\'' == c) {
+					final int close = pattern.indexOf('\'', i + 1);
+					Validate.isTrue((close > i + 1), "Unterminated or empty quote in pattern: " + pattern);
+					for (int q = i + 1; q < close; q++) {
+						chars.append(pattern.charAt(q));
+						kindBuf.append((char)LITERAL);
+					}
+					i = close + 1;
+					continue;
+				}
+				int run = 1;
+				while (i + run < pattern.length() && c == pattern.charAt(i + run)) run++;
+				final int pos = chars.length();
+				if ('y' == c && 4 == run) {
+					year = check(year, pos, pattern);
+				} else if ('M' == c && 2 == run) {
+					month = check(month, pos, pattern);
+				} else if ('M' == c && 3 == run) {
+					monthName = check(monthName, pos, pattern);
+				} else if ('d' == c && 2 == run) {
+					day = check(day, pos, pattern);
+				} else if ('H' == c && 2 == run) {
+					hour = check(hour, pos, pattern);
+				} else if ('m' == c && 2 == run) {
+					minute = check(minute, pos, pattern);
+				} else if ('s' == c && 2 == run) {
+					second = check(second, pos, pattern);
+				} else if (!Character.isLetter(c)) {
+					for (int r = 0; r < run; r++) {
+						chars.append(c);
+						kindBuf.append((char)LITERAL);
+					}
+					i += run;
+					continue;
+				} else {
+					throw new IllegalArgumentException("Unsupported field '" + pattern.substring(i, i + run) + "' in pattern: " + pattern);
+				}
+				final byte kind = ('M' == c && 3 == run) ? LETTER : DIGIT;
+				for (int r = 0; r < run; r++) {
+					chars.append('\0');
+					kindBuf.append((char)kind);
+				}
+				i += run;
+			}
+			Validate.isTrue((pattern.charAt(0) > ' ' && pattern.charAt(pattern.length() - 1) > ' '),
+			                "Pattern cannot begin or end with whitespace: " + pattern);
+			Validate.isTrue((year >= 0 && ((month >= 0) ^ (monthName >= 0)) && day >= 0),
+			                "Pattern must contain one each of year, month and day: " + pattern);
+			Validate.isTrue((second < 0 || minute >= 0) && (minute < 0 || hour >= 0),
+			                "Pattern cannot contain minute or second without hour: " + pattern);
+			Validate.isTrue((chars.length() <= MAX_LENGTH), "Pattern is too long: " + pattern);
+			this.literals = chars.toString().toCharArray();
+			this.kinds = new byte[kindBuf.length()];
+			for (int k = 0; k < kinds.length; k++) {
+				kinds[k] = (byte)kindBuf.charAt(k);
+			}
+		}
+
+		private static int check(int current, int pos, String pattern) {
+			Validate.isTrue((current < 0), "Pattern contains a field more than once: " + pattern);
+			return pos;
+		}
+
+		int length() {
+			return kinds.length;
+		}
+
+		/**
+		 * Match a trimmed input of the length of this layout.
+		 * 
+		 * @return packed date in high word and second of day in low word, or
+		 *         {@link DateFormatRegistry#NO_MATCH}
+		 */
+		long parse(CharSequence s, int start) {
+			for (int i = 0; i < kinds.length; i++) {
+				if (LITERAL == kinds[i] && literals[i] != s.charAt(start + i)) return NO_MATCH;
+			}
+			final int y1 = digits2(s, start + year), y2 = digits2(s, start + year + 2);
+			final int y = ((y1 | y2) < 0) ? -1 : (y1 * 100) + y2;
+			final int m = (month >= 0) ? digits2(s, start + month) : monthOfName(s, start + monthName);
+			final int d = digits2(s, start + day);
+			if (y < 0 || m < 1 || m > 12 || d < 1 || d > CalendarTable.daysInMonth(y, m)) return NO_MATCH;
+			int secondOfDay = 0;
+			if (hour >= 0) {
+				final int hh = digits2(s, start + hour);
+				if (hh < 0 || hh > 23) return NO_MATCH;
+				secondOfDay = hh * 3600;
+				if (minute >= 0) {
+					final int mm = digits2(s, start + minute);
+					if (mm < 0 || mm > 59) return NO_MATCH;
+					secondOfDay += mm * 60;
+					if (second >= 0) {
+						final int ss = digits2(s, start + second);
+						if (ss < 0 || ss > 59) return NO_MATCH;
+						secondOfDay += ss;
+					}
+				}
+			}
+			return ((long)((y * 10000) + (m * 100) + d) << 32) | secondOfDay;
+		}
+	}
+
+	/**
+	 * Immutable dispatcher compiled from a set of layouts.
+	 */
+	static final class Dispatcher {
+
+		private final Bucket[] buckets = new Bucket[MAX_LENGTH + 1];
+
+		Dispatcher(final List<Layout> layouts) {
+			final List<List<Layout>> byLength = new ArrayList<List<Layout>>();
+			for (int len = 0; len <= MAX_LENGTH; len++) {
+				byLength.add(new ArrayList<Layout>());
+			}
+			for (Layout layout : layouts) {
+				byLength.get(layout.length()).add(layout);
+			}
+			for (int len = 0; len <= MAX_LENGTH; len++) {
+				if (!byLength.get(len).isEmpty()) {
+					buckets[len] = new Bucket(byLength.get(len));
+				}
+			}
+		}
+
+		Layout select(CharSequence s, int start, int end) {
+			final int len = end - start;
+			if (len > MAX_LENGTH || null == buckets[len]) return null;
+			return buckets[len].select(s, start);
+		}
+	}
+
+	/**
+	 * Layouts of a single length, in an open addressing hash table keyed by
+	 * the kinds of character at the probed positions.
+	 */
+	static final class Bucket {
+
+		/**
+		 * Maximum number of positions probed; each is encoded in four bits
+		 * of a signature.
+		 */
+		static final int MAX_PROBES = 16;
+
+		private static final int CODE_OTHER  = 0;
+		private static final int CODE_DIGIT  = 1;
+		private static final int CODE_LETTER = 2;
+		private static final int CODE_FIRST_LITERAL = 3;
+
+		private final int[] probes;
+		private final char[] alphabet;
+		private final long[] keys;
+		private final Layout[] table;
+		private final int mask;
+
+		Bucket(final List<Layout> layouts) {
+			// Probe every position at which any layout expects a non-digit
+			final int length = layouts.get(0).length();
+			final List<Integer> positions = new ArrayList<Integer>();
+			final StringBuilder chars = new StringBuilder();
+			for (int i = 0; i < length; i++) {
+				boolean probe = false;
+				for (Layout layout : layouts) {
+					if (Layout.DIGIT != layout.kinds[i]) probe = true;
+					final char c = layout.literals[i];
+					if (Layout.LITERAL == layout.kinds[i] && CODE_OTHER == alphanumeric(c) &&
+						chars.indexOf(String.valueOf(c)) < 0) {
+						chars.append(c);
+					}
+				}
+				if (probe) positions.add(Integer.valueOf(i));
+			}
+			if (positions.size() > MAX_PROBES || chars.length() > (15 - CODE_FIRST_LITERAL + 1)) {
+				throw new IllegalArgumentException("Too many separators in patterns of length " + length);
+			}
+			this.probes = new int[positions.size()];
+			for (int i = 0; i < probes.length; i++) {
+				probes[i] = positions.get(i).intValue();
+			}
+			this.alphabet = chars.toString().toCharArray();
+			int capacity = 2;
+			while (capacity < layouts.size() * 2) capacity <<= 1;
+			this.keys = new long[capacity];
+			this.table = new Layout[capacity];
+			this.mask = capacity - 1;
+			for (Layout layout : layouts) {
+				long key = 0L;
+				for (int i = 0; i < probes.length; i++) {
+					final int p = probes[i];
+					final int code = (Layout.DIGIT == layout.kinds[p]) ? CODE_DIGIT
+					               : (Layout.LETTER == layout.kinds[p]) ? CODE_LETTER
+					               : classify(layout.literals[p]);
+					key |= (long)code << (i << 2);
+				}
+				int slot = slot(key);
+				while (null != table[slot]) {
+					if (keys[slot] == key) {
+						throw new IllegalArgumentException("Pattern " + layout.pattern +
+						                                   " is ambiguous with " + table[slot].pattern);
+					}
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				table[slot] = layout;
+			}
+		}
+
+		Layout select(CharSequence s, int start) {
+			long key = 0L;
+			for (int i = 0; i < probes.length; i++) {
+				key |= (long)classify(s.charAt(start + probes[i])) << (i << 2);
+			}
+			int slot = slot(key);
+			Layout layout;
+			while (null != (layout = table[slot])) {
+				if (keys[slot] == key) return layout;
+				slot = (slot + 1) & mask;
+			}
+			return null;
+		}
+
+		/**
+		 * Classify a character; a letter or digit in a quoted literal is
+		 * classified as any other letter or digit, and verified on parse.
+		 */
+		private int classify(char c) {
+			final int code = alphanumeric(c);
+			return (CODE_OTHER != code) ? code : literal(c);
+		}
+
+		private static int alphanumeric(char c) {
+			if ('0' <= c && c <= '9') return CODE_DIGIT;
+			if (('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z')) return CODE_LETTER;
+			return CODE_OTHER;
+		}
+
+		private int literal(char c) {
+			for (int i = 0; i < alphabet.length; i++) {
+				if (c == alphabet[i]) return CODE_FIRST_LITERAL + i;
+			}
+			return CODE_OTHER;
+		}
+
+		private int slot(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int)(h >>> 40) & mask;
+		}
+	}
+
+}
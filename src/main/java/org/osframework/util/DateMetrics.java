@@ -0,0 +1,517 @@
+/*
+ * File: DateMetrics.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Optional instrumentation of {@link DateUtil} and the classes built on its
+ * scanner. When enabled, every date validation, parse and format, and every
+ * date-time parse and format, is counted by operation; every accepted input
+ * is counted by the notation detected in it; every rejected input is counted
+ * by operation; and the latency of one call in {@value #SAMPLE_INTERVAL} is
+ * measured and recorded in a histogram of power-of-two buckets.
+ * <p>Each call of a public method is counted once, under the operation it
+ * performs rather than the method itself: for example every
+ * <code>DateUtil.tryParseToInt</code> overload, and a parse by
+ * {@link AdaptiveDateParser} or {@link DateParseCache}, counts as one
+ * {@link Operation#PARSE}, however many scans it makes of its input.</p>
+ * <p>Counts are kept in striped counters, so that concurrent callers update
+ * separate cache lines and do not contend. When metrics are disabled, which
+ * is the default, the cost to each call is a single read of a volatile
+ * field. Metrics may be enabled at startup with the system property
+ * {@value #ENABLED_PROPERTY}, or at run time with
+ * {@link #setEnabled(boolean)} either directly or through JMX after
+ * {@link #registerMBean()}.</p>
+ * <p>Counts may be read individually through the {@link DateMetricsMBean}
+ * attributes, or together with {@link #snapshot()}.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateMetrics implements DateMetricsMBean {
+
+	/**
+	 * Instrumented operations.
+	 */
+	public enum Operation {
+		/** Date validation */
+		VALIDATE,
+		/** Date parse */
+		PARSE,
+		/** Date format */
+		FORMAT,
+		/** Date-time parse */
+		PARSE_DATE_TIME,
+		/** Date-time format */
+		FORMAT_DATE_TIME
+	}
+
+	/**
+	 * Object name under which the metrics are registered with the platform
+	 * MBean server.
+	 */
+	public static final String OBJECT_NAME = "org.osframework.util:type=DateMetrics";
+
+	/**
+	 * System property which enables metrics at startup when set to
+	 * <code>true</code>.
+	 */
+	public static final String ENABLED_PROPERTY = "org.osframework.util.DateMetrics.enabled";
+
+	/**
+	 * Number of calls of an operation per latency sample; a power of two.
+	 */
+	public static final int SAMPLE_INTERVAL = 64;
+
+	/**
+	 * Number of latency histogram buckets. Bucket <code>i</code> counts
+	 * latencies in range [2<sup>i</sup>,2<sup>i+1</sup>) nanoseconds; the
+	 * first bucket also counts zero, and the last every longer latency.
+	 */
+	public static final int LATENCY_BUCKETS = 32;
+
+	static final int VALIDATE         = 0;
+	static final int PARSE            = 1;
+	static final int FORMAT           = 2;
+	static final int PARSE_DATE_TIME  = 3;
+	static final int FORMAT_DATE_TIME = 4;
+
+	/**
+	 * Value returned by {@link #begin(int)} for a call which is not sampled.
+	 */
+	static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+	private static final Operation[] OPERATIONS = Operation.values();
+
+	// Counter layout
+	private static final int CALLS      = 0;
+	private static final int REJECTIONS = CALLS + OPERATIONS.length;
+	private static final int HITS       = REJECTIONS + OPERATIONS.length;
+	private static final int LATENCY    = HITS + DateUtil.NOTATIONS.length;
+	private static final int HISTOGRAM  = LATENCY + OPERATIONS.length;
+	private static final int COUNTERS   = HISTOGRAM + (OPERATIONS.length * LATENCY_BUCKETS);
+
+	private static final DateMetrics INSTANCE = new DateMetrics();
+
+	/**
+	 * The metrics while enabled, or <code>null</code> while disabled.
+	 */
+	private static volatile DateMetrics active = Boolean.getBoolean(ENABLED_PROPERTY) ? INSTANCE : null;
+
+	private final StripedCounters counters = new StripedCounters(COUNTERS);
+
+	private DateMetrics() {}
+
+	/**
+	 * Get the metrics of this class loader.
+	 * 
+	 * @return shared metrics
+	 */
+	public static DateMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Get the metrics if enabled.
+	 * 
+	 * @return metrics, or <code>null</code> if metrics are disabled
+	 */
+	static DateMetrics active() {
+		return active;
+	}
+
+	/**
+	 * Record the start of a call.
+	 * 
+	 * @param operation one of the operation constants
+	 * @return start time in nanoseconds if call is sampled, otherwise
+	 *         {@link #NOT_SAMPLED}
+	 */
+	long begin(int operation) {
+		final long calls = counters.increment(CALLS + operation);
+		return (0L == (calls & (SAMPLE_INTERVAL - 1))) ? System.nanoTime() : NOT_SAMPLED;
+	}
+
+	/**
+	 * Record the end of a call which validates or parses its input.
+	 * 
+	 * @param operation one of the operation constants
+	 * @param start value returned by {@link #begin(int)}
+	 * @param format <code>DATE_*</code> format constant detected in accepted
+	 *               input, or a negative value if input was rejected
+	 */
+	void end(int operation, long start, int format) {
+		if (format < 0) {
+			counters.increment(REJECTIONS + operation);
+		} else {
+			counters.increment(HITS + format);
+		}
+		end(operation, start);
+	}
+
+	/**
+	 * Record the end of a date scan.
+	 * 
+	 * @param operation {@link #VALIDATE} or {@link #PARSE}
+	 * @param start value returned by {@link #begin(int)}
+	 * @param packed scan result, or {@link DateUtil#SCAN_FAILED} if input was
+	 *               rejected
+	 */
+	void endScan(int operation, long start, long packed) {
+		end(operation, start, (DateUtil.SCAN_FAILED == packed) ? -1 : DateUtil.scannedFormat(packed));
+	}
+
+	/**
+	 * Record the end of a call which neither accepts nor rejects input,
+	 * such as a format.
+	 * 
+	 * @param operation one of the operation constants
+	 * @param start value returned by {@link #begin(int)}
+	 */
+	void end(int operation, long start) {
+		if (NOT_SAMPLED != start) {
+			final long nanos = Math.max(0L, System.nanoTime() - start);
+			final int bucket = Math.min(63 - Long.numberOfLeadingZeros(nanos | 1L), LATENCY_BUCKETS - 1);
+			counters.add(LATENCY + operation, nanos);
+			counters.increment(HISTOGRAM + (operation * LATENCY_BUCKETS) + bucket);
+		}
+	}
+
+	/**
+	 * Take a snapshot of the current counts.
+	 * 
+	 * @return new snapshot
+	 */
+	public Snapshot snapshot() {
+		final long[] values = new long[COUNTERS];
+		for (int i = 0; i < COUNTERS; i++) {
+			values[i] = counters.sum(i);
+		}
+		return new Snapshot(values);
+	}
+
+	/**
+	 * Register these metrics with the platform MBean server under
+	 * {@link #OBJECT_NAME}. Registering metrics which are already registered
+	 * has no effect.
+	 * 
+	 * @throws JMException if registration fails
+	 */
+	public void registerMBean() throws JMException {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (InstanceAlreadyExistsException ignored) {
+			// Already registered
+		}
+	}
+
+	/**
+	 * Unregister these metrics from the platform MBean server. Unregistering
+	 * metrics which are not registered has no effect.
+	 * 
+	 * @throws JMException if unregistration fails
+	 */
+	public void unregisterMBean() throws JMException {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.unregisterMBean(new ObjectName(OBJECT_NAME));
+		} catch (InstanceNotFoundException ignored) {
+			// Not registered
+		}
+	}
+
+	public boolean isEnabled() {
+		return null != active;
+	}
+
+	public void setEnabled(boolean enabled) {
+		active = enabled ? this : null;
+	}
+
+	public void reset() {
+		counters.reset();
+	}
+
+	public long getValidateCalls() {
+		return counters.sum(CALLS + VALIDATE);
+	}
+
+	public long getParseCalls() {
+		return counters.sum(CALLS + PARSE);
+	}
+
+	public long getFormatCalls() {
+		return counters.sum(CALLS + FORMAT);
+	}
+
+	public long getDateTimeParseCalls() {
+		return counters.sum(CALLS + PARSE_DATE_TIME);
+	}
+
+	public long getDateTimeFormatCalls() {
+		return counters.sum(CALLS + FORMAT_DATE_TIME);
+	}
+
+	public long getRejections() {
+		return snapshot().getRejections();
+	}
+
+	public long getIso8601Hits() {
+		return counters.sum(HITS + DateUtil.DATE_ISO8601);
+	}
+
+	public long getUsHits() {
+		return counters.sum(HITS + DateUtil.DATE_US);
+	}
+
+	public long getUsReverseHits() {
+		return counters.sum(HITS + DateUtil.DATE_US_REVERSE);
+	}
+
+	public long getBasicHits() {
+		return counters.sum(HITS + DateUtil.DATE_BASIC);
+	}
+
+	public long getSampledCalls() {
+		return snapshot().getSampledCalls();
+	}
+
+	public double getMeanLatencyNanos() {
+		return snapshot().getMeanLatencyNanos();
+	}
+
+	public long getLatencyP50Nanos() {
+		return snapshot().getLatencyPercentileNanos(50.0);
+	}
+
+	public long getLatencyP99Nanos() {
+		return snapshot().getLatencyPercentileNanos(99.0);
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("org.osframework.util.DateMetrics[enabled=")
+		           .append(isEnabled())
+		           .append(']').toString();
+	}
+
+	/**
+	 * Immutable copy of the counts of the metrics at one time. The counts
+	 * are read one at a time while calls may be in progress, so a snapshot
+	 * is consistent only to within the calls made while it is taken.
+	 */
+	public static final class Snapshot {
+
+		private final long[] values;
+
+		private Snapshot(final long[] values) {
+			this.values = values;
+		}
+
+		/**
+		 * Get the number of calls of an operation.
+		 * 
+		 * @param operation instrumented operation
+		 * @return number of calls
+		 * @throws IllegalArgumentException if argument is null
+		 */
+		public long getCalls(Operation operation) {
+			return values[CALLS + ordinal(operation)];
+		}
+
+		/**
+		 * Get the number of calls of an operation which rejected their input.
+		 * 
+		 * @param operation instrumented operation
+		 * @return number of rejections
+		 * @throws IllegalArgumentException if argument is null
+		 */
+		public long getRejections(Operation operation) {
+			return values[REJECTIONS + ordinal(operation)];
+		}
+
+		/**
+		 * Get the number of calls of every operation which rejected their
+		 * input.
+		 * 
+		 * @return number of rejections
+		 */
+		public long getRejections() {
+			return sum(REJECTIONS, OPERATIONS.length);
+		}
+
+		/**
+		 * Get the number of dates accepted by validations and parses in which
+		 * a notation was detected. Formatted dates are not counted.
+		 * 
+		 * @param notation date notation
+		 * @return number of dates
+		 * @throws IllegalArgumentException if argument is null
+		 */
+		public long getHits(DateNotation notation) {
+			Validate.notNull(notation, "DateNotation argument cannot be null");
+			return values[HITS + notation.ordinal()];
+		}
+
+		/**
+		 * Get the latency histogram of an operation.
+		 * 
+		 * @param operation instrumented operation
+		 * @return new array of {@link DateMetrics#LATENCY_BUCKETS} sample
+		 *         counts
+		 * @throws IllegalArgumentException if argument is null
+		 */
+		public long[] getLatencyHistogram(Operation operation) {
+			final long[] histogram = new long[LATENCY_BUCKETS];
+			System.arraycopy(values, histogram(operation), histogram, 0, LATENCY_BUCKETS);
+			return histogram;
+		}
+
+		/**
+		 * Get the number of sampled calls of an operation.
+		 * 
+		 * @param operation instrumented operation
+		 * @return number of sampled calls
+		 * @throws IllegalArgumentException if argument is null
+		 */
+		public long getSampledCalls(Operation operation) {
+			return sum(histogram(operation), LATENCY_BUCKETS);
+		}
+
+		/**
+		 * Get the number of sampled calls of every operation.
+		 * 
+		 * @return number of sampled calls
+		 */
+		public long getSampledCalls() {
+			return sum(HISTOGRAM, OPERATIONS.length * LATENCY_BUCKETS);
+		}
+
+		/**
+		 * Get the mean latency of the sampled calls of an operation.
+		 * 
+		 * @param operation instrumented operation
+		 * @return mean latency in nanoseconds, or zero if no call was sampled
+		 * @throws IllegalArgumentException if argument is null
+		 */
+		public double getMeanLatencyNanos(Operation operation) {
+			final long samples = getSampledCalls(operation);
+			return (0L == samples) ? 0.0 : (double)values[LATENCY + operation.ordinal()] / samples;
+		}
+
+		/**
+		 * Get the mean latency of the sampled calls of every operation.
+		 * 
+		 * @return mean latency in nanoseconds, or zero if no call was sampled
+		 */
+		public double getMeanLatencyNanos() {
+			final long samples = getSampledCalls();
+			return (0L == samples) ? 0.0 : (double)sum(LATENCY, OPERATIONS.length) / samples;
+		}
+
+		/**
+		 * Estimate a percentile of the latency of the sampled calls of an
+		 * operation.
+		 * 
+		 * @param operation instrumented operation
+		 * @param percentile percentile in range (0,100]
+		 * @return upper bound of the histogram bucket holding the percentile,
+		 *         in nanoseconds, or zero if no call was sampled
+		 * @throws IllegalArgumentException if operation is null or percentile
+		 *         is out of range
+		 */
+		public long getLatencyPercentileNanos(Operation operation, double percentile) {
+			return percentile(getLatencyHistogram(operation), percentile);
+		}
+
+		/**
+		 * Estimate a percentile of the latency of the sampled calls of every
+		 * operation.
+		 * 
+		 * @param percentile percentile in range (0,100]
+		 * @return upper bound of the histogram bucket holding the percentile,
+		 *         in nanoseconds, or zero if no call was sampled
+		 * @throws IllegalArgumentException if percentile is out of range
+		 */
+		public long getLatencyPercentileNanos(double percentile) {
+			final long[] histogram = new long[LATENCY_BUCKETS];
+			for (int op = 0; op < OPERATIONS.length; op++) {
+				for (int b = 0; b < LATENCY_BUCKETS; b++) {
+					histogram[b] += values[HISTOGRAM + (op * LATENCY_BUCKETS) + b];
+				}
+			}
+			return percentile(histogram, percentile);
+		}
+
+		private static long percentile(long[] histogram, double percentile) {
+			Validate.isTrue((0.0 < percentile && percentile <= 100.0), "Invalid percentile: ", percentile);
+			long total = 0L;
+			for (long count : histogram) total += count;
+			if (0L == total) return 0L;
+			final long rank = (long)Math.ceil(total * percentile / 100.0);
+			long seen = 0L;
+			for (int b = 0; b < histogram.length; b++) {
+				seen += histogram[b];
+				if (seen >= rank) {
+					return (b < LATENCY_BUCKETS - 1) ? (1L << (b + 1)) - 1L : Long.MAX_VALUE;
+				}
+			}
+			// This cannot happen
+			throw new Error();
+		}
+
+		private static int ordinal(Operation operation) {
+			Validate.notNull(operation, "Operation argument cannot be null");
+			return operation.ordinal();
+		}
+
+		private static int histogram(Operation operation) {
+			return HISTOGRAM + (ordinal(operation) * LATENCY_BUCKETS);
+		}
+
+		private long sum(int from, int count) {
+			long sum = 0L;
+			for (int i = from, end = from + count; i < end; i++) {
+				sum += values[i];
+			}
+			return sum;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder buf = new StringBuilder("org.osframework.util.DateMetrics.Snapshot[");
+			for (Operation operation : OPERATIONS) {
+				buf.append(operation).append('=').append(getCalls(operation)).append(", ");
+			}
+			return buf.append("rejections=").append(getRejections())
+			          .append(", samples=").append(getSampledCalls())
+			          .append(']').toString();
+		}
+
+	}
+
+}
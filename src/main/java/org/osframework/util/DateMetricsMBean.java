@@ -0,0 +1,116 @@
+/*
+ * File: DateMetricsMBean.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+/**
+ * Management interface of the {@link DateUtil} metrics, published under the
+ * object name {@value DateMetrics#OBJECT_NAME}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see DateMetrics
+ */
+public interface DateMetricsMBean {
+
+	/**
+	 * Determine if metrics are being collected.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Start or stop collecting metrics. Counts collected so far are kept.
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Reset every count to zero.
+	 */
+	void reset();
+
+	/**
+	 * Get the number of date validations (<code>isDate</code>).
+	 */
+	long getValidateCalls();
+
+	/**
+	 * Get the number of date parses, including bulk and adaptive parsing.
+	 */
+	long getParseCalls();
+
+	/**
+	 * Get the number of dates formatted.
+	 */
+	long getFormatCalls();
+
+	/**
+	 * Get the number of date-time parses.
+	 */
+	long getDateTimeParseCalls();
+
+	/**
+	 * Get the number of date-times formatted.
+	 */
+	long getDateTimeFormatCalls();
+
+	/**
+	 * Get the number of validations and parses which rejected their input.
+	 */
+	long getRejections();
+
+	/**
+	 * Get the number of dates accepted in ISO-8601 notation.
+	 */
+	long getIso8601Hits();
+
+	/**
+	 * Get the number of dates accepted in US notation.
+	 */
+	long getUsHits();
+
+	/**
+	 * Get the number of dates accepted in US reverse notation.
+	 */
+	long getUsReverseHits();
+
+	/**
+	 * Get the number of dates accepted in basic notation.
+	 */
+	long getBasicHits();
+
+	/**
+	 * Get the number of calls whose latency was sampled.
+	 */
+	long getSampledCalls();
+
+	/**
+	 * Get the mean latency of sampled calls, in nanoseconds.
+	 */
+	double getMeanLatencyNanos();
+
+	/**
+	 * Get the upper bound of the median latency of sampled calls, in
+	 * nanoseconds.
+	 */
+	long getLatencyP50Nanos();
+
+	/**
+	 * Get the upper bound of the 99th percentile latency of sampled calls,
+	 * in nanoseconds.
+	 */
+	long getLatencyP99Nanos();
+
+}
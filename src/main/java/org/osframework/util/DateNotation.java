@@ -0,0 +1,73 @@
+/*
+ * File: DateNotation.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+/**
+ * Date string notations recognized by <code>DateUtil</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public enum DateNotation {
+
+	/**
+	 * ISO-8601 date notation: <code>yyyy-MM-dd</code>.
+	 */
+	ISO8601("yyyy-MM-dd"),
+
+	/**
+	 * US standard date notation: <code>MM/dd/yyyy</code>.
+	 */
+	US("MM/dd/yyyy"),
+
+	/**
+	 * US reverse date notation: <code>yyyy/MM/dd</code>.
+	 */
+	US_REVERSE("yyyy/MM/dd"),
+
+	/**
+	 * ISO-8601 basic date notation: <code>yyyyMMdd</code>.
+	 */
+	BASIC("yyyyMMdd");
+
+	private final String pattern;
+
+	private DateNotation(final String pattern) {
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Get the date pattern of this notation, as understood by
+	 * <code>java.text.SimpleDateFormat</code> and Joda-Time.
+	 * 
+	 * @return date pattern
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Get the number of characters in a date formatted in this notation with
+	 * a four-digit year.
+	 * 
+	 * @return formatted length
+	 */
+	public int getLength() {
+		return pattern.length();
+	}
+
+}
@@ -0,0 +1,413 @@
+/*
+ * File: DateParseCache.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Bounded cache of date parse results, keyed by input string. Real-world date
+ * columns contain few distinct values, so caching the outcome of each parse
+ * avoids scanning the same text repeatedly. Both dates and non-dates are
+ * cached. The results of this class are identical to those of the
+ * corresponding <code>DateUtil</code> methods.
+ * <p>Cached results are held as primitive values; every <code>Date</code>
+ * returned by {@link #parseDate(String)} is a new instance, so callers cannot
+ * corrupt the cache by modifying a returned date.</p>
+ * <p>The cache is safe for use by multiple concurrent threads. It is divided
+ * into independently locked segments, selected by the hash of the input
+ * string, so concurrent callers contend only when they use the same segment.
+ * Each segment holds an equal share of the maximum size, to within one
+ * entry, and evicts entries according to the configured
+ * {@link EvictionPolicy}; a segment may evict while others have room, but
+ * the cache never holds more than its maximum size. Hit, miss, and eviction
+ * counts are kept per segment and summed on request.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateParseCache {
+
+	/**
+	 * Order in which entries are evicted from a full cache segment.
+	 */
+	public enum EvictionPolicy {
+		/**
+		 * Evict the least recently used entry.
+		 */
+		LRU,
+		/**
+		 * Evict the least recently added entry.
+		 */
+		FIFO
+	}
+
+	/**
+	 * Default number of independently locked segments.
+	 */
+	public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+	private static final int MAX_SEGMENTS = 1 << 16;
+
+	private final Segment[] segments;
+	private final int segmentMask;
+	private final int maximumSize;
+	private final EvictionPolicy policy;
+
+	/**
+	 * Create a least-recently-used cache of the specified maximum size.
+	 * 
+	 * @param maximumSize maximum number of cached inputs
+	 * @throws IllegalArgumentException if maximum size is less than 1
+	 */
+	public DateParseCache(final int maximumSize) {
+		this(maximumSize, EvictionPolicy.LRU, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * Create a cache of the specified maximum size and eviction policy.
+	 * 
+	 * @param maximumSize maximum number of cached inputs
+	 * @param policy eviction policy
+	 * @throws IllegalArgumentException if maximum size is less than 1, or
+	 *         policy is null
+	 */
+	public DateParseCache(final int maximumSize, final EvictionPolicy policy) {
+		this(maximumSize, policy, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * Create a cache of the specified maximum size, eviction policy, and
+	 * concurrency level. The number of segments is the smallest power of two
+	 * not less than the concurrency level, and not greater than the maximum
+	 * size.
+	 * 
+	 * @param maximumSize maximum number of cached inputs
+	 * @param policy eviction policy
+	 * @param concurrencyLevel estimated number of concurrently using threads
+	 * @throws IllegalArgumentException if maximum size or concurrency level is
+	 *         less than 1, or policy is null
+	 */
+	public DateParseCache(final int maximumSize, final EvictionPolicy policy, final int concurrencyLevel) {
+		Validate.isTrue((0 < maximumSize), "Maximum size must be positive: ", maximumSize);
+		Validate.notNull(policy, "Policy argument cannot be null");
+		Validate.isTrue((0 < concurrencyLevel), "Concurrency level must be positive: ", concurrencyLevel);
+		int count = 1;
+		while (count < concurrencyLevel && count < MAX_SEGMENTS && (count << 1) <= maximumSize) {
+			count <<= 1;
+		}
+		this.segments = new Segment[count];
+		this.segmentMask = count - 1;
+		this.maximumSize = maximumSize;
+		this.policy = policy;
+		// Spread the remainder over the first segments, so that the segment
+		// capacities add up to exactly the maximum size
+		final int segmentSize = maximumSize / count;
+		final int remainder = maximumSize % count;
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(segmentSize + ((i < remainder) ? 1 : 0), (EvictionPolicy.LRU == policy));
+		}
+	}
+
+	/**
+	 * Determine if the given string is a valid date representation.
+	 * 
+	 * @param s string to be examined
+	 * @return <code>true</code> if string represents a date,
+	 *         <code>false</code> otherwise
+	 * @see DateUtil#isDate(String)
+	 */
+	public boolean isDate(String s) {
+		return (null != s) && (DateUtil.SCAN_FAILED != lookup(s, DateMetrics.VALIDATE));
+	}
+
+	/**
+	 * Parse the date represented by the specified string.
+	 * 
+	 * @param s date string to be parsed
+	 * @return new instance of represented date
+	 * @throws IllegalArgumentException if string is not a date
+	 * @see DateUtil#parseDate(String)
+	 */
+	public Date parseDate(String s) {
+		final long packed = (null == s) ? DateUtil.SCAN_FAILED : lookup(s, DateMetrics.PARSE);
+		if (DateUtil.SCAN_FAILED == packed) {
+			throw new IllegalArgumentException("Invalid date string: " + s);
+		}
+		return DateUtil.toDate(packed);
+	}
+
+	/**
+	 * Parse the date represented by the specified string to a packed date
+	 * value.
+	 * 
+	 * @param s date string to be parsed
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if string is not a date, or represents
+	 *         a year after 9999
+	 * @see DateUtil#parseToInt(String)
+	 */
+	public int parseToInt(String s) {
+		return DateUtil.toPacked(primitive(s));
+	}
+
+	/**
+	 * Parse the date represented by the specified string to an epoch day
+	 * value.
+	 * 
+	 * @param s date string to be parsed
+	 * @return number of days since 1970-01-01
+	 * @throws IllegalArgumentException if string is not a date, or represents
+	 *         a year after 9999
+	 * @see DateUtil#parseToEpochDay(String)
+	 */
+	public int parseToEpochDay(String s) {
+		return DateUtil.toEpochDay(primitive(s));
+	}
+
+	/**
+	 * Parse the date represented by the specified string without throwing an
+	 * exception.
+	 * 
+	 * @param s string to be parsed; may be <code>null</code>
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 * @see DateUtil#tryParse(CharSequence, ParsedDate)
+	 */
+	public boolean tryParse(String s, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		return result.set((null == s) ? DateUtil.SCAN_FAILED : lookup(s, DateMetrics.PARSE));
+	}
+
+	/**
+	 * Parse the date represented by the specified string to a packed date
+	 * value without throwing an exception.
+	 * 
+	 * @param s string to be parsed; may be <code>null</code>
+	 * @return packed date value (<code>yyyyMMdd</code>), or
+	 *         {@link DateUtil#INVALID_DATE} if string is not a date or
+	 *         represents a year after 9999
+	 * @see DateUtil#tryParseToInt(CharSequence)
+	 */
+	public int tryParseToInt(String s) {
+		final long packed = (null == s) ? DateUtil.SCAN_FAILED : lookup(s, DateMetrics.PARSE);
+		return (DateUtil.SCAN_FAILED == packed || DateUtil.MAX_YEAR_PACKED < DateUtil.scannedYear(packed))
+		       ? DateUtil.INVALID_DATE
+		       : DateUtil.toPacked(packed);
+	}
+
+	/**
+	 * @return maximum number of cached inputs
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return eviction policy of this cache
+	 */
+	public EvictionPolicy getEvictionPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return current number of cached inputs
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long getHitCount() {
+		long count = 0L;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				count += segment.hits;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of lookups which required a parse
+	 */
+	public long getMissCount() {
+		long count = 0L;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				count += segment.misses;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of entries evicted to make room for new entries
+	 */
+	public long getEvictionCount() {
+		long count = 0L;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				count += segment.evictions;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Calculate the proportion of lookups answered from the cache.
+	 * 
+	 * @return hit rate in range [0.0,1.0]; <code>0.0</code> if no lookups
+	 *         have been performed
+	 */
+	public double getHitRate() {
+		final long hits = getHitCount();
+		final long total = hits + getMissCount();
+		return (0L == total) ? 0.0d : ((double)hits / total);
+	}
+
+	/**
+	 * Remove all cached inputs. Counters are not reset.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.DateParseCache[")
+		                              .append(policy)
+		                              .append(",size=").append(size())
+		                              .append("/").append(maximumSize)
+		                              .append(",hits=").append(getHitCount())
+		                              .append(",misses=").append(getMissCount())
+		                              .append(",evictions=").append(getEvictionCount())
+		                              .append("]");
+		return buf.toString();
+	}
+
+	private long primitive(String s) {
+		final long packed = (null == s) ? DateUtil.SCAN_FAILED : lookup(s, DateMetrics.PARSE);
+		if (DateUtil.SCAN_FAILED == packed || DateUtil.MAX_YEAR_PACKED < DateUtil.scannedYear(packed)) {
+			throw new IllegalArgumentException("Invalid date string: " + s);
+		}
+		return packed;
+	}
+
+	/**
+	 * Look up the outcome of validating or parsing a string, recording one
+	 * call in the {@link DateMetrics} whether or not it was cached.
+	 * 
+	 * @param operation {@link DateMetrics#VALIDATE} or
+	 *                  {@link DateMetrics#PARSE}
+	 * @return packed scan result, or {@link DateUtil#SCAN_FAILED}
+	 */
+	private long lookup(String s, int operation) {
+		final DateMetrics metrics = DateMetrics.active();
+		if (null == metrics) return lookup(s).get(operation);
+		final long start = metrics.begin(operation);
+		final long packed = lookup(s).get(operation);
+		metrics.endScan(operation, start, packed);
+		return packed;
+	}
+
+	private Result lookup(String s) {
+		int h = s.hashCode();
+		h ^= (h >>> 16);
+		final Segment segment = segments[h & segmentMask];
+		synchronized (segment) {
+			final Result cached = segment.get(s);
+			if (null != cached) {
+				segment.hits++;
+				return cached;
+			}
+			segment.misses++;
+		}
+		// Parse outside the segment lock; a concurrent miss on the same input
+		// produces an identical result. The scans are not recorded in the
+		// metrics, which count the calls of this cache instead.
+		final Result result = new Result(DateUtil.trimAndScan(s, 0, s.length(), DateUtil.DATE_ANY, true),
+		                                 DateUtil.trimAndScan(s, 0, s.length(), DateUtil.DATE_ANY, false));
+		synchronized (segment) {
+			segment.put(s, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Immutable outcome of parsing one input string.
+	 */
+	private static final class Result {
+		final long packed;
+		final long validated;
+
+		Result(final long packed, final long validated) {
+			this.packed = packed;
+			this.validated = validated;
+		}
+
+		long get(int operation) {
+			return (DateMetrics.VALIDATE == operation) ? validated : packed;
+		}
+	}
+
+	/**
+	 * Bounded map which evicts its eldest entry, in access or insertion order,
+	 * when full. All access is synchronized on the segment itself.
+	 */
+	private static final class Segment extends LinkedHashMap<String, Result> {
+
+		private static final long serialVersionUID = -2793617624871528127L;
+
+		private final int capacity;
+		long hits = 0L;
+		long misses = 0L;
+		long evictions = 0L;
+
+		Segment(final int capacity, final boolean accessOrder) {
+			super(16, 0.75f, accessOrder);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+			final boolean evict = (size() > capacity);
+			if (evict) {
+				evictions++;
+			}
+			return evict;
+		}
+	}
+
+}
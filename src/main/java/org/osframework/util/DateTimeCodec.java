@@ -0,0 +1,312 @@
+/*
+ * File: DateTimeCodec.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+/**
+ * Scanner and writer of ISO-8601 extended date-time strings. The accepted
+ * grammar is:
+ * <pre>
+ * date-time = date sep time [offset]
+ * date      = yyyy-MM-dd
+ * sep       = 'T' | 't' | ' '
+ * time      = HH:mm [:ss [('.' | ',') fraction]]
+ * fraction  = 1 to 9 digits
+ * offset    = 'Z' | 'z' | ('+' | '-') HH [[':'] mm]
+ * </pre>
+ * The date is validated with the rules of {@link DateUtil#isDate(String)},
+ * so its year must be in range [1583,9999]. Hours are in range [0,23],
+ * minutes and seconds in range [0,59], and an offset may not exceed 18
+ * hours. A date-time without an offset is local time in the default time
+ * zone; a local time which does not exist because of a time zone offset
+ * transition is rejected, and an ambiguous local time resolves to the
+ * earlier instant.
+ * <p>Scanning and writing create no objects. The range to be scanned is
+ * trimmed as by <code>String.trim()</code>.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class DateTimeCodec {
+
+	/**
+	 * Value returned by the scanner when a range is not a date-time, or
+	 * represents an instant outside the range of the requested unit.
+	 */
+	static final long SCAN_FAILED = Long.MIN_VALUE;
+
+	/**
+	 * Maximum number of characters written for one date-time.
+	 */
+	static final int MAX_LENGTH = 29;
+
+	static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final long NANOS_PER_MILLI  = 1000000L;
+
+	/**
+	 * Bounds of the epoch seconds representable as a <code>long</code> count
+	 * of nanoseconds, and of the nanoseconds within the boundary seconds.
+	 * {@link Long#MIN_VALUE} itself is reserved for {@link #SCAN_FAILED}.
+	 */
+	private static final long MAX_NANOS_SECOND = Long.MAX_VALUE / NANOS_PER_SECOND;
+	private static final long MAX_NANOS_NANO   = Long.MAX_VALUE % NANOS_PER_SECOND;
+	private static final long MIN_NANOS_SECOND = DateUtil.floorDiv(Long.MIN_VALUE, NANOS_PER_SECOND);
+	private static final long MIN_NANOS_NANO   = DateUtil.floorMod(Long.MIN_VALUE, NANOS_PER_SECOND);
+
+	/**
+	 * Digit weights of a fraction of a second, indexed by digit count.
+	 */
+	private static final int[] FRACTION_SCALE = {
+		0, 100000000, 10000000, 1000000, 100000, 10000, 1000, 100, 10, 1
+	};
+
+	/**
+	 * Private constructor - this class cannot be instantiated.
+	 */
+	private DateTimeCodec() {}
+
+	/**
+	 * Trim the specified range of a character source and scan it for a
+	 * date-time.
+	 * 
+	 * @param src <code>CharSequence</code>, <code>char[]</code>,
+	 *            <code>byte[]</code>, or <code>ByteBuffer</code> to be
+	 *            scanned
+	 * @param nanos <code>true</code> to produce nanoseconds,
+	 *              <code>false</code> to produce milliseconds
+	 * @return instant in the requested unit since 1970-01-01T00:00:00Z, or
+	 *         {@link #SCAN_FAILED}
+	 */
+	static long scan(Object src, int from, int to, boolean nanos) {
+		final DateMetrics metrics = DateMetrics.active();
+		if (null == metrics) return parse(src, from, to, nanos);
+		final long start = metrics.begin(DateMetrics.PARSE_DATE_TIME);
+		final long value = parse(src, from, to, nanos);
+		metrics.end(DateMetrics.PARSE_DATE_TIME, start, (SCAN_FAILED == value) ? -1 : DateUtil.DATE_ISO8601);
+		return value;
+	}
+
+	private static long parse(Object src, int from, int to, boolean nanos) {
+		int start = from, end = to;
+		while (start < end && DateUtil.charAt(src, start) <= ' ') start++;
+		while (end > start && DateUtil.charAt(src, end - 1) <= ' ') end--;
+		if ((end - start) < 16) return SCAN_FAILED;
+
+		final long date = DateUtil.scanFormat(src, start, start + 10, DateUtil.DATE_ISO8601, true);
+		if (DateUtil.SCAN_FAILED == date || DateUtil.scannedYear(date) < DateUtil.MIN_YEAR_VALID) {
+			return SCAN_FAILED;
+		}
+		final int sep = DateUtil.charAt(src, start + 10);
+		if (('T' != sep && 't' != sep && ' ' != sep) || ':' != DateUtil.charAt(src, start + 13)) {
+			return SCAN_FAILED;
+		}
+		final int hour = digits2(src, start + 11);
+		final int minute = digits2(src, start + 14);
+		if (hour < 0 || hour > 23 || minute < 0 || minute > 59) return SCAN_FAILED;
+
+		int i = start + 16;
+		int second = 0, nano = 0;
+		if (i < end && ':' == DateUtil.charAt(src, i)) {
+			if (i + 3 > end) return SCAN_FAILED;
+			second = digits2(src, i + 1);
+			if (second < 0 || second > 59) return SCAN_FAILED;
+			i += 3;
+			if (i < end && ('.' == DateUtil.charAt(src, i) || ',' == DateUtil.charAt(src, i))) {
+				final int first = ++i;
+				int fraction = 0;
+				for (int d; i < end && (d = DateUtil.charAt(src, i) - '0') >= 0 && d <= 9; i++) {
+					if (i - first == 9) return SCAN_FAILED;
+					fraction = (fraction * 10) + d;
+				}
+				if (i == first) return SCAN_FAILED;
+				nano = fraction * FRACTION_SCALE[i - first];
+			}
+		}
+
+		final long localSecond = (CalendarTable.epochDay(DateUtil.scannedYear(date),
+		                                                 DateUtil.scannedMonth(date),
+		                                                 DateUtil.scannedDay(date)) * 86400L) +
+		                         (hour * 3600) + (minute * 60) + second;
+		final long offsetMillis;
+		if (i == end) {
+			final DateEngine engine = DateEngines.ENGINE;
+			final long localMillis = (localSecond * 1000L) + (nano / NANOS_PER_MILLI);
+			final int offset = engine.getOffsetFromLocal(localMillis);
+			if (offset != engine.getOffset(localMillis - offset)) return SCAN_FAILED;
+			offsetMillis = offset;
+		} else {
+			final int offsetSeconds = scanOffset(src, i, end);
+			if (offsetSeconds > MAX_OFFSET_SECONDS) return SCAN_FAILED;
+			offsetMillis = offsetSeconds * 1000L;
+		}
+
+		if (!nanos) {
+			return (localSecond * 1000L) + (nano / NANOS_PER_MILLI) - offsetMillis;
+		}
+		long utcSecond = localSecond - DateUtil.floorDiv(offsetMillis, 1000L);
+		long utcNano = nano - (DateUtil.floorMod(offsetMillis, 1000L) * NANOS_PER_MILLI);
+		if (utcNano < 0) {
+			utcNano += NANOS_PER_SECOND;
+			utcSecond--;
+		}
+		if (utcSecond > MAX_NANOS_SECOND || (MAX_NANOS_SECOND == utcSecond && utcNano > MAX_NANOS_NANO) ||
+			utcSecond < MIN_NANOS_SECOND || (MIN_NANOS_SECOND == utcSecond && utcNano <= MIN_NANOS_NANO)) {
+			return SCAN_FAILED;
+		}
+		return (utcSecond * NANOS_PER_SECOND) + utcNano;
+	}
+
+	/**
+	 * Scan the zone offset occupying the specified range.
+	 * 
+	 * @return offset in seconds, or a value greater than
+	 *         {@link #MAX_OFFSET_SECONDS} if range is not an offset
+	 */
+	private static int scanOffset(Object src, int start, int end) {
+		final int c = DateUtil.charAt(src, start);
+		final int len = end - start;
+		if ('Z' == c || 'z' == c) {
+			return (1 == len) ? 0 : Integer.MAX_VALUE;
+		}
+		if (('+' != c && '-' != c) || len < 3) return Integer.MAX_VALUE;
+		final int hours = digits2(src, start + 1);
+		final int minutes;
+		if (3 == len) {
+			minutes = 0;
+		} else if (5 == len) {
+			minutes = digits2(src, start + 3);
+		} else if (6 == len && ':' == DateUtil.charAt(src, start + 3)) {
+			minutes = digits2(src, start + 4);
+		} else {
+			return Integer.MAX_VALUE;
+		}
+		if (hours < 0 || minutes < 0 || minutes > 59) return Integer.MAX_VALUE;
+		final int seconds = (hours * 3600) + (minutes * 60);
+		if (seconds > MAX_OFFSET_SECONDS) return Integer.MAX_VALUE;
+		return ('-' == c) ? -seconds : seconds;
+	}
+
+	/**
+	 * Convert two ASCII digits to an integer value, or <code>-1</code> if
+	 * they are not both digits or the range ends first.
+	 */
+	private static int digits2(Object src, int index) {
+		final int tens = DateUtil.charAt(src, index) - '0';
+		final int ones = DateUtil.charAt(src, index + 1) - '0';
+		if (tens < 0 || tens > 9 || ones < 0 || ones > 9) return -1;
+		return (tens * 10) + ones;
+	}
+
+	/**
+	 * Determine if an offset is supported for writing: a whole number of
+	 * minutes no greater than 18 hours.
+	 */
+	static boolean isOffset(int offsetSeconds) {
+		return (0 == offsetSeconds % 60) &&
+		       (offsetSeconds >= -MAX_OFFSET_SECONDS && offsetSeconds <= MAX_OFFSET_SECONDS);
+	}
+
+	/**
+	 * Get the number of characters written for a date-time at the specified
+	 * offset.
+	 */
+	static int length(int offsetSeconds) {
+		return (0 == offsetSeconds) ? (MAX_LENGTH - 5) : MAX_LENGTH;
+	}
+
+	/**
+	 * Calculate the packed date of the local date of an instant at the
+	 * specified offset, or {@link DateUtil#INVALID_DATE} if that date is
+	 * outside the range of packed dates.
+	 */
+	static int localPacked(long millis, int offsetSeconds) {
+		final long epochDay = DateUtil.floorDiv(millis + (offsetSeconds * 1000L), DateUtil.MILLIS_PER_DAY);
+		return (epochDay < DateUtil.MIN_EPOCH_DAY || epochDay > DateUtil.MAX_EPOCH_DAY)
+		       ? DateUtil.INVALID_DATE
+		       : CalendarTable.toPacked(epochDay);
+	}
+
+	/**
+	 * Write an instant as <code>yyyy-MM-ddTHH:mm:ss.SSS</code> followed by
+	 * <code>Z</code> for a zero offset, or <code>&plusmn;HH:mm</code>. The
+	 * offset must have been checked with {@link #isOffset(int)} and the
+	 * local date with {@link #localPacked(long, int)}.
+	 * 
+	 * @param dst <code>char[]</code>, <code>byte[]</code>, or
+	 *            <code>StringBuilder</code>
+	 * @param offset index at which to write first character; ignored for a
+	 *               string builder
+	 * @return index after last character written
+	 */
+	static int write(long millis, int offsetSeconds, Object dst, int offset) {
+		final DateMetrics metrics = DateMetrics.active();
+		if (null == metrics) return writeFields(millis, offsetSeconds, dst, offset);
+		final long start = metrics.begin(DateMetrics.FORMAT_DATE_TIME);
+		final int end = writeFields(millis, offsetSeconds, dst, offset);
+		metrics.end(DateMetrics.FORMAT_DATE_TIME, start);
+		return end;
+	}
+
+	private static int writeFields(long millis, int offsetSeconds, Object dst, int offset) {
+		final long local = millis + (offsetSeconds * 1000L);
+		final int packed = CalendarTable.toPacked(DateUtil.floorDiv(local, DateUtil.MILLIS_PER_DAY));
+		final int millisOfDay = (int)DateUtil.floorMod(local, DateUtil.MILLIS_PER_DAY);
+		final int secondOfDay = millisOfDay / 1000;
+		final int year = packed / 10000;
+		int i = offset;
+		i = put2(dst, i, year / 100);
+		i = put2(dst, i, year % 100);
+		i = put(dst, i, '-');
+		i = put2(dst, i, (packed / 100) % 100);
+		i = put(dst, i, '-');
+		i = put2(dst, i, packed % 100);
+		i = put(dst, i, 'T');
+		i = put2(dst, i, secondOfDay / 3600);
+		i = put(dst, i, ':');
+		i = put2(dst, i, (secondOfDay / 60) % 60);
+		i = put(dst, i, ':');
+		i = put2(dst, i, secondOfDay % 60);
+		i = put(dst, i, '.');
+		final int milli = millisOfDay % 1000;
+		i = put(dst, i, (char)('0' + (milli / 100)));
+		i = put2(dst, i, milli % 100);
+		if (0 == offsetSeconds) return put(dst, i, 'Z');
+		final int minutes = Math.abs(offsetSeconds) / 60;
+		i = put(dst, i, (offsetSeconds < 0) ? '-' : '+');
+		i = put2(dst, i, minutes / 60);
+		i = put(dst, i, ':');
+		return put2(dst, i, minutes % 60);
+	}
+
+	private static int put2(Object dst, int index, int value) {
+		put(dst, index, DateUtil.DIGIT_TENS[value]);
+		return put(dst, index + 1, DateUtil.DIGIT_ONES[value]);
+	}
+
+	private static int put(Object dst, int index, char c) {
+		if (dst instanceof char[]) {
+			((char[])dst)[index] = c;
+		} else if (dst instanceof byte[]) {
+			((byte[])dst)[index] = (byte)c;
+		} else {
+			((StringBuilder)dst).append(c);
+		}
+		return index + 1;
+	}
+
+}
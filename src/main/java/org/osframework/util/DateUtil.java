@@ -17,18 +17,12 @@
  */
 package org.osframework.util;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Date;
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
-import org.joda.time.DateTime;
-import org.joda.time.MutableDateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.ISODateTimeFormat;
+import org.joda.time.DateTimeZone;
 
 /**
  * Collection of utility methods for validation, conversion, and manipulation
@@ -58,16 +52,92 @@ import org.joda.time.format.ISODateTimeFormat;
  * 		</tr>
  * 	</table>
  * </blockquote>
+ * <p>Date strings are examined by a single-pass character scanner which
+ * detects the format, extracts the year, month, and day values, and
+ * validates them without creating intermediate objects. The regular
+ * expressions exposed by this class describe the accepted formats; they are
+ * not used internally.</p>
+ * <p>In addition to <code>Date</code> objects, this class supports two
+ * primitive date representations which require no object allocation:</p>
+ * <ul>
+ * 	<li><em>packed date</em> - <code>int</code> value of the form
+ * 	<code>yyyyMMdd</code>, e.g. <code>20121225</code></li>
+ * 	<li><em>epoch day</em> - <code>int</code> count of days since
+ * 	1970-01-01, e.g. <code>15699</code></li>
+ * </ul>
+ * <p>Primitive dates are supported for years 0000 through 9999 of the ISO
+ * (proleptic Gregorian) calendar. Conversions to and from milliseconds use
+ * the default time zone, consistent with the <code>Date</code> methods of
+ * this class.</p>
+ * <p>Dates may be validated and parsed directly from a range of characters
+ * within a <code>CharSequence</code>, <code>char[]</code>, ASCII
+ * <code>byte[]</code>, or <code>ByteBuffer</code>, so that fields of a
+ * larger record need not be copied to separate strings. Leading and
+ * trailing characters less than or equal to <code>' '</code> within the
+ * range are ignored, as by <code>String.trim()</code>.</p>
+ * <p>The <code>tryParse</code> family of methods parses without throwing an
+ * exception for input which is not a date; failure is reported by a
+ * <code>false</code> return value or the {@link #INVALID_DATE} sentinel.
+ * These methods never create an exception on the failure path, which makes
+ * them preferable to the <code>parse</code> methods for input containing a
+ * high proportion of bad values.</p>
+ * <p>The <code>formatPackedDate</code> and <code>formatMillis</code> methods
+ * write the digits of a date directly into a caller-supplied
+ * <code>char[]</code>, ASCII <code>byte[]</code>, <code>StringBuilder</code>,
+ * or <code>Appendable</code>, so that writers producing many date fields
+ * allocate nothing per field.</p>
+ * <p>ISO-8601 date-times such as <code>2012-12-25T13:45:10.123Z</code> or
+ * <code>2012-12-25T19:15:10.123+05:30</code> are parsed to milliseconds or
+ * nanoseconds by {@link #parseDateTimeToMillis(CharSequence)} and
+ * {@link #parseDateTimeToNanos(CharSequence)}, and formatted by the
+ * <code>formatDateTime</code> methods, with the same allocation-free
+ * character scanning as dates.</p>
+ * <p>Conversions which depend on the default time zone are delegated to a
+ * pluggable {@link DateEngine}, selected on first use from the engines
+ * installed as services; Joda-Time is the built-in engine.</p>
  *
  * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
  */
 public final class DateUtil {
 
 	static final String NULL_ERROR = "Date argument cannot be null";
+	static final String PACKED_ERROR = "Invalid packed date: ";
+	static final String EPOCH_DAY_ERROR = "Epoch day out of range: ";
 
 	static final int DATE_ISO8601    = 0;
 	static final int DATE_US         = 1;
 	static final int DATE_US_REVERSE = 2;
+	static final int DATE_BASIC      = 3;
+	static final int DATE_ANY        = -1;
+
+	/**
+	 * Value returned by the date scanner when a string is not a date.
+	 */
+	static final long SCAN_FAILED = -1L;
+
+	static final DateNotation[] NOTATIONS = DateNotation.values();
+
+	static final int MIN_YEAR_VALID = 1583;
+	static final int MIN_YEAR_PARSE = 0;
+	static final int MAX_YEAR_PARSE = 292278993;
+
+	static final int MAX_YEAR_PACKED = 9999;
+
+	static final long MILLIS_PER_DAY = 86400000L;
+
+
+	/**
+	 * Tens and ones digits of the values 0 through 99.
+	 */
+	static final char[] DIGIT_TENS = new char[100];
+	static final char[] DIGIT_ONES = new char[100];
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			DIGIT_TENS[i] = (char)('0' + (i / 10));
+			DIGIT_ONES[i] = (char)('0' + (i % 10));
+		}
+	}
 
 	/**
 	 * Regular expression for ISO-8601 date notation.
@@ -84,22 +154,61 @@ public final class DateUtil {
 	 */
 	public static final String REGEX_DATE_US_REVERSE = "(\\d{4})/(\\d{2})/(\\d{2})";
 
-	static final Pattern PATTERN_DATE_ISO8601 = Pattern.compile(REGEX_DATE_ISO8601);
-	static final Pattern PATTERN_DATE_US = Pattern.compile(REGEX_DATE_US);
-	static final Pattern PATTERN_DATE_US_REVERSE = Pattern.compile(REGEX_DATE_US_REVERSE);
-	static final Pattern[] PATTERN_ARRAY = { PATTERN_DATE_ISO8601, PATTERN_DATE_US, PATTERN_DATE_US_REVERSE };
+	/**
+	 * Sentinel value returned by the primitive <code>tryParse</code> methods
+	 * when input is not a date. This value is neither a valid packed date nor
+	 * a supported epoch day.
+	 */
+	public static final int INVALID_DATE = Integer.MIN_VALUE;
 
-	static final DateTimeFormatter FORMAT_DATE_ISO8601_INT = ISODateTimeFormat.basicDate();
-	static final DateTimeFormatter FORMAT_DATE_ISO8601 = ISODateTimeFormat.date();
-	static final DateTimeFormatter FORMAT_DATE_US = DateTimeFormat.forPattern("MM/dd/yyyy").withLocale(Locale.US);
-	static final DateTimeFormatter FORMAT_DATE_US_REVERSE = DateTimeFormat.forPattern("yyyy/MM/dd").withLocale(Locale.US);
-	static final DateTimeFormatter[] FORMAT_ARRAY = { FORMAT_DATE_ISO8601, FORMAT_DATE_US, FORMAT_DATE_US_REVERSE };
+	/**
+	 * Minimum supported packed date value (0000-01-01).
+	 */
+	public static final int MIN_PACKED_DATE = 101;
+
+	/**
+	 * Maximum supported packed date value (9999-12-31).
+	 */
+	public static final int MAX_PACKED_DATE = 99991231;
+
+	/**
+	 * Minimum supported epoch day value (0000-01-01).
+	 */
+	public static final int MIN_EPOCH_DAY = -719528;
+
+	/**
+	 * Maximum supported epoch day value (9999-12-31).
+	 */
+	public static final int MAX_EPOCH_DAY = 2932896;
+
+	/**
+	 * Sentinel value returned by {@link #tryParseDateTimeToMillis(CharSequence)}
+	 * when input is not a date-time.
+	 */
+	public static final long INVALID_DATE_TIME = DateTimeCodec.SCAN_FAILED;
+
+	/**
+	 * Maximum number of characters written by the <code>formatDateTime</code>
+	 * methods, e.g. <code>2012-12-25T13:45:10.123+05:30</code>.
+	 */
+	public static final int MAX_DATE_TIME_LENGTH = DateTimeCodec.MAX_LENGTH;
 
 	/**
 	 * Private constructor - this class cannot be instantiated.
 	 */
 	private DateUtil() {}
 
+	/**
+	 * Get the date engine to which this class delegates time zone
+	 * conversions.
+	 * 
+	 * @return engine selected when this class was first used
+	 * @see DateEngine
+	 */
+	public static DateEngine getDateEngine() {
+		return DateEngines.ENGINE;
+	}
+
 	/**
 	 * Determine if the given string is a valid date representation. A valid
 	 * date conforms to this policy:
@@ -116,51 +225,129 @@ public final class DateUtil {
 	 *         <code>false</code> otherwise
 	 */
 	public static boolean isDate(String s) {
-		if (StringUtils.isBlank(s)) return false;
-		String trimmed = s.trim();
-		int idx = findArrayIndex(trimmed);
-		boolean valid = (-1 != idx);
-		// 2. Do values fall within accepted ranges?
-		if (valid) {
-			Pattern p  = PATTERN_ARRAY[idx];
-			Matcher m = p.matcher(trimmed);
-			valid = m.lookingAt();
-			if (valid) {
-				int year, month, day;
-				switch (idx) {
-				case DATE_ISO8601:
-				case DATE_US_REVERSE:
-					year = Integer.parseInt(m.group(1));
-					month = Integer.parseInt(m.group(2));
-					day = Integer.parseInt(m.group(3));
-					break;
-				case DATE_US:
-					year = Integer.parseInt(m.group(3));
-					month = Integer.parseInt(m.group(1));
-					day = Integer.parseInt(m.group(2));
-					break;
-				default:
-					year = month = day = -1;
-					break;
-				}
-				valid = ((1583 <= year) &&
-						 (1 <= month && month <= 12) &&
-						 (1 <= day && day <= (new DateTime(year, month, 14, 12, 0, 0, 0)).dayOfMonth().getMaximumValue()));
-			}
-		}
-		return valid;
+		return (null != s) && (SCAN_FAILED != scanRange(s, 0, s.length(), false));
+	}
+
+	/**
+	 * Determine if the specified range of a character sequence is a valid
+	 * date representation, as defined by {@link #isDate(String)}.
+	 * 
+	 * @param s character sequence to be examined
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @return <code>true</code> if range represents a date,
+	 *         <code>false</code> otherwise
+	 * @throws IndexOutOfBoundsException if range is outside sequence bounds
+	 */
+	public static boolean isDate(CharSequence s, int offset, int length) {
+		if (null == s) return false;
+		checkRange(s.length(), offset, length);
+		return (SCAN_FAILED != scanRange(s, offset, offset + length, false));
 	}
 
 	/**
-	 * Set the time parts of the specified date to 00:00:00 (midnight).
+	 * Determine if the specified range of a character array is a valid date
+	 * representation, as defined by {@link #isDate(String)}.
+	 * 
+	 * @param chars character array to be examined
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @return <code>true</code> if range represents a date,
+	 *         <code>false</code> otherwise
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 */
+	public static boolean isDate(char[] chars, int offset, int length) {
+		if (null == chars) return false;
+		checkRange(chars.length, offset, length);
+		return (SCAN_FAILED != scanRange(chars, offset, offset + length, false));
+	}
+
+	/**
+	 * Determine if the specified range of an ASCII byte array is a valid date
+	 * representation, as defined by {@link #isDate(String)}.
+	 * 
+	 * @param bytes byte array to be examined
+	 * @param offset index of first byte of range
+	 * @param length number of bytes in range
+	 * @return <code>true</code> if range represents a date,
+	 *         <code>false</code> otherwise
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 */
+	public static boolean isDate(byte[] bytes, int offset, int length) {
+		if (null == bytes) return false;
+		checkRange(bytes.length, offset, length);
+		return (SCAN_FAILED != scanRange(bytes, offset, offset + length, false));
+	}
+
+	/**
+	 * Determine if the specified range of an ASCII byte buffer is a valid
+	 * date representation, as defined by {@link #isDate(String)}. The range
+	 * is specified in absolute indexes; the position of the buffer is
+	 * neither used nor modified.
+	 * 
+	 * @param buffer byte buffer to be examined
+	 * @param offset absolute index of first byte of range
+	 * @param length number of bytes in range
+	 * @return <code>true</code> if range represents a date,
+	 *         <code>false</code> otherwise
+	 * @throws IndexOutOfBoundsException if range is outside buffer limit
+	 */
+	public static boolean isDate(ByteBuffer buffer, int offset, int length) {
+		if (null == buffer) return false;
+		checkRange(buffer.limit(), offset, length);
+		return (SCAN_FAILED != scanRange(buffer, offset, offset + length, false));
+	}
+
+	/**
+	 * Set the time parts of the specified date to 00:00:00.000 (midnight) in
+	 * the default time zone.
 	 * 
 	 * @param d date to be set to midnight
 	 * @return date representing midnight of the given date
 	 * @throws IllegalArgumentException if argument is null
+	 * @see MidnightTruncator
 	 */
 	public static Date forceMidnight(Date d) {
 		Validate.notNull(d, NULL_ERROR);
-		return forceMidnight(new DateTime(d)).toDate();
+		return new Date(DateEngines.ENGINE.startOfDay(d.getTime()));
+	}
+
+	/**
+	 * Truncate the specified milliseconds instant to midnight of its date in
+	 * the default time zone.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @return milliseconds instant of midnight of the given date
+	 * @see MidnightTruncator
+	 */
+	public static long forceMidnight(long millis) {
+		return DateEngines.ENGINE.startOfDay(millis);
+	}
+
+	/**
+	 * Truncate the specified milliseconds instant to midnight of its date in
+	 * the specified time zone.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param zone time zone of date
+	 * @return milliseconds instant of midnight of the given date
+	 * @throws IllegalArgumentException if zone argument is null
+	 * @see MidnightTruncator
+	 */
+	public static long forceMidnight(long millis, DateTimeZone zone) {
+		return MidnightTruncator.getInstance(zone).truncate(millis);
+	}
+
+	/**
+	 * Truncate each milliseconds instant of the specified array, in place, to
+	 * midnight of its date in the default time zone.
+	 * 
+	 * @param millis array of milliseconds instants
+	 * @throws IllegalArgumentException if argument is null
+	 * @see MidnightTruncator
+	 */
+	public static void forceMidnight(long[] millis) {
+		DateEngines.ENGINE.startOfDay(millis);
 	}
 
 	/**
@@ -172,8 +359,11 @@ public final class DateUtil {
 	 */
 	public static int formatDateToInt(Date d) {
 		Validate.notNull(d, NULL_ERROR);
-		String s = FORMAT_DATE_ISO8601_INT.print(forceMidnight(new DateTime(d)));
-		return Integer.parseInt(s);
+		final int epochDay = millisToEpochDay(d.getTime());
+		if (MIN_EPOCH_DAY <= epochDay && epochDay <= MAX_EPOCH_DAY) {
+			return epochDayToPacked(epochDay);
+		}
+		return Integer.parseInt(DateEngines.ENGINE.format(d.getTime(), DateNotation.BASIC));
 	}
 
 	/**
@@ -186,7 +376,7 @@ public final class DateUtil {
 	 */
 	public static String formatDateToISO8601(Date d) {
 		Validate.notNull(d, NULL_ERROR);
-		return FORMAT_DATE_ISO8601.print(forceMidnight(new DateTime(d)));
+		return formatDate(d, DATE_ISO8601);
 	}
 
 	/**
@@ -199,7 +389,7 @@ public final class DateUtil {
 	 */
 	public static String formatDateToUS(Date d) {
 		Validate.notNull(d, NULL_ERROR);
-		return FORMAT_DATE_US.print(forceMidnight(new DateTime(d)));
+		return formatDate(d, DATE_US);
 	}
 
 	/**
@@ -212,7 +402,144 @@ public final class DateUtil {
 	 */
 	public static String formatDateToUSReverse(Date d) {
 		Validate.notNull(d, NULL_ERROR);
-		return FORMAT_DATE_US_REVERSE.print(forceMidnight(new DateTime(d)));
+		return formatDate(d, DATE_US_REVERSE);
+	}
+
+	/**
+	 * Format the specified packed date into a character array.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @param notation notation in which to format date
+	 * @param buf array to receive formatted date
+	 * @param offset index at which to write first character
+	 * @return index after last character written
+	 * @throws IllegalArgumentException if notation is null or packed date is
+	 *         not valid
+	 * @throws IndexOutOfBoundsException if formatted date does not fit in
+	 *         array at offset
+	 */
+	public static int formatPackedDate(int packedDate, DateNotation notation, char[] buf, int offset) {
+		Validate.notNull(buf, "Buffer argument cannot be null");
+		checkRange(buf.length, offset, notationLength(notation));
+		return writeUnchecked(packedDate, notation, buf, offset);
+	}
+
+	/**
+	 * Format the specified packed date into an ASCII byte array.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @param notation notation in which to format date
+	 * @param buf array to receive formatted date
+	 * @param offset index at which to write first byte
+	 * @return index after last byte written
+	 * @throws IllegalArgumentException if notation is null or packed date is
+	 *         not valid
+	 * @throws IndexOutOfBoundsException if formatted date does not fit in
+	 *         array at offset
+	 */
+	public static int formatPackedDate(int packedDate, DateNotation notation, byte[] buf, int offset) {
+		Validate.notNull(buf, "Buffer argument cannot be null");
+		checkRange(buf.length, offset, notationLength(notation));
+		return writeUnchecked(packedDate, notation, buf, offset);
+	}
+
+	/**
+	 * Append the specified packed date to a string builder.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @param notation notation in which to format date
+	 * @param buf string builder to which formatted date is appended
+	 * @return the string builder
+	 * @throws IllegalArgumentException if any argument is null or packed
+	 *         date is not valid
+	 */
+	public static StringBuilder formatPackedDate(int packedDate, DateNotation notation, StringBuilder buf) {
+		Validate.notNull(buf, "Buffer argument cannot be null");
+		notationLength(notation);
+		writeUnchecked(packedDate, notation, buf, 0);
+		return buf;
+	}
+
+	/**
+	 * Append the specified packed date to an appendable.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @param notation notation in which to format date
+	 * @param out appendable to which formatted date is appended
+	 * @throws IllegalArgumentException if any argument is null or packed
+	 *         date is not valid
+	 * @throws IOException if appendable throws an I/O exception
+	 */
+	public static void formatPackedDate(int packedDate, DateNotation notation, Appendable out) throws IOException {
+		Validate.notNull(out, "Appendable argument cannot be null");
+		notationLength(notation);
+		write(packedDate, notation.ordinal(), out, 0);
+	}
+
+	/**
+	 * Format the date of the specified milliseconds instant in the default
+	 * time zone into a character array.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param notation notation in which to format date
+	 * @param buf array to receive formatted date
+	 * @param offset index at which to write first character
+	 * @return index after last character written
+	 * @throws IllegalArgumentException if notation is null or date is
+	 *         outside the range of packed dates
+	 * @throws IndexOutOfBoundsException if formatted date does not fit in
+	 *         array at offset
+	 */
+	public static int formatMillis(long millis, DateNotation notation, char[] buf, int offset) {
+		return formatPackedDate(millisToPacked(millis), notation, buf, offset);
+	}
+
+	/**
+	 * Format the date of the specified milliseconds instant in the default
+	 * time zone into an ASCII byte array.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param notation notation in which to format date
+	 * @param buf array to receive formatted date
+	 * @param offset index at which to write first byte
+	 * @return index after last byte written
+	 * @throws IllegalArgumentException if notation is null or date is
+	 *         outside the range of packed dates
+	 * @throws IndexOutOfBoundsException if formatted date does not fit in
+	 *         array at offset
+	 */
+	public static int formatMillis(long millis, DateNotation notation, byte[] buf, int offset) {
+		return formatPackedDate(millisToPacked(millis), notation, buf, offset);
+	}
+
+	/**
+	 * Append the date of the specified milliseconds instant in the default
+	 * time zone to a string builder.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param notation notation in which to format date
+	 * @param buf string builder to which formatted date is appended
+	 * @return the string builder
+	 * @throws IllegalArgumentException if any argument is null or date is
+	 *         outside the range of packed dates
+	 */
+	public static StringBuilder formatMillis(long millis, DateNotation notation, StringBuilder buf) {
+		return formatPackedDate(millisToPacked(millis), notation, buf);
+	}
+
+	/**
+	 * Append the date of the specified milliseconds instant in the default
+	 * time zone to an appendable.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param notation notation in which to format date
+	 * @param out appendable to which formatted date is appended
+	 * @throws IllegalArgumentException if any argument is null or date is
+	 *         outside the range of packed dates
+	 * @throws IOException if appendable throws an I/O exception
+	 */
+	public static void formatMillis(long millis, DateNotation notation, Appendable out) throws IOException {
+		formatPackedDate(millisToPacked(millis), notation, out);
 	}
 
 	/**
@@ -230,54 +557,1177 @@ public final class DateUtil {
 	 * @throws IllegalArgumentException if specified string is empty
 	 */
 	public static Date parseDate(String s) {
-		if (StringUtils.isBlank(s)) {
-			throw new IllegalArgumentException("Invalid date string: " + s);
+		return toDate(parseRange(s, 0, (null == s) ? 0 : s.length(), MAX_YEAR_PARSE));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character
+	 * sequence. This method accepts the same formats as
+	 * {@link #parseDate(String)}.
+	 * 
+	 * @param s character sequence containing date
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @return represented date
+	 * @throws IllegalArgumentException if range does not represent a date
+	 * @throws IndexOutOfBoundsException if range is outside sequence bounds
+	 */
+	public static Date parseDate(CharSequence s, int offset, int length) {
+		if (null != s) checkRange(s.length(), offset, length);
+		return toDate(parseRange(s, offset, length, MAX_YEAR_PARSE));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character
+	 * array. This method accepts the same formats as
+	 * {@link #parseDate(String)}.
+	 * 
+	 * @param chars character array containing date
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @return represented date
+	 * @throws IllegalArgumentException if range does not represent a date
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 */
+	public static Date parseDate(char[] chars, int offset, int length) {
+		if (null != chars) checkRange(chars.length, offset, length);
+		return toDate(parseRange(chars, offset, length, MAX_YEAR_PARSE));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * array. This method accepts the same formats as
+	 * {@link #parseDate(String)}.
+	 * 
+	 * @param bytes byte array containing date
+	 * @param offset index of first byte of range
+	 * @param length number of bytes in range
+	 * @return represented date
+	 * @throws IllegalArgumentException if range does not represent a date
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 */
+	public static Date parseDate(byte[] bytes, int offset, int length) {
+		if (null != bytes) checkRange(bytes.length, offset, length);
+		return toDate(parseRange(bytes, offset, length, MAX_YEAR_PARSE));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * buffer. This method accepts the same formats as
+	 * {@link #parseDate(String)}. The range is specified in absolute indexes;
+	 * the position of the buffer is neither used nor modified.
+	 * 
+	 * @param buffer byte buffer containing date
+	 * @param offset absolute index of first byte of range
+	 * @param length number of bytes in range
+	 * @return represented date
+	 * @throws IllegalArgumentException if range does not represent a date
+	 * @throws IndexOutOfBoundsException if range is outside buffer limit
+	 */
+	public static Date parseDate(ByteBuffer buffer, int offset, int length) {
+		if (null != buffer) checkRange(buffer.limit(), offset, length);
+		return toDate(parseRange(buffer, offset, length, MAX_YEAR_PARSE));
+	}
+
+	/**
+	 * Parse the date represented by the specified string to a packed date
+	 * value. This method accepts the same formats as
+	 * {@link #parseDate(String)}.
+	 * 
+	 * @param s date string to be parsed
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if specified string is empty, is not
+	 *         a date, or represents a year after 9999
+	 */
+	public static int parseToInt(String s) {
+		return toPacked(parseRange(s, 0, (null == s) ? 0 : s.length(), MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character
+	 * sequence to a packed date value.
+	 * 
+	 * @param s character sequence containing date
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if range does not represent a date,
+	 *         or represents a year after 9999
+	 * @throws IndexOutOfBoundsException if range is outside sequence bounds
+	 * @see #parseToInt(String)
+	 */
+	public static int parseToInt(CharSequence s, int offset, int length) {
+		if (null != s) checkRange(s.length(), offset, length);
+		return toPacked(parseRange(s, offset, length, MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character array
+	 * to a packed date value.
+	 * 
+	 * @param chars character array containing date
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if range does not represent a date,
+	 *         or represents a year after 9999
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 * @see #parseToInt(String)
+	 */
+	public static int parseToInt(char[] chars, int offset, int length) {
+		if (null != chars) checkRange(chars.length, offset, length);
+		return toPacked(parseRange(chars, offset, length, MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * array to a packed date value.
+	 * 
+	 * @param bytes byte array containing date
+	 * @param offset index of first byte of range
+	 * @param length number of bytes in range
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if range does not represent a date,
+	 *         or represents a year after 9999
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 * @see #parseToInt(String)
+	 */
+	public static int parseToInt(byte[] bytes, int offset, int length) {
+		if (null != bytes) checkRange(bytes.length, offset, length);
+		return toPacked(parseRange(bytes, offset, length, MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * buffer to a packed date value. The range is specified in absolute
+	 * indexes; the position of the buffer is neither used nor modified.
+	 * 
+	 * @param buffer byte buffer containing date
+	 * @param offset absolute index of first byte of range
+	 * @param length number of bytes in range
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if range does not represent a date,
+	 *         or represents a year after 9999
+	 * @throws IndexOutOfBoundsException if range is outside buffer limit
+	 * @see #parseToInt(String)
+	 */
+	public static int parseToInt(ByteBuffer buffer, int offset, int length) {
+		if (null != buffer) checkRange(buffer.limit(), offset, length);
+		return toPacked(parseRange(buffer, offset, length, MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified string to an epoch day
+	 * value. This method accepts the same formats as
+	 * {@link #parseDate(String)}.
+	 * 
+	 * @param s date string to be parsed
+	 * @return number of days since 1970-01-01
+	 * @throws IllegalArgumentException if specified string is empty, is not
+	 *         a date, or represents a year after 9999
+	 */
+	public static int parseToEpochDay(String s) {
+		return toEpochDay(parseRange(s, 0, (null == s) ? 0 : s.length(), MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character
+	 * sequence to an epoch day value.
+	 * 
+	 * @param s character sequence containing date
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @return number of days since 1970-01-01
+	 * @throws IllegalArgumentException if range does not represent a date,
+	 *         or represents a year after 9999
+	 * @throws IndexOutOfBoundsException if range is outside sequence bounds
+	 * @see #parseToEpochDay(String)
+	 */
+	public static int parseToEpochDay(CharSequence s, int offset, int length) {
+		if (null != s) checkRange(s.length(), offset, length);
+		return toEpochDay(parseRange(s, offset, length, MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character array
+	 * to an epoch day value.
+	 * 
+	 * @param chars character array containing date
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @return number of days since 1970-01-01
+	 * @throws IllegalArgumentException if range does not represent a date,
+	 *         or represents a year after 9999
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 * @see #parseToEpochDay(String)
+	 */
+	public static int parseToEpochDay(char[] chars, int offset, int length) {
+		if (null != chars) checkRange(chars.length, offset, length);
+		return toEpochDay(parseRange(chars, offset, length, MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * array to an epoch day value.
+	 * 
+	 * @param bytes byte array containing date
+	 * @param offset index of first byte of range
+	 * @param length number of bytes in range
+	 * @return number of days since 1970-01-01
+	 * @throws IllegalArgumentException if range does not represent a date,
+	 *         or represents a year after 9999
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 * @see #parseToEpochDay(String)
+	 */
+	public static int parseToEpochDay(byte[] bytes, int offset, int length) {
+		if (null != bytes) checkRange(bytes.length, offset, length);
+		return toEpochDay(parseRange(bytes, offset, length, MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * buffer to an epoch day value. The range is specified in absolute
+	 * indexes; the position of the buffer is neither used nor modified.
+	 * 
+	 * @param buffer byte buffer containing date
+	 * @param offset absolute index of first byte of range
+	 * @param length number of bytes in range
+	 * @return number of days since 1970-01-01
+	 * @throws IllegalArgumentException if range does not represent a date,
+	 *         or represents a year after 9999
+	 * @throws IndexOutOfBoundsException if range is outside buffer limit
+	 * @see #parseToEpochDay(String)
+	 */
+	public static int parseToEpochDay(ByteBuffer buffer, int offset, int length) {
+		if (null != buffer) checkRange(buffer.limit(), offset, length);
+		return toEpochDay(parseRange(buffer, offset, length, MAX_YEAR_PACKED));
+	}
+
+	/**
+	 * Parse the date represented by the specified character sequence without
+	 * throwing an exception. This method accepts the same formats and years as
+	 * {@link #parseDate(String)}.
+	 * 
+	 * @param s character sequence to be parsed; may be <code>null</code>
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 */
+	public static boolean tryParse(CharSequence s, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		return result.set((null == s) ? SCAN_FAILED : scanRange(s, 0, s.length(), true));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character
+	 * sequence without throwing an exception.
+	 * 
+	 * @param s character sequence containing date; may be <code>null</code>
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 * @throws IndexOutOfBoundsException if range is outside sequence bounds
+	 * @see #tryParse(CharSequence, ParsedDate)
+	 */
+	public static boolean tryParse(CharSequence s, int offset, int length, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		if (null == s) return result.set(SCAN_FAILED);
+		checkRange(s.length(), offset, length);
+		return result.set(scanRange(s, offset, offset + length, true));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of a character array
+	 * without throwing an exception.
+	 * 
+	 * @param chars character array containing date; may be <code>null</code>
+	 * @param offset index of first character of range
+	 * @param length number of characters in range
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 * @see #tryParse(CharSequence, ParsedDate)
+	 */
+	public static boolean tryParse(char[] chars, int offset, int length, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		if (null == chars) return result.set(SCAN_FAILED);
+		checkRange(chars.length, offset, length);
+		return result.set(scanRange(chars, offset, offset + length, true));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * array without throwing an exception.
+	 * 
+	 * @param bytes byte array containing date; may be <code>null</code>
+	 * @param offset index of first byte of range
+	 * @param length number of bytes in range
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 * @see #tryParse(CharSequence, ParsedDate)
+	 */
+	public static boolean tryParse(byte[] bytes, int offset, int length, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		if (null == bytes) return result.set(SCAN_FAILED);
+		checkRange(bytes.length, offset, length);
+		return result.set(scanRange(bytes, offset, offset + length, true));
+	}
+
+	/**
+	 * Parse the date represented by the specified range of an ASCII byte
+	 * buffer without throwing an exception. The range is specified in
+	 * absolute indexes; the position of the buffer is neither used nor
+	 * modified.
+	 * 
+	 * @param buffer byte buffer containing date; may be <code>null</code>
+	 * @param offset absolute index of first byte of range
+	 * @param length number of bytes in range
+	 * @param result holder to receive parsed date and notation
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 * @throws IllegalArgumentException if result argument is null
+	 * @throws IndexOutOfBoundsException if range is outside buffer limit
+	 * @see #tryParse(CharSequence, ParsedDate)
+	 */
+	public static boolean tryParse(ByteBuffer buffer, int offset, int length, ParsedDate result) {
+		Validate.notNull(result, "Result argument cannot be null");
+		if (null == buffer) return result.set(SCAN_FAILED);
+		checkRange(buffer.limit(), offset, length);
+		return result.set(scanRange(buffer, offset, offset + length, true));
+	}
+
+	/**
+	 * Parse the date represented by the specified character sequence to a
+	 * packed date value without throwing an exception.
+	 * 
+	 * @param s character sequence to be parsed; may be <code>null</code>
+	 * @return packed date value (<code>yyyyMMdd</code>), or
+	 *         {@link #INVALID_DATE} if sequence is not a date or represents a
+	 *         year after 9999
+	 * @see #parseToInt(String)
+	 */
+	public static int tryParseToInt(CharSequence s) {
+		final long packed = tryScan(s);
+		return (SCAN_FAILED == packed) ? INVALID_DATE : toPacked(packed);
+	}
+
+	/**
+	 * Parse the date represented by the specified character sequence to an
+	 * epoch day value without throwing an exception.
+	 * 
+	 * @param s character sequence to be parsed; may be <code>null</code>
+	 * @return number of days since 1970-01-01, or {@link #INVALID_DATE} if
+	 *         sequence is not a date or represents a year after 9999
+	 * @see #parseToEpochDay(String)
+	 */
+	public static int tryParseToEpochDay(CharSequence s) {
+		final long packed = tryScan(s);
+		return (SCAN_FAILED == packed) ? INVALID_DATE : toEpochDay(packed);
+	}
+
+	/**
+	 * Determine the notation of the date represented by the specified
+	 * character sequence.
+	 * 
+	 * @param s character sequence to be examined; may be <code>null</code>
+	 * @return notation of date, or <code>null</code> if sequence is not a
+	 *         date
+	 */
+	public static DateNotation detectNotation(CharSequence s) {
+		final long packed = (null == s) ? SCAN_FAILED : scanRange(s, 0, s.length(), true);
+		return (SCAN_FAILED == packed) ? null : NOTATIONS[scannedFormat(packed)];
+	}
+
+	/**
+	 * Determine if the given character sequence is a valid ISO-8601
+	 * date-time representation of the form
+	 * <code>yyyy-MM-ddTHH:mm[:ss[.fraction]][offset]</code>, where the date
+	 * is valid as defined by {@link #isDate(String)}. The separator may be
+	 * <code>'T'</code>, <code>'t'</code> or a space; the fraction of a second
+	 * may have up to 9 digits and may be introduced by <code>','</code>; and
+	 * the offset may be <code>Z</code>, <code>&plusmn;HH</code>,
+	 * <code>&plusmn;HHmm</code> or <code>&plusmn;HH:mm</code>, not exceeding
+	 * 18 hours. A date-time without an offset is local time in the default
+	 * time zone, and is not valid if that local time does not exist.
+	 * 
+	 * @param s character sequence to be examined; may be <code>null</code>
+	 * @return <code>true</code> if sequence represents a date-time,
+	 *         <code>false</code> otherwise
+	 */
+	public static boolean isDateTime(CharSequence s) {
+		return (null != s) && (INVALID_DATE_TIME != DateTimeCodec.scan(s, 0, s.length(), false));
+	}
+
+	/**
+	 * Parse the ISO-8601 date-time represented by the specified character
+	 * sequence, as defined by {@link #isDateTime(CharSequence)}. Digits of a
+	 * fraction of a second beyond milliseconds are truncated.
+	 * 
+	 * @param s character sequence to be parsed
+	 * @return milliseconds since 1970-01-01T00:00:00Z
+	 * @throws IllegalArgumentException if sequence is null or not a date-time
+	 */
+	public static long parseDateTimeToMillis(CharSequence s) {
+		return parseDateTime(s, 0, (null == s) ? 0 : s.length(), false);
+	}
+
+	/**
+	 * Parse the ISO-8601 date-time represented by the specified range of an
+	 * ASCII byte array, as defined by {@link #isDateTime(CharSequence)}.
+	 * Digits of a fraction of a second beyond milliseconds are truncated.
+	 * 
+	 * @param bytes byte array to be parsed
+	 * @param offset index of first byte of range
+	 * @param length number of bytes in range
+	 * @return milliseconds since 1970-01-01T00:00:00Z
+	 * @throws IllegalArgumentException if array is null or range is not a
+	 *         date-time
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 */
+	public static long parseDateTimeToMillis(byte[] bytes, int offset, int length) {
+		if (null != bytes) checkRange(bytes.length, offset, length);
+		return parseDateTime(bytes, offset, length, false);
+	}
+
+	/**
+	 * Parse the ISO-8601 date-time represented by the specified character
+	 * sequence, as defined by {@link #isDateTime(CharSequence)}, to
+	 * nanoseconds. A <code>long</code> count of nanoseconds covers the
+	 * instants from 1677-09-21T00:12:43.145224193Z through
+	 * 2262-04-11T23:47:16.854775807Z.
+	 * 
+	 * @param s character sequence to be parsed
+	 * @return nanoseconds since 1970-01-01T00:00:00Z
+	 * @throws IllegalArgumentException if sequence is null, is not a
+	 *         date-time, or represents an instant outside the range of
+	 *         nanoseconds
+	 */
+	public static long parseDateTimeToNanos(CharSequence s) {
+		return parseDateTime(s, 0, (null == s) ? 0 : s.length(), true);
+	}
+
+	/**
+	 * Parse the ISO-8601 date-time represented by the specified range of an
+	 * ASCII byte array to nanoseconds.
+	 * 
+	 * @param bytes byte array to be parsed
+	 * @param offset index of first byte of range
+	 * @param length number of bytes in range
+	 * @return nanoseconds since 1970-01-01T00:00:00Z
+	 * @throws IllegalArgumentException if array is null, range is not a
+	 *         date-time, or range represents an instant outside the range of
+	 *         nanoseconds
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 * @see #parseDateTimeToNanos(CharSequence)
+	 */
+	public static long parseDateTimeToNanos(byte[] bytes, int offset, int length) {
+		if (null != bytes) checkRange(bytes.length, offset, length);
+		return parseDateTime(bytes, offset, length, true);
+	}
+
+	/**
+	 * Parse the ISO-8601 date-time represented by the specified character
+	 * sequence without throwing an exception.
+	 * 
+	 * @param s character sequence to be parsed; may be <code>null</code>
+	 * @return milliseconds since 1970-01-01T00:00:00Z, or
+	 *         {@link #INVALID_DATE_TIME} if sequence is not a date-time
+	 * @see #parseDateTimeToMillis(CharSequence)
+	 */
+	public static long tryParseDateTimeToMillis(CharSequence s) {
+		return (null == s) ? INVALID_DATE_TIME : DateTimeCodec.scan(s, 0, s.length(), false);
+	}
+
+	/**
+	 * Format the specified milliseconds instant as an ISO-8601 date-time
+	 * of the form <code>yyyy-MM-ddTHH:mm:ss.SSS</code> at the specified
+	 * offset from UTC, followed by <code>Z</code> for a zero offset or
+	 * <code>&plusmn;HH:mm</code> otherwise.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param offsetSeconds offset from UTC in seconds
+	 * @param buf array to receive formatted date-time
+	 * @param offset index at which to write first character
+	 * @return index after last character written
+	 * @throws IllegalArgumentException if array is null, offset is not a
+	 *         whole number of minutes within 18 hours, or local date is
+	 *         outside the range of packed dates
+	 * @throws IndexOutOfBoundsException if formatted date-time does not fit
+	 *         in array at offset
+	 */
+	public static int formatDateTime(long millis, int offsetSeconds, char[] buf, int offset) {
+		Validate.notNull(buf, "Buffer argument cannot be null");
+		checkDateTime(millis, offsetSeconds);
+		checkRange(buf.length, offset, DateTimeCodec.length(offsetSeconds));
+		return DateTimeCodec.write(millis, offsetSeconds, buf, offset);
+	}
+
+	/**
+	 * Format the specified milliseconds instant as an ISO-8601 date-time
+	 * into an ASCII byte array.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param offsetSeconds offset from UTC in seconds
+	 * @param buf array to receive formatted date-time
+	 * @param offset index at which to write first byte
+	 * @return index after last byte written
+	 * @throws IllegalArgumentException if array is null, offset is not a
+	 *         whole number of minutes within 18 hours, or local date is
+	 *         outside the range of packed dates
+	 * @throws IndexOutOfBoundsException if formatted date-time does not fit
+	 *         in array at offset
+	 * @see #formatDateTime(long, int, char[], int)
+	 */
+	public static int formatDateTime(long millis, int offsetSeconds, byte[] buf, int offset) {
+		Validate.notNull(buf, "Buffer argument cannot be null");
+		checkDateTime(millis, offsetSeconds);
+		checkRange(buf.length, offset, DateTimeCodec.length(offsetSeconds));
+		return DateTimeCodec.write(millis, offsetSeconds, buf, offset);
+	}
+
+	/**
+	 * Append the specified milliseconds instant as an ISO-8601 date-time to
+	 * a string builder.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @param offsetSeconds offset from UTC in seconds
+	 * @param buf string builder to which formatted date-time is appended
+	 * @return the string builder
+	 * @throws IllegalArgumentException if builder is null, offset is not a
+	 *         whole number of minutes within 18 hours, or local date is
+	 *         outside the range of packed dates
+	 * @see #formatDateTime(long, int, char[], int)
+	 */
+	public static StringBuilder formatDateTime(long millis, int offsetSeconds, StringBuilder buf) {
+		Validate.notNull(buf, "Buffer argument cannot be null");
+		checkDateTime(millis, offsetSeconds);
+		DateTimeCodec.write(millis, offsetSeconds, buf, 0);
+		return buf;
+	}
+
+	/**
+	 * Determine if the given value is a valid packed date in the range
+	 * [{@link #MIN_PACKED_DATE}, {@link #MAX_PACKED_DATE}].
+	 * 
+	 * @param packedDate value to be examined
+	 * @return <code>true</code> if value is a valid packed date,
+	 *         <code>false</code> otherwise
+	 */
+	public static boolean isPackedDate(int packedDate) {
+		if (packedDate < MIN_PACKED_DATE || packedDate > MAX_PACKED_DATE) return false;
+		final int year = packedDate / 10000;
+		final int month = (packedDate / 100) % 100;
+		final int day = packedDate % 100;
+		return (1 <= month && month <= 12 && 1 <= day && day <= daysInMonth(year, month));
+	}
+
+	/**
+	 * Convert the specified packed date to an epoch day value.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return number of days since 1970-01-01
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 */
+	public static int packedToEpochDay(int packedDate) {
+		Validate.isTrue(isPackedDate(packedDate), PACKED_ERROR, packedDate);
+		return epochDay(packedDate / 10000, (packedDate / 100) % 100, packedDate % 100);
+	}
+
+	/**
+	 * Convert the specified epoch day to a packed date value.
+	 * 
+	 * @param epochDay number of days since 1970-01-01
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if argument is outside range
+	 *         [{@link #MIN_EPOCH_DAY}, {@link #MAX_EPOCH_DAY}]
+	 */
+	public static int epochDayToPacked(int epochDay) {
+		Validate.isTrue((MIN_EPOCH_DAY <= epochDay && epochDay <= MAX_EPOCH_DAY), EPOCH_DAY_ERROR, epochDay);
+		return CalendarTable.toPacked(epochDay);
+	}
+
+	/**
+	 * Convert the specified epoch day to the milliseconds instant of midnight
+	 * on that day in the default time zone.
+	 * 
+	 * @param epochDay number of days since 1970-01-01
+	 * @return milliseconds since 1970-01-01T00:00:00Z
+	 */
+	public static long epochDayToMillis(int epochDay) {
+		return DateEngines.ENGINE.localToMillis(epochDay * MILLIS_PER_DAY);
+	}
+
+	/**
+	 * Convert the specified milliseconds instant to the epoch day of its date
+	 * in the default time zone.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @return number of days since 1970-01-01
+	 */
+	public static int millisToEpochDay(long millis) {
+		final long local = millis + DateEngines.ENGINE.getOffset(millis);
+		return (int)floorDiv(local, MILLIS_PER_DAY);
+	}
+
+	/**
+	 * Convert the specified packed date to the milliseconds instant of
+	 * midnight on that date in the default time zone.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return milliseconds since 1970-01-01T00:00:00Z
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 */
+	public static long packedToMillis(int packedDate) {
+		return epochDayToMillis(packedToEpochDay(packedDate));
+	}
+
+	/**
+	 * Convert the specified milliseconds instant to the packed date of its
+	 * date in the default time zone.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @return packed date value (<code>yyyyMMdd</code>)
+	 * @throws IllegalArgumentException if the date is outside the supported
+	 *         range
+	 */
+	public static int millisToPacked(long millis) {
+		return epochDayToPacked(millisToEpochDay(millis));
+	}
+
+	/**
+	 * Add the specified number of days to a packed date.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @param days number of days to add; may be negative
+	 * @return resulting packed date value
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 *         or the result is outside the supported range
+	 */
+	public static int addDays(int packedDate, int days) {
+		return epochDayToPacked(packedToEpochDay(packedDate) + days);
+	}
+
+	/**
+	 * Add the specified number of months to a packed date. If the day of
+	 * month is not valid in the resulting month, it is adjusted to the last
+	 * day of that month.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @param months number of months to add; may be negative
+	 * @return resulting packed date value
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 *         or the result is outside the supported range
+	 */
+	public static int addMonths(int packedDate, int months) {
+		Validate.isTrue(isPackedDate(packedDate), PACKED_ERROR, packedDate);
+		final long monthIndex = ((packedDate / 10000) * 12L) + ((packedDate / 100) % 100) - 1 + months;
+		Validate.isTrue((0 <= monthIndex && monthIndex < ((MAX_YEAR_PACKED + 1) * 12L)), PACKED_ERROR, packedDate);
+		final int year = (int)(monthIndex / 12);
+		final int month = (int)(monthIndex % 12) + 1;
+		final int day = Math.min(packedDate % 100, daysInMonth(year, month));
+		return (10000 * year) + (100 * month) + day;
+	}
+
+	/**
+	 * Count the number of days from one packed date to another.
+	 * 
+	 * @param fromPackedDate start packed date value (<code>yyyyMMdd</code>)
+	 * @param toPackedDate end packed date value (<code>yyyyMMdd</code>)
+	 * @return number of days; negative if end precedes start
+	 * @throws IllegalArgumentException if either argument is not a valid
+	 *         packed date
+	 */
+	public static int daysBetween(int fromPackedDate, int toPackedDate) {
+		return packedToEpochDay(toPackedDate) - packedToEpochDay(fromPackedDate);
+	}
+
+	/**
+	 * Get the ISO day of week of a packed date.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return day of week, from 1 (Monday) to 7 (Sunday)
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 */
+	public static int dayOfWeek(int packedDate) {
+		return epochDayOfWeek(packedToEpochDay(packedDate));
+	}
+
+	/**
+	 * Get the ISO day of week of an epoch day.
+	 * 
+	 * @param epochDay number of days since 1970-01-01
+	 * @return day of week, from 1 (Monday) to 7 (Sunday)
+	 */
+	public static int epochDayOfWeek(int epochDay) {
+		return CalendarTable.dayOfWeek(epochDay);
+	}
+
+	/**
+	 * Get the day of year of a packed date.
+	 * 
+	 * @param packedDate packed date value (<code>yyyyMMdd</code>)
+	 * @return day of year, from 1 (January 1st) to 366
+	 * @throws IllegalArgumentException if argument is not a valid packed date
+	 */
+	public static int dayOfYear(int packedDate) {
+		Validate.isTrue(isPackedDate(packedDate), PACKED_ERROR, packedDate);
+		return CalendarTable.dayOfYear(packedDate / 10000, (packedDate / 100) % 100, packedDate % 100);
+	}
+
+	/**
+	 * Determine if the specified year is a leap year in the ISO (proleptic
+	 * Gregorian) calendar.
+	 * 
+	 * @param year year to be examined
+	 * @return <code>true</code> if year has 366 days,
+	 *         <code>false</code> otherwise
+	 */
+	public static boolean isLeapYear(int year) {
+		return CalendarTable.isLeapYear(year);
+	}
+
+	/**
+	 * Get the number of days in the specified month of the ISO (proleptic
+	 * Gregorian) calendar.
+	 * 
+	 * @param year year of month
+	 * @param month month, from 1 (January) to 12 (December)
+	 * @return number of days in month
+	 * @throws IllegalArgumentException if month is outside range [1,12]
+	 */
+	public static int lengthOfMonth(int year, int month) {
+		Validate.isTrue((1 <= month && month <= 12), "Invalid month: ", month);
+		return CalendarTable.daysInMonth(year, month);
+	}
+
+	/**
+	 * Format the specified date in the default time zone, using the date
+	 * engine only for dates outside the range of packed dates.
+	 */
+	private static String formatDate(Date d, int format) {
+		final int epochDay = millisToEpochDay(d.getTime());
+		if (MIN_EPOCH_DAY <= epochDay && epochDay <= MAX_EPOCH_DAY) {
+			final char[] buf = new char[NOTATIONS[format].getLength()];
+			writeUnchecked(epochDayToPacked(epochDay), NOTATIONS[format], buf, 0);
+			return new String(buf);
 		}
-		String trimmed = s.trim();
-		Date d = null;
-		if (isNumber(trimmed)) {
-			d = FORMAT_DATE_ISO8601_INT.parseDateTime(trimmed).toDate();
+		return DateEngines.ENGINE.format(d.getTime(), NOTATIONS[format]);
+	}
+
+	/**
+	 * Scan the specified range of a character source for a date. The range
+	 * is expected to be trimmed already. Two modes are supported:
+	 * <dl>
+	 * 	<dt>validate (<code>parse == false</code>)</dt>
+	 * 	<dd>The range must begin with an ISO-8601, US, or US reverse date;
+	 * 	trailing characters are ignored. Years prior to 1583 are rejected.</dd>
+	 * 	<dt>parse (<code>parse == true</code>)</dt>
+	 * 	<dd>The entire range must be an ISO-8601, US, US reverse, or basic
+	 * 	(<code>yyyyMMdd</code>) date. Any year supported by the ISO chronology
+	 * 	is accepted, and the year of a US date may have up to 9 digits.</dd>
+	 * </dl>
+	 * These rules reproduce the behavior of the regular expression and
+	 * Joda-Time formatter combination previously used by this class.
+	 * 
+	 * @param s <code>CharSequence</code>, <code>char[]</code>,
+	 *          <code>byte[]</code>, or <code>ByteBuffer</code> to be scanned
+	 * @param start index of first character to scan
+	 * @param end index after last character to scan
+	 * @param parse <code>true</code> for parse mode, <code>false</code> for
+	 *              validate mode
+	 * @return packed date value, or {@link #SCAN_FAILED} if range does not
+	 *         represent a date
+	 */
+	static long scan(Object s, int start, int end, boolean parse) {
+		if ((end - start) < 8) return SCAN_FAILED;
+		final int c4 = charAt(s, start + 4);
+		final int format;
+		if ('-' == c4) {
+			format = DATE_ISO8601;
+		} else if ('/' == c4) {
+			format = DATE_US_REVERSE;
+		} else if ('/' == charAt(s, start + 2)) {
+			format = DATE_US;
+		} else if (parse) {
+			format = DATE_BASIC;
 		} else {
-			int idx = findArrayIndex(trimmed);
-			if (-1 == idx) {
-				throw new IllegalArgumentException("Invalid date string: " + s);
-			}
-			DateTimeFormatter dtf = FORMAT_ARRAY[idx];
-			d = dtf.parseDateTime(trimmed).toDate();
+			return SCAN_FAILED;
 		}
-		return d;
+		return scanFormat(s, start, end, format, parse);
 	}
 
-	static DateTime forceMidnight(DateTime dt) {
-		MutableDateTime mdt = dt.toMutableDateTime();
-		mdt.setHourOfDay(0);
-		mdt.setMinuteOfHour(0);
-		mdt.setSecondOfMinute(0);
-		return mdt.toDateTime();
+	/**
+	 * Scan the specified range of a character source for a date in a single
+	 * format, following the rules of {@link #scan(Object, int, int, boolean)}.
+	 * The formats are mutually exclusive, so a range accepted by this method
+	 * produces the same result as a full scan.
+	 * 
+	 * @param format one of the <code>DATE_*</code> format constants
+	 * @return packed date value, or {@link #SCAN_FAILED} if range does not
+	 *         represent a date in the specified format
+	 */
+	static long scanFormat(Object s, int start, int end, int format, boolean parse) {
+		if (parse && DATE_US != format) {
+			final long packed = SwarScanner.scan(s, start, end, format);
+			if (SwarScanner.UNSUPPORTED != packed) return packed;
+		}
+		return scanFields(s, start, end, format, parse);
 	}
 
-	private static int findArrayIndex(String s) {
-		int idx = -1;
-		for (int i = 0; i < PATTERN_ARRAY.length; i++) {
-			Pattern p = PATTERN_ARRAY[i];
-			if (p.matcher(s).lookingAt()) {
-				idx = i;
-				break;
+	/**
+	 * Scan the specified range of a character source for a date in a single
+	 * format, one character at a time.
+	 * 
+	 * @see #scanFormat(Object, int, int, int, boolean)
+	 */
+	static long scanFields(Object s, int start, int end, int format, boolean parse) {
+		final int len = end - start;
+		int year, month, day;
+		switch (format) {
+		case DATE_ISO8601:
+		case DATE_US_REVERSE:
+			// yyyy-MM-dd or yyyy/MM/dd
+			final int sep = (DATE_ISO8601 == format) ? '-' : '/';
+			if (len < 10 || (parse && 10 != len) ||
+				sep != charAt(s, start + 4) || sep != charAt(s, start + 7)) {
+				return SCAN_FAILED;
+			}
+			year = digits(s, start, 4);
+			month = digits(s, start + 5, 2);
+			day = digits(s, start + 8, 2);
+			break;
+		case DATE_US:
+			// MM/dd/yyyy; when parsing, year may have up to 9 digits
+			if (len < 10 || '/' != charAt(s, start + 2) || '/' != charAt(s, start + 5)) return SCAN_FAILED;
+			month = digits(s, start, 2);
+			day = digits(s, start + 3, 2);
+			if (parse) {
+				if (15 < len) return SCAN_FAILED;
+				year = digits(s, start + 6, len - 6);
+			} else {
+				year = digits(s, start + 6, 4);
 			}
+			break;
+		case DATE_BASIC:
+			// yyyyMMdd
+			if (!parse || 8 != len) return SCAN_FAILED;
+			year = digits(s, start, 4);
+			month = digits(s, start + 4, 2);
+			day = digits(s, start + 6, 2);
+			break;
+		default:
+			return SCAN_FAILED;
 		}
-		return idx;
+		if ((year | month | day) < 0) return SCAN_FAILED;
+		final int minYear = parse ? MIN_YEAR_PARSE : MIN_YEAR_VALID;
+		if (year < minYear || year > MAX_YEAR_PARSE ||
+			month < 1 || month > 12 ||
+			day < 1 || day > daysInMonth(year, month)) {
+			return SCAN_FAILED;
+		}
+		return pack(year, month, day, format);
 	}
 
-	private static boolean isNumber(String s) {
-		char[] chars = s.toCharArray();
-		boolean number = true;
-		for (char c : chars) {
-			if (!Character.isDigit(c)) {
-				number = false;
-				break;
-			}
+	/**
+	 * Scan the specified range of a character source in parse mode.
+	 * 
+	 * @param src <code>CharSequence</code>, <code>char[]</code>,
+	 *            <code>byte[]</code>, or <code>ByteBuffer</code>; may be
+	 *            <code>null</code>
+	 * @param maxYear maximum year accepted
+	 * @return packed scan result
+	 * @throws IllegalArgumentException if range is not a supported date
+	 */
+	static long parseRange(Object src, int offset, int length, int maxYear) {
+		final long packed = (null == src)
+		                    ? SCAN_FAILED
+		                    : scanRange(src, offset, offset + length, true);
+		if (SCAN_FAILED == packed || maxYear < scannedYear(packed)) {
+			throw new IllegalArgumentException("Invalid date string: " + text(src, offset, length));
+		}
+		return packed;
+	}
+
+	/**
+	 * Scan the specified character sequence in parse mode, restricted to the
+	 * years supported by primitive dates.
+	 * 
+	 * @return packed scan result, or {@link #SCAN_FAILED}
+	 */
+	static long tryScan(CharSequence s) {
+		final long packed = (null == s) ? SCAN_FAILED : scanRange(s, 0, s.length(), true);
+		return (SCAN_FAILED == packed || MAX_YEAR_PACKED < scannedYear(packed)) ? SCAN_FAILED : packed;
+	}
+
+	/**
+	 * Trim the specified range of a character source and scan it for a date.
+	 * 
+	 * @see #scan(Object, int, int, boolean)
+	 */
+	static long scanRange(Object src, int from, int to, boolean parse) {
+		return scanRange(src, from, to, DATE_ANY, parse);
+	}
+
+	/**
+	 * Trim the specified range of a character source and scan it for a date
+	 * in the specified format. Every public validation or parse of a date
+	 * passes through this method once, which records it in the
+	 * {@link DateMetrics} while metrics are enabled.
+	 * 
+	 * @param format one of the <code>DATE_*</code> format constants, or
+	 *               {@link #DATE_ANY} to detect the format
+	 * @see #scanFormat(Object, int, int, int, boolean)
+	 */
+	static long scanRange(Object src, int from, int to, int format, boolean parse) {
+		final DateMetrics metrics = DateMetrics.active();
+		if (null == metrics) return trimAndScan(src, from, to, format, parse);
+		final int operation = parse ? DateMetrics.PARSE : DateMetrics.VALIDATE;
+		final long start = metrics.begin(operation);
+		final long packed = trimAndScan(src, from, to, format, parse);
+		metrics.endScan(operation, start, packed);
+		return packed;
+	}
+
+	/**
+	 * Trim the specified range of a character source and scan it for a date
+	 * in the specified format, without recording the scan in the
+	 * {@link DateMetrics}. Callers which scan an input more than once, such
+	 * as to retry in another format, use this method and record the call
+	 * themselves, so that each call is counted once.
+	 * 
+	 * @see #scanRange(Object, int, int, int, boolean)
+	 */
+	static long trimAndScan(Object src, int from, int to, int format, boolean parse) {
+		int start = from, end = to;
+		while (start < end && charAt(src, start) <= ' ') start++;
+		while (end > start && charAt(src, end - 1) <= ' ') end--;
+		return (DATE_ANY == format)
+		       ? scan(src, start, end, parse)
+		       : scanFormat(src, start, end, format, parse);
+	}
+
+	/**
+	 * Scan the specified range of a character source for a date-time.
+	 * 
+	 * @throws IllegalArgumentException if range is not a date-time
+	 */
+	static long parseDateTime(Object src, int offset, int length, boolean nanos) {
+		final long value = (null == src)
+		                   ? DateTimeCodec.SCAN_FAILED
+		                   : DateTimeCodec.scan(src, offset, offset + length, nanos);
+		if (DateTimeCodec.SCAN_FAILED == value) {
+			throw new IllegalArgumentException("Invalid date-time string: " + text(src, offset, length));
+		}
+		return value;
+	}
+
+	static void checkDateTime(long millis, int offsetSeconds) {
+		Validate.isTrue(DateTimeCodec.isOffset(offsetSeconds), "Invalid offset seconds: ", offsetSeconds);
+		if (INVALID_DATE == DateTimeCodec.localPacked(millis, offsetSeconds)) {
+			throw new IllegalArgumentException("Instant out of range: " + millis);
+		}
+	}
+
+	static Date toDate(long packed) {
+		return new Date(toMillis(packed));
+	}
+
+	static long toMillis(long packed) {
+		return DateEngines.ENGINE.toMillis(scannedYear(packed), scannedMonth(packed), scannedDay(packed), 0);
+	}
+
+	static int toPacked(long packed) {
+		return (10000 * scannedYear(packed)) + (100 * scannedMonth(packed)) + scannedDay(packed);
+	}
+
+	static int toEpochDay(long packed) {
+		return epochDay(scannedYear(packed), scannedMonth(packed), scannedDay(packed));
+	}
+
+	/**
+	 * Calculate the epoch day of the specified ISO date. Arguments are not
+	 * validated.
+	 */
+	static int epochDay(int year, int month, int day) {
+		return (int)CalendarTable.epochDay(year, month, day);
+	}
+
+	static long floorDiv(long x, long y) {
+		final long q = x / y;
+		return ((x % y != 0) && ((x ^ y) < 0)) ? (q - 1) : q;
+	}
+
+	static long floorMod(long x, long y) {
+		return x - (floorDiv(x, y) * y);
+	}
+
+	static long pack(int year, int month, int day, int format) {
+		return ((long)year << 12) | (month << 8) | (day << 3) | format;
+	}
+
+	static int scannedYear(long packed) {
+		return (int)(packed >>> 12);
+	}
+
+	static int scannedMonth(long packed) {
+		return (int)(packed >>> 8) & 0xF;
+	}
+
+	static int scannedDay(long packed) {
+		return (int)(packed >>> 3) & 0x1F;
+	}
+
+	static int scannedFormat(long packed) {
+		return (int)packed & 0x7;
+	}
+
+	static int daysInMonth(int year, int month) {
+		return CalendarTable.daysInMonth(year, month);
+	}
+
+	private static int notationLength(DateNotation notation) {
+		Validate.notNull(notation, "Notation argument cannot be null");
+		return notation.getLength();
+	}
+
+	/**
+	 * Write a packed date to a destination which cannot throw an I/O
+	 * exception.
+	 */
+	private static int writeUnchecked(int packedDate, DateNotation notation, Object dst, int offset) {
+		try {
+			return write(packedDate, notation.ordinal(), dst, offset);
+		} catch (IOException ioe) {
+			// This cannot happen
+			throw new Error(ioe);
+		}
+	}
+
+	/**
+	 * Write a packed date in the specified format to a destination.
+	 * 
+	 * @param dst <code>char[]</code>, <code>byte[]</code>, or
+	 *            <code>Appendable</code>
+	 * @param offset index at which to write first character; ignored for an
+	 *               appendable
+	 * @return index after last character written
+	 * @see DateMetrics
+	 */
+	private static int write(int packedDate, int format, Object dst, int offset) throws IOException {
+		final DateMetrics metrics = DateMetrics.active();
+		if (null == metrics) return writeFields(packedDate, format, dst, offset);
+		final long start = metrics.begin(DateMetrics.FORMAT);
+		final int end = writeFields(packedDate, format, dst, offset);
+		metrics.end(DateMetrics.FORMAT, start);
+		return end;
+	}
+
+	private static int writeFields(int packedDate, int format, Object dst, int offset) throws IOException {
+		Validate.isTrue(isPackedDate(packedDate), PACKED_ERROR, packedDate);
+		final int year = packedDate / 10000;
+		final int month = (packedDate / 100) % 100;
+		final int day = packedDate % 100;
+		int i = offset;
+		switch (format) {
+		case DATE_US:
+			i = put2(dst, i, month);
+			i = put(dst, i, '/');
+			i = put2(dst, i, day);
+			i = put(dst, i, '/');
+			i = put2(dst, i, year / 100);
+			i = put2(dst, i, year % 100);
+			break;
+		case DATE_BASIC:
+			i = put2(dst, i, year / 100);
+			i = put2(dst, i, year % 100);
+			i = put2(dst, i, month);
+			i = put2(dst, i, day);
+			break;
+		default:
+			final char sep = (DATE_ISO8601 == format) ? '-' : '/';
+			i = put2(dst, i, year / 100);
+			i = put2(dst, i, year % 100);
+			i = put(dst, i, sep);
+			i = put2(dst, i, month);
+			i = put(dst, i, sep);
+			i = put2(dst, i, day);
+			break;
+		}
+		return i;
+	}
+
+	private static int put2(Object dst, int index, int value) throws IOException {
+		put(dst, index, DIGIT_TENS[value]);
+		return put(dst, index + 1, DIGIT_ONES[value]);
+	}
+
+	private static int put(Object dst, int index, char c) throws IOException {
+		if (dst instanceof char[]) {
+			((char[])dst)[index] = c;
+		} else if (dst instanceof byte[]) {
+			((byte[])dst)[index] = (byte)c;
+		} else {
+			((Appendable)dst).append(c);
+		}
+		return index + 1;
+	}
+
+	/**
+	 * Convert a run of ASCII digits to an integer value.
+	 * 
+	 * @return value of digits, or <code>-1</code> if any character in range
+	 *         is not an ASCII digit
+	 */
+	private static int digits(Object s, int offset, int count) {
+		int value = 0;
+		for (int i = offset, end = offset + count; i < end; i++) {
+			final int d = charAt(s, i) - '0';
+			if (d < 0 || d > 9) return -1;
+			value = (value * 10) + d;
+		}
+		return value;
+	}
+
+	/**
+	 * Get the character at the specified index of a character source. Bytes
+	 * are treated as unsigned ASCII values.
+	 */
+	static int charAt(Object src, int index) {
+		if (src instanceof String) return ((String)src).charAt(index);
+		if (src instanceof byte[]) return ((byte[])src)[index] & 0xFF;
+		if (src instanceof char[]) return ((char[])src)[index];
+		if (src instanceof ByteBuffer) return ((ByteBuffer)src).get(index) & 0xFF;
+		return ((CharSequence)src).charAt(index);
+	}
+
+	/**
+	 * Create a string of the specified range of a character source, for use
+	 * in error messages.
+	 */
+	private static String text(Object src, int offset, int length) {
+		if (src instanceof String) return ((String)src).substring(offset, offset + length);
+		if (null == src) return null;
+		final StringBuilder buf = new StringBuilder(length);
+		for (int i = offset, end = offset + length; i < end; i++) {
+			buf.append((char)charAt(src, i));
+		}
+		return buf.toString();
+	}
+
+	static void checkRange(int capacity, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > capacity - length) {
+			throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length +
+			                                    ") out of bounds for length " + capacity);
 		}
-		return number;
 	}
 
 }
@@ -0,0 +1,110 @@
+/*
+ * File: JodaDateEngine.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.Locale;
+
+import org.apache.commons.lang.Validate;
+import org.joda.time.DateTimeZone;
+import org.joda.time.MutableDateTime;
+import org.joda.time.chrono.ISOChronology;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Date engine backed by Joda-Time. The default time zone is the Joda-Time
+ * default, {@link DateTimeZone#getDefault()}, and start-of-day truncation
+ * is done by a {@link MidnightTruncator}. This engine is always available,
+ * and is used when no engine of higher priority is installed.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class JodaDateEngine implements DateEngine {
+
+	/**
+	 * Name of this engine.
+	 */
+	public static final String NAME = "joda";
+
+	/**
+	 * Priority of this engine.
+	 */
+	public static final int PRIORITY = 0;
+
+	private static final DateTimeFormatter[] FORMATTERS = {
+		ISODateTimeFormat.date(),
+		DateTimeFormat.forPattern("MM/dd/yyyy").withLocale(Locale.US),
+		DateTimeFormat.forPattern("yyyy/MM/dd").withLocale(Locale.US),
+		ISODateTimeFormat.basicDate()
+	};
+
+	public String getName() {
+		return NAME;
+	}
+
+	public int getPriority() {
+		return PRIORITY;
+	}
+
+	public boolean isAvailable() {
+		return true;
+	}
+
+	public int getOffset(long millis) {
+		return DateTimeZone.getDefault().getOffset(millis);
+	}
+
+	public int getOffsetFromLocal(long localMillis) {
+		return DateTimeZone.getDefault().getOffsetFromLocal(localMillis);
+	}
+
+	public long localToMillis(long localMillis) {
+		return DateTimeZone.getDefault().convertLocalToUTC(localMillis, false);
+	}
+
+	public long toMillis(int year, int month, int day, int millisOfDay) {
+		return ISOChronology.getInstance().getDateTimeMillis(year, month, day, millisOfDay);
+	}
+
+	public long startOfDay(long millis) {
+		return MidnightTruncator.getDefault().truncate(millis);
+	}
+
+	public void startOfDay(long[] millis) {
+		MidnightTruncator.getDefault().truncate(millis);
+	}
+
+	public String format(long millis, DateNotation notation) {
+		Validate.notNull(notation, "DateNotation argument cannot be null");
+		final MutableDateTime mdt = new MutableDateTime(millis);
+		mdt.setHourOfDay(0);
+		mdt.setMinuteOfHour(0);
+		mdt.setSecondOfMinute(0);
+		return FORMATTERS[notation.ordinal()].print(mdt);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.JodaDateEngine[")
+		                              .append(NAME)
+		                              .append("]");
+		return buf.toString();
+	}
+
+}
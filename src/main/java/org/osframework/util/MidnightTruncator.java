@@ -0,0 +1,233 @@
+/*
+ * File: MidnightTruncator.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.Validate;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Truncates millisecond instants to the start of their day in a time zone.
+ * The start of a day is normally local midnight; on a day whose midnight is
+ * skipped by a daylight saving transition, it is the first instant of the
+ * day, and on a day whose midnight occurs twice, it is the earlier instant.
+ * <p>Each instance caches the most recently used periods during which the
+ * offset of its zone is constant, bounded by the zone's transitions. An
+ * instant which falls in a cached period is truncated with plain arithmetic;
+ * the zone rules are consulted only when an instant falls outside every
+ * cached period, or its day begins before the start of the period.</p>
+ * <p>Instances are immutable apart from the cache, and are safe for use by
+ * multiple concurrent threads.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class MidnightTruncator {
+
+	private static final int CACHED_PERIODS = 4;
+
+	private static final ConcurrentMap<DateTimeZone, MidnightTruncator> INSTANCES =
+		new ConcurrentHashMap<DateTimeZone, MidnightTruncator>();
+
+	private final DateTimeZone zone;
+	private volatile Period[] periods;
+
+	private MidnightTruncator(final DateTimeZone zone) {
+		this.zone = zone;
+		this.periods = zone.isFixed()
+		               ? new Period[] { new Period(Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, zone.getOffset(0L)) }
+		               : new Period[0];
+	}
+
+	/**
+	 * Get the truncator of the specified time zone.
+	 * 
+	 * @param zone time zone
+	 * @return shared truncator of time zone
+	 * @throws IllegalArgumentException if argument is null
+	 */
+	public static MidnightTruncator getInstance(DateTimeZone zone) {
+		Validate.notNull(zone, "DateTimeZone argument cannot be null");
+		MidnightTruncator truncator = INSTANCES.get(zone);
+		if (null == truncator) {
+			final MidnightTruncator created = new MidnightTruncator(zone);
+			truncator = INSTANCES.putIfAbsent(zone, created);
+			if (null == truncator) {
+				truncator = created;
+			}
+		}
+		return truncator;
+	}
+
+	/**
+	 * Get the truncator of the current default time zone.
+	 * 
+	 * @return shared truncator of default time zone
+	 */
+	public static MidnightTruncator getDefault() {
+		return getInstance(DateTimeZone.getDefault());
+	}
+
+	/**
+	 * @return time zone of this truncator
+	 */
+	public DateTimeZone getZone() {
+		return zone;
+	}
+
+	/**
+	 * Truncate the specified instant to the start of its day.
+	 * 
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @return milliseconds instant of the start of the day
+	 */
+	public long truncate(long millis) {
+		final Period[] cached = periods;
+		for (int i = 0; i < cached.length; i++) {
+			final long midnight = cached[i].truncate(millis);
+			if (Long.MIN_VALUE != midnight) {
+				return midnight;
+			}
+		}
+		return truncateSlow(millis);
+	}
+
+	/**
+	 * Truncate each instant of the specified array, in place, to the start of
+	 * its day.
+	 * 
+	 * @param millis array of milliseconds instants
+	 * @throws IllegalArgumentException if argument is null
+	 */
+	public void truncate(long[] millis) {
+		Validate.notNull(millis, "Array argument cannot be null");
+		truncate(millis, 0, millis.length);
+	}
+
+	/**
+	 * Truncate each instant of the specified array range, in place, to the
+	 * start of its day.
+	 * 
+	 * @param millis array of milliseconds instants
+	 * @param offset index of first instant
+	 * @param length number of instants
+	 * @throws IllegalArgumentException if array argument is null
+	 * @throws IndexOutOfBoundsException if range is outside array bounds
+	 */
+	public void truncate(long[] millis, int offset, int length) {
+		Validate.notNull(millis, "Array argument cannot be null");
+		DateUtil.checkRange(millis.length, offset, length);
+		Period period = periods.length > 0 ? periods[0] : null;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			long midnight = (null == period) ? Long.MIN_VALUE : period.truncate(millis[i]);
+			if (Long.MIN_VALUE == midnight) {
+				midnight = truncate(millis[i]);
+				period = periods[0];
+			}
+			millis[i] = midnight;
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.MidnightTruncator[")
+		                              .append(zone.getID())
+		                              .append("]");
+		return buf.toString();
+	}
+
+	private long truncateSlow(long millis) {
+		final long local = zone.convertUTCToLocal(millis);
+		final long localMidnight = local - DateUtil.floorMod(local, DateUtil.MILLIS_PER_DAY);
+		long midnight = zone.convertLocalToUTC(localMidnight, false);
+		final long actual = zone.convertUTCToLocal(midnight);
+		if (actual < localMidnight) {
+			// Midnight is skipped; the day begins at the end of the gap
+			midnight = zone.nextTransition(midnight);
+		} else if (actual > localMidnight) {
+			midnight = zone.previousTransition(midnight) + 1L;
+		} else {
+			// Midnight may occur twice; prefer the instant before the transition
+			final long transition = zone.previousTransition(midnight);
+			if (transition != midnight) {
+				final int previous = zone.getOffset(transition);
+				final long earlier = localMidnight - previous;
+				if (earlier <= transition && zone.getOffset(earlier) == previous) {
+					midnight = earlier;
+				}
+			}
+		}
+		cache(millis);
+		return midnight;
+	}
+
+	private void cache(long millis) {
+		// Previous transition is reported as the last instant before it
+		long start = zone.previousTransition(millis);
+		start = (start == millis) ? Long.MIN_VALUE : (start + 1L);
+		long end = zone.nextTransition(millis);
+		if (end <= millis) {
+			end = Long.MAX_VALUE;
+		}
+		final int offset = zone.getOffset(millis);
+		long safeStart = start;
+		if (Long.MIN_VALUE != start) {
+			// Local times just after a backward transition occurred before it
+			final int previous = zone.getOffset(start - 1L);
+			if (previous > offset) {
+				safeStart = start + (previous - offset);
+			}
+		}
+		final Period[] cached = periods;
+		final Period[] updated = new Period[Math.min(cached.length + 1, CACHED_PERIODS)];
+		updated[0] = new Period(start, end, safeStart, offset);
+		System.arraycopy(cached, 0, updated, 1, updated.length - 1);
+		periods = updated;
+	}
+
+	/**
+	 * Immutable period of constant zone offset.
+	 */
+	private static final class Period {
+		final long start;
+		final long end;
+		final long safeStart;
+		final int offset;
+
+		Period(final long start, final long end, final long safeStart, final int offset) {
+			this.start = start;
+			this.end = end;
+			this.safeStart = safeStart;
+			this.offset = offset;
+		}
+
+		/**
+		 * @return start of day of instant, or <code>Long.MIN_VALUE</code> if
+		 *         it cannot be determined from this period alone
+		 */
+		long truncate(long millis) {
+			if (millis < start || millis >= end) {
+				return Long.MIN_VALUE;
+			}
+			final long midnight = millis - DateUtil.floorMod(millis + offset, DateUtil.MILLIS_PER_DAY);
+			return (midnight >= safeStart) ? midnight : Long.MIN_VALUE;
+		}
+	}
+
+}
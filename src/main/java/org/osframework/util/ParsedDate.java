@@ -0,0 +1,166 @@
+/*
+ * File: ParsedDate.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.Date;
+
+/**
+ * Mutable holder of the result of a <code>DateUtil.tryParse</code> call. A
+ * single instance may be reused for any number of parse calls, so that
+ * parsing a sequence of values allocates nothing. Instances are not safe for
+ * use by multiple concurrent threads.
+ * <p>If the most recent parse failed, {@link #isValid()} returns
+ * <code>false</code>, the integer accessors return zero, and
+ * {@link #getNotation()} returns <code>null</code>.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class ParsedDate {
+
+	private long packed = DateUtil.SCAN_FAILED;
+
+	/**
+	 * Create an empty, invalid parse result.
+	 */
+	public ParsedDate() {}
+
+	/**
+	 * Determine if the most recent parse succeeded.
+	 * 
+	 * @return <code>true</code> if a date was parsed,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isValid() {
+		return (DateUtil.SCAN_FAILED != packed);
+	}
+
+	/**
+	 * @return year of parsed date
+	 */
+	public int getYear() {
+		return isValid() ? DateUtil.scannedYear(packed) : 0;
+	}
+
+	/**
+	 * @return month of parsed date, from 1 (January) to 12 (December)
+	 */
+	public int getMonth() {
+		return isValid() ? DateUtil.scannedMonth(packed) : 0;
+	}
+
+	/**
+	 * @return day of month of parsed date
+	 */
+	public int getDay() {
+		return isValid() ? DateUtil.scannedDay(packed) : 0;
+	}
+
+	/**
+	 * @return notation in which parsed date was represented
+	 */
+	public DateNotation getNotation() {
+		return isValid() ? DateUtil.NOTATIONS[DateUtil.scannedFormat(packed)] : null;
+	}
+
+	/**
+	 * Get the parsed date as a packed date value.
+	 * 
+	 * @return packed date value (<code>yyyyMMdd</code>), or
+	 *         {@link DateUtil#INVALID_DATE} if parse failed or year is after
+	 *         9999
+	 */
+	public int toPackedDate() {
+		return isPrimitive() ? DateUtil.toPacked(packed) : DateUtil.INVALID_DATE;
+	}
+
+	/**
+	 * Get the parsed date as an epoch day value.
+	 * 
+	 * @return number of days since 1970-01-01, or
+	 *         {@link DateUtil#INVALID_DATE} if parse failed or year is after
+	 *         9999
+	 */
+	public int toEpochDay() {
+		return isPrimitive() ? DateUtil.toEpochDay(packed) : DateUtil.INVALID_DATE;
+	}
+
+	/**
+	 * Get the instant of midnight of the parsed date in the default time zone.
+	 * 
+	 * @return milliseconds since 1970-01-01T00:00:00Z
+	 * @throws IllegalStateException if parse failed
+	 * @throws IllegalArgumentException if midnight of parsed date does not
+	 *         exist in the default time zone
+	 */
+	public long toMillis() {
+		if (!isValid()) {
+			throw new IllegalStateException("No date parsed");
+		}
+		return DateUtil.toMillis(packed);
+	}
+
+	/**
+	 * Create a new date representing midnight of the parsed date in the
+	 * default time zone.
+	 * 
+	 * @return parsed date
+	 * @throws IllegalStateException if parse failed
+	 * @throws IllegalArgumentException if midnight of parsed date does not
+	 *         exist in the default time zone
+	 */
+	public Date toDate() {
+		return new Date(toMillis());
+	}
+
+	/**
+	 * Clear this result, making it invalid.
+	 */
+	public void reset() {
+		packed = DateUtil.SCAN_FAILED;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.ParsedDate[");
+		if (isValid()) {
+			buf.append(getYear()).append('-')
+			   .append(getMonth()).append('-')
+			   .append(getDay()).append(' ')
+			   .append(getNotation());
+		} else {
+			buf.append("invalid");
+		}
+		return buf.append(']').toString();
+	}
+
+	/**
+	 * Set the result of a parse call.
+	 * 
+	 * @param packed packed scan result, or <code>DateUtil.SCAN_FAILED</code>
+	 * @return <code>true</code> if result is valid
+	 */
+	boolean set(final long packed) {
+		this.packed = packed;
+		return (DateUtil.SCAN_FAILED != packed);
+	}
+
+	private boolean isPrimitive() {
+		return isValid() && (DateUtil.scannedYear(packed) <= DateUtil.MAX_YEAR_PACKED);
+	}
+
+}
@@ -17,20 +17,41 @@
  */
 package org.osframework.util;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.Validate;
 
 /**
  * A simple service-provider loading facility. This class replicates the
@@ -44,6 +65,16 @@ import java.util.ServiceConfigurationError;
  * client performing some further process, such as invoking a
  * <code>Constructor</code> or <code>Method</code> instance obtained from the
  * provider class.</p> 
+ * <p>When a complete precompiled {@linkplain ServiceIndex service index},
+ * written at build time by <code>ServiceIndexProcessor</code>, is visible to the class loader, provider
+ * class names of each service type it lists are read from the index,
+ * looked up once per class loader, rather than by scanning every
+ * <code>META-INF/services</code> file on the class path. Service types not
+ * listed in the index are scanned.</p>
+ * <p>Instances are safe for use by multiple concurrent threads. Provider
+ * classes are discovered once per instance (or reload), however many
+ * threads iterate; once discovered, they are read without locking.
+ * Instances are cached process-wide by service type and class loader.</p>
  *
  * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
  */
@@ -51,15 +82,85 @@ public final class ServiceClassLoader<S> implements Iterable<Class<? extends S>>
 
 	private static final String PREFIX = "META-INF/services/";
 
+	// Process-wide cache of instances by service type and class loader
+	private static final ConcurrentMap<CacheKey, CacheEntry> CACHE = new ConcurrentHashMap<CacheKey, CacheEntry>();
+	private static final ReferenceQueue<Object> STALE = new ReferenceQueue<Object>();
+
+	// Bound on the threads of the shared fetch executor
+	private static final int MAX_FETCH_THREADS = 16;
+	private static volatile Executor fetchExecutor;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	// Pooled per-thread buffers for reading configuration files
+	private static final int MAX_POOLED_BUFFER = 64 * 1024;
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[4096];
+		}
+	};
+
+	// Classification of ASCII characters in provider-class names
+	private static final int NAME_START = 0x01;
+	private static final int NAME_PART = 0x02;
+	private static final byte[] ASCII_NAME = new byte[128];
+	static {
+		for (char c = 0; c < ASCII_NAME.length; c++) {
+			if (Character.isJavaIdentifierStart(c)) ASCII_NAME[c] |= NAME_START;
+			if (Character.isJavaIdentifierPart(c) || '.' == c) ASCII_NAME[c] |= NAME_PART;
+		}
+	}
+
 	private final transient Class<S> serviceClass;
 	private final transient ClassLoader loader;
-	private final transient Map<String, Class<? extends S>> providerClasses = new LinkedHashMap<String, Class<? extends S>>();
 
-	// The current lazy-lookup iterator
-    private transient LazyIterator lookupIterator;
+	// The current discovery, replaced by reload()
+	private volatile transient Discovery discovery;
 
+	/**
+	 * Get the service class loader of the specified service type and class
+	 * loader. Instances are shared process-wide: repeated calls return the
+	 * same instance, with the providers it has already discovered, until it
+	 * is invalidated. The cache holds class loaders weakly and instances
+	 * softly.
+	 * <p>An instance strongly references its class loader and the provider
+	 * classes it has discovered, so while its cache entry stands, the class
+	 * loader is reachable only softly, and is collected when the heap runs
+	 * low rather than at the next collection. Call
+	 * {@link #invalidate(ClassLoader)} when discarding a class loader, such
+	 * as that of an undeployed web application, so that it may be collected
+	 * as soon as it is unreachable.</p>
+	 * 
+	 * @param serviceClass service type
+	 * @param loader class loader to search for providers, or
+	 *        <code>null</code> for the system class loader
+	 * @return shared service class loader
+	 * @throws IllegalArgumentException if serviceClass argument is null
+	 * @see #invalidate(Class, ClassLoader)
+	 */
+	@SuppressWarnings("unchecked")
 	public static <S> ServiceClassLoader<S> load(final Class<S> serviceClass, final ClassLoader loader) {
-		return new ServiceClassLoader<S>(serviceClass, loader);
+		Validate.notNull(serviceClass, "Service class argument cannot be null");
+		expungeStale();
+		final CacheKey lookup = new CacheKey(serviceClass, loader);
+		while (true) {
+			final CacheEntry entry = CACHE.get(lookup);
+			final ServiceClassLoader<?> cached = (null == entry) ? null : entry.get();
+			if (null != cached) {
+				return (ServiceClassLoader<S>)cached;
+			}
+			final ServiceClassLoader<S> created = new ServiceClassLoader<S>(serviceClass, loader);
+			final CacheEntry createdEntry = new CacheEntry(lookup, created);
+			final boolean stored = (null == entry)
+			                       ? (null == CACHE.putIfAbsent(lookup, createdEntry))
+			                       : CACHE.replace(lookup, entry, createdEntry);
+			if (stored) {
+				return created;
+			}
+			// Lost a race with another thread; use its instance
+		}
 	}
 
 	public static <S> ServiceClassLoader<S> load(final Class<S> serviceClass) {
@@ -77,27 +178,109 @@ public final class ServiceClassLoader<S> implements Iterable<Class<? extends S>>
 		return ServiceClassLoader.load(serviceClass, prev);
 	}
 
+	/**
+	 * Remove the cached service class loader of the specified service type
+	 * and class loader, so that the next <code>load</code> call discovers
+	 * providers afresh. Instances already obtained are unaffected.
+	 * 
+	 * @param serviceClass service type
+	 * @param loader class loader, or <code>null</code> for the system class
+	 *        loader
+	 */
+	public static void invalidate(final Class<?> serviceClass, final ClassLoader loader) {
+		CACHE.remove(new CacheKey(serviceClass, loader));
+	}
+
+	/**
+	 * Remove every cached service class loader of the specified class
+	 * loader, and its cached service index, for example after the class
+	 * path of the loader has changed, or before discarding the loader.
+	 * 
+	 * @param loader class loader, or <code>null</code> for the system class
+	 *        loader
+	 */
+	public static void invalidate(final ClassLoader loader) {
+		for (Iterator<CacheKey> it = CACHE.keySet().iterator(); it.hasNext(); ) {
+			if (it.next().isLoader(loader)) {
+				it.remove();
+			}
+		}
+		ServiceIndex.clear(loader);
+	}
+
+	/**
+	 * Remove every cached service class loader and service index.
+	 */
+	public static void invalidateAll() {
+		CACHE.clear();
+		ServiceIndex.clear();
+	}
+
+	/**
+	 * Discard every discovered provider class, so that the next iteration
+	 * looks providers up afresh. Iterators created before the reload are
+	 * unaffected, and continue over the providers discovered before it.
+	 */
 	public void reload() {
-		providerClasses.clear();
-		lookupIterator = new LazyIterator(serviceClass, loader);
+		discovery = new Discovery(new LazyIterator(serviceClass, loader));
 	}
 
+	/**
+	 * Discover every provider class now, fetching and parsing all the
+	 * provider-configuration files of the service concurrently on a shared,
+	 * bounded executor of daemon threads.
+	 * 
+	 * @throws ServiceConfigurationError if a configuration file or provider
+	 *         is invalid
+	 * @see #discoverAll(Executor)
+	 */
+	public void discoverAll() {
+		discoverAll(fetchExecutor());
+	}
+
+	/**
+	 * Discover every provider class now, fetching and parsing all the
+	 * provider-configuration files of the service concurrently on the
+	 * specified executor. Providers are discovered in the same order, with
+	 * the same de-duplication, as by lazy iteration. Discovery continues
+	 * past an invalid configuration file or provider, whose error iterators
+	 * raise at its position, as they would after lazy discovery.
+	 * 
+	 * @param executor executor to run fetches; a fetch the executor rejects
+	 *        runs in the calling thread
+	 * @throws IllegalArgumentException if executor argument is null
+	 * @throws ServiceConfigurationError the first error discovered, if a
+	 *         configuration file or provider is invalid
+	 */
+	public void discoverAll(final Executor executor) {
+		Validate.notNull(executor, "Executor argument cannot be null");
+		discovery.discoverAll(executor);
+	}
+
+	/**
+	 * Get a lazy iterator of the provider classes of this loader's service.
+	 * Iterators may be used concurrently by multiple threads, each iterating
+	 * its own iterator.
+	 * <p>An invalid configuration file or provider is recorded at its
+	 * position in the discovered providers. The <code>next</code> method of
+	 * every iterator which reaches that position, on this instance, throws a
+	 * <code>ServiceConfigurationError</code> for it, and the following
+	 * call continues after it, until the instance is reloaded.</p>
+	 */
 	public Iterator<Class<? extends S>> iterator() {
+		final Discovery current = discovery;
 		return new Iterator<Class<? extends S>>() {
-			Iterator<Map.Entry<String, Class<? extends S>>> knownIt = providerClasses.entrySet().iterator();
+			int index = 0;
 		
 			public boolean hasNext() {
-				if (knownIt.hasNext()) {
-					return true;
-				}
-				return lookupIterator.hasNext();
+				return current.has(index);
 			}
 		
 			public Class<? extends S> next() {
-				if (knownIt.hasNext()) {
-					return knownIt.next().getValue();
+				if (!current.has(index)) {
+					throw new NoSuchElementException();
 				}
-				return lookupIterator.next();
+				return current.get(index++);
 			}
 		
 			public void remove() {
@@ -114,6 +297,14 @@ public final class ServiceClassLoader<S> implements Iterable<Class<? extends S>>
 		return buf.toString();
 	}
 
+	private static void expungeStale() {
+		Reference<?> ref;
+		while (null != (ref = STALE.poll())) {
+			final CacheEntry entry = (CacheEntry)ref;
+			CACHE.remove(entry.key, entry);
+		}
+	}
+
     private static void fail(final Class<?> service, final String msg, final Throwable cause)
     	throws ServiceConfigurationError {
     	throw new ServiceConfigurationError(service.getName() + ": " + msg, cause);
@@ -135,62 +326,30 @@ public final class ServiceClassLoader<S> implements Iterable<Class<? extends S>>
 		this.reload();
 	}
 
-	private int parseLine(final Class<S> serviceClass, final URL url, final BufferedReader reader, final int lineNum, final List<String> names)
-		throws IOException, ServiceConfigurationError {
-		String line = reader.readLine();
-		int nextLineNum;
-		if (null == line) {
-		    nextLineNum = -1;
-		} else {
-			// Read everything on line prior to start of comment
-			final int commentIdx = line.indexOf('#');
-			if (0 <= commentIdx) {
-				line = line.substring(0, commentIdx);
-			}
-			line = line.trim();
-			final int lineLength = line.length();
-			if (0 != lineLength) {
-				if ((line.indexOf(' ') >= 0) || (line.indexOf('\t') >= 0)) {
-					fail(serviceClass, url, lineNum, "Illegal configuration-file syntax");
-				}
-				int codePt = line.codePointAt(0);
-				if (!Character.isJavaIdentifierStart(codePt)) {
-					fail(serviceClass, url, lineNum, "Illegal provider-class name: " + line);
-				}
-				for (int i = Character.charCount(codePt); i < lineLength; i += Character.charCount(codePt)) {
-					codePt = line.codePointAt(i);
-					if (!Character.isJavaIdentifierPart(codePt) && ('.' != codePt)) {
-						fail(serviceClass, url, lineNum, "Illegal provider-class name: " + line);
-					}
-				}
-				if (!providerClasses.containsKey(line) && !names.contains(line)) {
-					names.add(line);
-				}
-			}
-			nextLineNum = lineNum + 1;
-		}
-		return nextLineNum;
-	}
-
-	private Iterator<String> parse(final Class<S> serviceClass, final URL url)
+	private Iterator<String> parse(final Class<S> serviceClass, final URL url, final Set<String> known)
 		throws ServiceConfigurationError {
 		InputStream inStream = null;
-		BufferedReader reader = null;
 		final ArrayList<String> names = new ArrayList<String>();
 		try {
 			inStream = url.openStream();
-			reader = new BufferedReader(new InputStreamReader(inStream, Charset.forName("UTF-8")));
-			int lineNum = 1;
-			do {
-				lineNum = parseLine(serviceClass, url, reader, lineNum, names);
-			} while (0 <= lineNum);
+			byte[] buf = BUFFERS.get();
+			int length = 0;
+			while (true) {
+				if (length == buf.length) {
+					buf = Arrays.copyOf(buf, length << 1);
+				}
+				final int n = inStream.read(buf, length, buf.length - length);
+				if (n < 0) break;
+				length += n;
+			}
+			if (buf.length <= MAX_POOLED_BUFFER) {
+				BUFFERS.set(buf);
+			}
+			parseLines(serviceClass, url, buf, length, known, names);
 		} catch (IOException ioe) {
 			fail(serviceClass, "Error reading configuration file", ioe);
 		} finally {
 			try {
-				if (null != reader) {
-					reader.close();
-				}
 				if (null != inStream) {
 					inStream.close();
 				}
@@ -201,6 +360,264 @@ public final class ServiceClassLoader<S> implements Iterable<Class<? extends S>>
 		return names.iterator();
 	}
 
+	/**
+	 * Parse the lines of a configuration file held as raw bytes. Lines are
+	 * terminated as by <code>BufferedReader.readLine()</code>.
+	 */
+	private void parseLines(final Class<S> serviceClass, final URL url, final byte[] buf, final int length,
+	                        final Set<String> known, final List<String> names) {
+		int lineNum = 1;
+		int i = 0;
+		while (i < length) {
+			final int start = i;
+			while (i < length && '\n' != buf[i] && '\r' != buf[i]) i++;
+			final int eol = i;
+			if (i < length) {
+				i += ('\r' == buf[i] && i + 1 < length && '\n' == buf[i + 1]) ? 2 : 1;
+			}
+			parseLine(serviceClass, url, buf, start, eol, lineNum++, known, names);
+		}
+	}
+
+	/**
+	 * Parse one line of a configuration file. A line of ASCII bytes is
+	 * validated in place, creating a string only for an accepted provider
+	 * name; a line containing any other byte is decoded as UTF-8 and
+	 * validated by code point.
+	 */
+	private void parseLine(final Class<S> serviceClass, final URL url, final byte[] buf, int start, int end,
+	                       final int lineNum, final Set<String> known, final List<String> names) {
+		// Read everything on line prior to start of comment
+		boolean ascii = true;
+		for (int i = start; i < end; i++) {
+			if ('#' == buf[i]) {
+				end = i;
+				break;
+			}
+			if (buf[i] < 0) ascii = false;
+		}
+		if (!ascii) {
+			parseLine(serviceClass, url, new String(buf, start, end - start, UTF_8).trim(), lineNum, known, names);
+			return;
+		}
+		while (start < end && (buf[start] & 0xFF) <= ' ') start++;
+		while (end > start && (buf[end - 1] & 0xFF) <= ' ') end--;
+		if (start == end) return;
+		for (int i = start; i < end; i++) {
+			if (' ' == buf[i] || '\t' == buf[i]) {
+				fail(serviceClass, url, lineNum, "Illegal configuration-file syntax");
+			}
+		}
+		boolean valid = (0 != (ASCII_NAME[buf[start]] & NAME_START));
+		for (int i = start + 1; valid && i < end; i++) {
+			valid = (0 != (ASCII_NAME[buf[i]] & NAME_PART));
+		}
+		final String line = new String(buf, start, end - start, ISO_8859_1);
+		if (!valid) {
+			fail(serviceClass, url, lineNum, "Illegal provider-class name: " + line);
+		}
+		if (!known.contains(line) && !names.contains(line)) {
+			names.add(line);
+		}
+	}
+
+	private void parseLine(final Class<S> serviceClass, final URL url, final String line, final int lineNum,
+	                       final Set<String> known, final List<String> names) {
+		final int lineLength = line.length();
+		if (0 != lineLength) {
+			if ((line.indexOf(' ') >= 0) || (line.indexOf('\t') >= 0)) {
+				fail(serviceClass, url, lineNum, "Illegal configuration-file syntax");
+			}
+			int codePt = line.codePointAt(0);
+			if (!Character.isJavaIdentifierStart(codePt)) {
+				fail(serviceClass, url, lineNum, "Illegal provider-class name: " + line);
+			}
+			for (int i = Character.charCount(codePt); i < lineLength; i += Character.charCount(codePt)) {
+				codePt = line.codePointAt(i);
+				if (!Character.isJavaIdentifierPart(codePt) && ('.' != codePt)) {
+					fail(serviceClass, url, lineNum, "Illegal provider-class name: " + line);
+				}
+			}
+			if (!known.contains(line) && !names.contains(line)) {
+				names.add(line);
+			}
+		}
+	}
+
+	/**
+	 * Get the shared executor used by {@link #discoverAll()}, creating it on
+	 * first use. Its threads are daemon threads, which exit when idle.
+	 */
+	private static Executor fetchExecutor() {
+		Executor executor = fetchExecutor;
+		if (null == executor) {
+			synchronized (ServiceClassLoader.class) {
+				executor = fetchExecutor;
+				if (null == executor) {
+					final int threads = Math.min(MAX_FETCH_THREADS, 2 * Runtime.getRuntime().availableProcessors());
+					final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 5L, TimeUnit.SECONDS,
+					                                                       new LinkedBlockingQueue<Runnable>(),
+					                                                       new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+						public Thread newThread(Runnable r) {
+							final Thread t = new Thread(r, "ServiceClassLoader-fetch-" + count.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+					pool.allowCoreThreadTimeOut(true);
+					fetchExecutor = executor = pool;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Cache key of a service type and class loader, both held weakly and
+	 * compared by identity. A key whose referents have been collected is
+	 * equal only to itself.
+	 */
+	private static final class CacheKey {
+
+		private final WeakReference<Class<?>> serviceClass;
+		private final WeakReference<ClassLoader> loader;
+		private final int hash;
+
+		CacheKey(final Class<?> serviceClass, final ClassLoader loader) {
+			this.serviceClass = new WeakReference<Class<?>>(serviceClass);
+			this.loader = (null == loader) ? null : new WeakReference<ClassLoader>(loader);
+			this.hash = (31 * System.identityHashCode(serviceClass)) + System.identityHashCode(loader);
+		}
+
+		boolean isLoader(final ClassLoader cl) {
+			return (null == loader) ? (null == cl) : (null != cl && cl == loader.get());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof CacheKey)) return false;
+			final CacheKey other = (CacheKey)obj;
+			final Class<?> service = serviceClass.get();
+			if (hash != other.hash || null == service || service != other.serviceClass.get()) {
+				return false;
+			}
+			if (null == loader) {
+				return (null == other.loader);
+			}
+			final ClassLoader cl = loader.get();
+			return (null != cl) && other.isLoader(cl);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * Soft reference to a cached instance, which removes itself from the
+	 * cache once cleared.
+	 */
+	private static final class CacheEntry extends SoftReference<ServiceClassLoader<?>> {
+
+		final CacheKey key;
+
+		CacheEntry(final CacheKey key, final ServiceClassLoader<?> instance) {
+			super(instance, STALE);
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Provider classes discovered by one lazy lookup. Discovered classes are
+	 * published through a volatile count, so that reading them takes no
+	 * lock. Discovery of further classes is serialized: a thread which needs
+	 * a class not yet discovered either discovers it or, if another thread
+	 * is discovering, waits and reads what that thread published. An error
+	 * raised by the lookup is recorded in place of a class, so that every
+	 * reader sees it, not only the thread which discovered it.
+	 */
+	private final class Discovery {
+
+		private final LazyIterator lookup;
+		// Each a provider class or a ServiceConfigurationError
+		private volatile Object[] providers = new Object[8];
+		// Written after the provider it counts; readers read it first
+		private volatile int count;
+		private volatile boolean complete;
+
+		Discovery(final LazyIterator lookup) {
+			this.lookup = lookup;
+		}
+
+		boolean has(final int index) {
+			if (index < count) {
+				return true;
+			}
+			return !complete && discover(index);
+		}
+
+		@SuppressWarnings("unchecked")
+		Class<? extends S> get(final int index) {
+			final Object provider = providers[index];
+			if (provider instanceof ServiceConfigurationError) {
+				throw replay((ServiceConfigurationError)provider);
+			}
+			return (Class<? extends S>)provider;
+		}
+
+		synchronized void discoverAll(final Executor executor) {
+			if (!complete) {
+				try {
+					lookup.prefetch(executor);
+				} catch (ServiceConfigurationError sce) {
+					add(sce);
+				}
+				discover(Integer.MAX_VALUE);
+			}
+			final Object[] array = providers;
+			for (int i = 0; i < count; i++) {
+				if (array[i] instanceof ServiceConfigurationError) {
+					throw replay((ServiceConfigurationError)array[i]);
+				}
+			}
+		}
+
+		private synchronized boolean discover(final int index) {
+			while (index >= count) {
+				if (complete) {
+					return false;
+				}
+				try {
+					if (!lookup.hasNext()) {
+						complete = true;
+						return false;
+					}
+					add(lookup.next());
+				} catch (ServiceConfigurationError sce) {
+					add(sce);
+				}
+			}
+			return true;
+		}
+
+		private void add(final Object provider) {
+			Object[] array = providers;
+			if (count == array.length) {
+				array = Arrays.copyOf(array, count << 1);
+			}
+			array[count] = provider;
+			providers = array;
+			count++;
+		}
+
+		private ServiceConfigurationError replay(final ServiceConfigurationError recorded) {
+			return new ServiceConfigurationError(recorded.getMessage(), recorded);
+		}
+	}
+
 	private class LazyIterator implements Iterator<Class<? extends S>> {
 	
 		private final transient Class<S> serviceClass;
@@ -208,6 +625,10 @@ public final class ServiceClassLoader<S> implements Iterable<Class<? extends S>>
 		private transient Enumeration<URL> configs = null;
 		private transient Iterator<String> pending = null;
 		private transient String nextName = null;
+		// Configuration files being fetched concurrently, in order
+		private final transient Queue<Future<Iterator<String>>> fetched = new ArrayDeque<Future<Iterator<String>>>();
+		// Names of provider classes returned so far
+		private final transient Set<String> known = new HashSet<String>();
 	
 		LazyIterator(final Class<S> serviceClass, final ClassLoader loader) {
 			this.serviceClass = serviceClass;
@@ -237,7 +658,7 @@ public final class ServiceClassLoader<S> implements Iterable<Class<? extends S>>
 		    }
 		    try {
 			    final Class<? extends S> providerClass = cls.asSubclass(serviceClass);
-			    providerClasses.put(className, providerClass);
+			    known.add(className);
 			    return providerClass;
 		    } catch (Exception e) {
 		    	fail(serviceClass, "Provider " + className + " could not be cast to subtype: " + e, e);
@@ -250,29 +671,96 @@ public final class ServiceClassLoader<S> implements Iterable<Class<? extends S>>
 			throw new UnsupportedOperationException();	
 		}
 	
-		private boolean lazyLoadClassNameIterator() {
-			if (null == configs) {
+		/**
+		 * Start fetching and parsing every remaining configuration file.
+		 */
+		void prefetch(final Executor executor) {
+			locate();
+			while (configs.hasMoreElements()) {
+				final URL url = configs.nextElement();
+				final FutureTask<Iterator<String>> task = new FutureTask<Iterator<String>>(new Callable<Iterator<String>>() {
+					public Iterator<String> call() {
+						// De-duplicated against known providers when consumed
+						return parse(serviceClass, url, Collections.<String>emptySet());
+					}
+				});
 				try {
-					final String fullName = PREFIX + serviceClass.getName();
-					configs = (null == loader)
-							   ? ClassLoader.getSystemResources(fullName)
-							   : loader.getResources(fullName);
-				} catch (IOException ioe) {
-					fail(serviceClass, "Error locating configuration files", ioe);
+					executor.execute(task);
+				} catch (RejectedExecutionException ree) {
+					task.run();
 				}
+				fetched.add(task);
 			}
+		}
+
+		private boolean lazyLoadClassNameIterator() {
+			locate();
 			boolean hasNext = true;
 			while ((null == pending) || !pending.hasNext()) {
-				if (!configs.hasMoreElements()) {
+				if (!fetched.isEmpty()) {
+					pending = unknownNames(take(fetched.remove()));
+				} else if (configs.hasMoreElements()) {
+					pending = parse(serviceClass, configs.nextElement(), known);
+				} else {
 					hasNext = false;
 					break;
 				}
-				pending = parse(serviceClass, configs.nextElement());
 			}
 			if (hasNext) {
 				nextName = pending.next();
 			}
 			return hasNext;
 		}
+
+		private void locate() {
+			if (null == configs) {
+				final ServiceIndex index = ServiceIndex.forLoader(loader);
+				if (null != index && index.contains(serviceClass.getName())) {
+					// Complete precompiled index replaces the scan; service
+					// types it does not list may still be declared in plain
+					// configuration files
+					configs = Collections.emptyEnumeration();
+					pending = unknownNames(index.getProviders(serviceClass.getName()).iterator());
+				} else {
+					try {
+						final String fullName = PREFIX + serviceClass.getName();
+						configs = (null == loader)
+								   ? ClassLoader.getSystemResources(fullName)
+								   : loader.getResources(fullName);
+					} catch (IOException ioe) {
+						// Report the failure once; iteration then ends
+						configs = Collections.emptyEnumeration();
+						fail(serviceClass, "Error locating configuration files", ioe);
+					}
+				}
+			}
+		}
+
+		private Iterator<String> take(final Future<Iterator<String>> future) {
+			try {
+				return future.get();
+			} catch (ExecutionException ee) {
+				final Throwable cause = ee.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				if (cause instanceof Error) throw (Error)cause;
+				fail(serviceClass, "Error reading configuration file", cause);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				fail(serviceClass, "Interrupted reading configuration file", ie);
+			}
+			// This cannot happen
+			throw new Error();
+		}
+
+		private Iterator<String> unknownNames(final Iterator<String> candidates) {
+			final List<String> names = new ArrayList<String>();
+			while (candidates.hasNext()) {
+				final String name = candidates.next();
+				if (!known.contains(name)) {
+					names.add(name);
+				}
+			}
+			return names.iterator();
+		}
 	}
 }
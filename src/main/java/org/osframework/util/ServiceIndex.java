@@ -0,0 +1,272 @@
+/*
+ * File: ServiceIndex.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Precompiled index of service providers, written at build time by the
+ * <code>ServiceIndexProcessor</code> of the Common Utilities Processor
+ * artifact to the resource {@value #RESOURCE}. An index
+ * maps each service type name to its provider class names, in the order in
+ * which a scan of <code>META-INF/services</code> files would find them.
+ * <p>An index is either <em>partial</em>, describing the providers of a
+ * single artifact, or <em>complete</em>, describing every provider visible
+ * to the class loader of an application of each service type it lists. Only
+ * a complete index replaces the scan done by {@link ServiceClassLoader},
+ * and only for the service types it lists; partial indexes are merged into
+ * a complete index when the application itself is built.</p>
+ * <p>The binary layout, in <code>DataOutput</code> encoding, is:</p>
+ * <pre>
+ * int     magic ('SIDX')
+ * byte    version (1)
+ * byte    flags (bit 0: complete)
+ * int     service count
+ * for each service:
+ *   UTF   service type name
+ *   int   provider count
+ *   UTF   provider class name, for each provider
+ * </pre>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class ServiceIndex {
+
+	/**
+	 * Name of the index resource.
+	 */
+	public static final String RESOURCE = "META-INF/services.index";
+
+	static final int MAGIC = 0x53494458;
+	static final int VERSION = 1;
+	static final int FLAG_COMPLETE = 0x01;
+
+	/**
+	 * Marker cached for a class loader which has no complete index.
+	 */
+	private static final ServiceIndex NONE = new ServiceIndex(Collections.<String, List<String>>emptyMap(), false);
+
+	private static final Map<ClassLoader, ServiceIndex> INDEXES = new WeakHashMap<ClassLoader, ServiceIndex>();
+
+	private final Map<String, List<String>> providers;
+	private final boolean complete;
+
+	/**
+	 * Create an index.
+	 * 
+	 * @param providers provider class names of each service type, in scan
+	 *        order
+	 * @param complete <code>true</code> if index describes every provider of
+	 *        the service types it lists
+	 */
+	public ServiceIndex(final Map<String, List<String>> providers, final boolean complete) {
+		this.providers = providers;
+		this.complete = complete;
+	}
+
+	/**
+	 * Get the complete index visible to the specified class loader. The
+	 * index resource is looked up once per class loader, for every service
+	 * type; when several complete indexes are visible, the first wins.
+	 * 
+	 * @param loader class loader, or <code>null</code> for the system class
+	 *        loader
+	 * @return complete index, or <code>null</code> if there is none or it
+	 *         cannot be read, in which case providers must be scanned
+	 */
+	static ServiceIndex forLoader(final ClassLoader loader) {
+		ServiceIndex index;
+		synchronized (INDEXES) {
+			index = INDEXES.get(loader);
+		}
+		if (null == index) {
+			index = find(loader);
+			synchronized (INDEXES) {
+				INDEXES.put(loader, index);
+			}
+		}
+		return (NONE == index) ? null : index;
+	}
+
+	/**
+	 * Discard the cached index of every class loader.
+	 */
+	static void clear() {
+		synchronized (INDEXES) {
+			INDEXES.clear();
+		}
+	}
+
+	/**
+	 * Discard the cached index of the specified class loader.
+	 */
+	static void clear(final ClassLoader loader) {
+		synchronized (INDEXES) {
+			INDEXES.remove(loader);
+		}
+	}
+
+	/**
+	 * Determine if this index is complete.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Determine if this index lists the specified service type.
+	 * 
+	 * @param serviceName binary name of service type
+	 */
+	public boolean contains(final String serviceName) {
+		return providers.containsKey(serviceName);
+	}
+
+	/**
+	 * Get the provider class names of the specified service type.
+	 * 
+	 * @param serviceName binary name of service type
+	 * @return unmodifiable list of provider class names; empty if service
+	 *         has no providers
+	 */
+	public List<String> getProviders(final String serviceName) {
+		final List<String> names = providers.get(serviceName);
+		return (null == names) ? Collections.<String>emptyList() : names;
+	}
+
+	/**
+	 * Get the providers of every service type, in index order.
+	 */
+	public Map<String, List<String>> getProviders() {
+		return providers;
+	}
+
+	/**
+	 * Read an index.
+	 * 
+	 * @param in stream positioned at start of index
+	 * @return index
+	 * @throws IOException if index cannot be read or is not a valid index
+	 */
+	public static ServiceIndex read(final InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (MAGIC != data.readInt()) {
+			throw new IOException("Not a service index");
+		}
+		final int version = data.readUnsignedByte();
+		if (VERSION != version) {
+			throw new IOException("Unsupported service index version: " + version);
+		}
+		final int flags = data.readUnsignedByte();
+		final int serviceCount = count(data);
+		final Map<String, List<String>> providers = new LinkedHashMap<String, List<String>>();
+		for (int i = 0; i < serviceCount; i++) {
+			final String service = data.readUTF();
+			final int providerCount = count(data);
+			final List<String> names = new ArrayList<String>(providerCount);
+			for (int j = 0; j < providerCount; j++) {
+				names.add(data.readUTF());
+			}
+			providers.put(service, Collections.unmodifiableList(names));
+		}
+		if (-1 != data.read()) {
+			throw new IOException("Trailing data after service index");
+		}
+		return new ServiceIndex(Collections.unmodifiableMap(providers), 0 != (flags & FLAG_COMPLETE));
+	}
+
+	/**
+	 * Write this index.
+	 * 
+	 * @param out stream to receive index; not closed
+	 * @throws IOException if index cannot be written
+	 */
+	public void write(final OutputStream out) throws IOException {
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		data.writeByte(complete ? FLAG_COMPLETE : 0);
+		data.writeInt(providers.size());
+		for (Map.Entry<String, List<String>> entry : providers.entrySet()) {
+			data.writeUTF(entry.getKey());
+			data.writeInt(entry.getValue().size());
+			for (String name : entry.getValue()) {
+				data.writeUTF(name);
+			}
+		}
+		data.flush();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.ServiceIndex[")
+		                              .append("services=").append(providers.size())
+		                              .append(",complete=").append(complete)
+		                              .append("]");
+		return buf.toString();
+	}
+
+	private static ServiceIndex find(final ClassLoader loader) {
+		try {
+			final Enumeration<URL> urls = (null == loader)
+			                              ? ClassLoader.getSystemResources(RESOURCE)
+			                              : loader.getResources(RESOURCE);
+			while (urls.hasMoreElements()) {
+				final ServiceIndex index = read(urls.nextElement());
+				if (index.isComplete()) {
+					return index;
+				}
+			}
+		} catch (IOException ioe) {
+			// An unreadable index falls back to scanning, which is slower
+			// but always correct
+		}
+		return NONE;
+	}
+
+	private static ServiceIndex read(final URL url) throws IOException {
+		final InputStream in = url.openStream();
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static int count(final DataInputStream data) throws IOException {
+		final int count = data.readInt();
+		if (count < 0) {
+			throw new IOException("Negative count in service index");
+		}
+		return count;
+	}
+
+}
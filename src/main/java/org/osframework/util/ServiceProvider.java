@@ -0,0 +1,46 @@
+/*
+ * File: ServiceProvider.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the annotated class as a provider of one or more service types.
+ * At build time <code>ServiceIndexProcessor</code>, of the Common Utilities
+ * Processor artifact, writes the declarations to the standard
+ * <code>META-INF/services</code> provider-configuration files and to a
+ * precompiled {@linkplain ServiceIndex service index} read by
+ * {@link ServiceClassLoader}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface ServiceProvider {
+
+	/**
+	 * Service types implemented by the annotated class.
+	 */
+	Class<?>[] value();
+
+}
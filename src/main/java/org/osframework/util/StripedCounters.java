@@ -0,0 +1,119 @@
+/*
+ * File: StripedCounters.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed set of counters which may be updated by many threads without
+ * contention. Each counter is split into one cell per stripe; a thread
+ * updates only the cells of the stripe selected by its identity, and a
+ * read sums the cells of every stripe. The cells of a stripe are laid out
+ * together and padded to whole cache lines, so threads updating different
+ * stripes never write to the same cache line.
+ * <p>A sum is not an atomic snapshot: updates made while it is computed may
+ * or may not be included.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class StripedCounters {
+
+	/**
+	 * Number of <code>long</code> cells in a 64-byte cache line.
+	 */
+	private static final int LINE = 8;
+
+	private final AtomicLongArray cells;
+	private final int counters;
+	private final int rowLength;
+	private final int stripeMask;
+
+	/**
+	 * Create a set of counters, with a number of stripes suited to the
+	 * number of available processors.
+	 * 
+	 * @param counters number of counters
+	 */
+	StripedCounters(final int counters) {
+		this(counters, Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	StripedCounters(final int counters, final int minStripes) {
+		int stripes = 1;
+		while (stripes < minStripes && stripes < 64) stripes <<= 1;
+		this.counters = counters;
+		// Round each row up to whole cache lines, plus one line of padding
+		// between adjacent rows
+		this.rowLength = (((counters + LINE - 1) / LINE) + 1) * LINE;
+		this.stripeMask = stripes - 1;
+		this.cells = new AtomicLongArray(stripes * rowLength);
+	}
+
+	/**
+	 * Get the number of counters.
+	 */
+	int size() {
+		return counters;
+	}
+
+	/**
+	 * Increment a counter.
+	 * 
+	 * @return new value of the cell of the calling thread's stripe
+	 */
+	long increment(int counter) {
+		return cells.incrementAndGet(row() + counter);
+	}
+
+	/**
+	 * Add a value to a counter.
+	 */
+	void add(int counter, long delta) {
+		cells.addAndGet(row() + counter, delta);
+	}
+
+	/**
+	 * Get the sum of the cells of a counter.
+	 */
+	long sum(int counter) {
+		long sum = 0L;
+		for (int i = counter, end = cells.length(); i < end; i += rowLength) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * Reset every counter to zero.
+	 */
+	void reset() {
+		for (int i = 0, end = cells.length(); i < end; i++) {
+			cells.set(i, 0L);
+		}
+	}
+
+	/**
+	 * Get the index of the first cell of the calling thread's stripe.
+	 */
+	private int row() {
+		final long id = Thread.currentThread().getId();
+		final int hash = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+		return ((hash >>> 16) & stripeMask) * rowLength;
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * File: SwarScanner.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fast path of the date scanner for the fixed-width notations
+ * <code>yyyyMMdd</code>, <code>yyyy-MM-dd</code> and
+ * <code>yyyy/MM/dd</code>. The eight digits of a date are gathered into a
+ * single <code>long</code>, one ASCII character per byte with the first
+ * character in the lowest byte, and are validated and converted to binary
+ * with a few whole-word operations (SIMD within a register) rather than one
+ * character at a time.
+ * <p>The fast path applies only in parse mode, to a trimmed range of the
+ * exact length of its notation. Any other range, or a character source
+ * holding non-ASCII characters, is reported as {@link #UNSUPPORTED} and must
+ * be scanned by the general scanner. A supported range produces exactly the
+ * result of the general scanner.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class SwarScanner {
+
+	/**
+	 * Result of a range which the fast path does not handle.
+	 */
+	static final long UNSUPPORTED = -2L;
+
+	private static final long ZEROS  = 0x3030303030303030L;
+	private static final long NIBBLE = 0xF0F0F0F0F0F0F0F0L;
+	private static final long SIXES  = 0x0606060606060606L;
+
+	/**
+	 * Private constructor - this class cannot be instantiated.
+	 */
+	private SwarScanner() {}
+
+	/**
+	 * Scan the specified trimmed range of a character source for a date in
+	 * the specified format.
+	 * 
+	 * @param format one of the <code>DATE_*</code> format constants
+	 * @return packed date value, {@link DateUtil#SCAN_FAILED} if range does
+	 *         not represent a date, or {@link #UNSUPPORTED} if range must be
+	 *         scanned by the general scanner
+	 */
+	static long scan(Object src, int start, int end, int format) {
+		final int len = end - start;
+		if (DateUtil.DATE_BASIC == format) {
+			if (8 != len) return UNSUPPORTED;
+			final long word = load(src, start);
+			return (UNSUPPORTED == word) ? UNSUPPORTED : convert(word, format);
+		}
+		if (DateUtil.DATE_ISO8601 == format || DateUtil.DATE_US_REVERSE == format) {
+			if (10 != len) return UNSUPPORTED;
+			// "yyyy-MM-" and "yy-MM-dd"
+			final long head = load(src, start);
+			final long tail = load(src, start + 2);
+			if (UNSUPPORTED == head || UNSUPPORTED == tail) return UNSUPPORTED;
+			final long sep = (DateUtil.DATE_ISO8601 == format) ? '-' : '/';
+			if ((head & 0xFF0000FF00000000L) != ((sep << 56) | (sep << 32))) {
+				return DateUtil.SCAN_FAILED;
+			}
+			// Gather yyyy from head bytes 0-3, MM from head bytes 5-6 and dd
+			// from tail bytes 6-7
+			final long word = (head & 0x00000000FFFFFFFFL) |
+			                  ((head >>> 8) & 0x0000FFFF00000000L) |
+			                  (tail & 0xFFFF000000000000L);
+			return convert(word, format);
+		}
+		return UNSUPPORTED;
+	}
+
+	/**
+	 * Validate and convert eight ASCII digits.
+	 * 
+	 * @return packed date value, or {@link DateUtil#SCAN_FAILED}
+	 */
+	static long convert(long word, int format) {
+		// Every byte must be in range [0x30,0x39]: its high nibble must be 3,
+		// and remain 3 after adding 6
+		if ((word & NIBBLE) != ZEROS || ((word + SIXES) & NIBBLE) != ZEROS) {
+			return DateUtil.SCAN_FAILED;
+		}
+		long v = word - ZEROS;
+		// Combine adjacent digits into two-digit values, one per 16 bits
+		v = ((v * 10L) + (v >>> 8)) & 0x00FF00FF00FF00FFL;
+		final int year = (int)(((v & 0xFF) * 100L) + ((v >>> 16) & 0xFF));
+		final int month = (int)((v >>> 32) & 0xFF);
+		final int day = (int)(v >>> 48);
+		if (month < 1 || month > 12 || day < 1 || day > CalendarTable.daysInMonth(year, month)) {
+			return DateUtil.SCAN_FAILED;
+		}
+		return DateUtil.pack(year, month, day, format);
+	}
+
+	/**
+	 * Load eight characters of a character source into a <code>long</code>,
+	 * first character in the lowest byte.
+	 * 
+	 * @return loaded word, or {@link #UNSUPPORTED} if a character is not ASCII
+	 */
+	static long load(Object src, int index) {
+		if (src instanceof byte[]) {
+			final byte[] b = (byte[])src;
+			return (b[index] & 0xFFL) |
+			       ((b[index + 1] & 0xFFL) << 8) |
+			       ((b[index + 2] & 0xFFL) << 16) |
+			       ((b[index + 3] & 0xFFL) << 24) |
+			       ((b[index + 4] & 0xFFL) << 32) |
+			       ((b[index + 5] & 0xFFL) << 40) |
+			       ((b[index + 6] & 0xFFL) << 48) |
+			       ((long)b[index + 7] << 56);
+		}
+		if (src instanceof ByteBuffer) {
+			final ByteBuffer buffer = (ByteBuffer)src;
+			final long word = buffer.getLong(index);
+			return (ByteOrder.LITTLE_ENDIAN == buffer.order()) ? word : Long.reverseBytes(word);
+		}
+		long word = 0L;
+		int any = 0;
+		if (src instanceof char[]) {
+			final char[] c = (char[])src;
+			for (int i = 7; i >= 0; i--) {
+				final char ch = c[index + i];
+				any |= ch;
+				word = (word << 8) | ch;
+			}
+		} else {
+			final CharSequence s = (CharSequence)src;
+			for (int i = 7; i >= 0; i--) {
+				final char ch = s.charAt(index + i);
+				any |= ch;
+				word = (word << 8) | ch;
+			}
+		}
+		return (any > 0x7F) ? UNSUPPORTED : word;
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * File: AdaptiveDateParserTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>AdaptiveDateParser</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class AdaptiveDateParserTest {
+
+	@Test
+	public void testLockOntoDominantNotation() {
+		final AdaptiveDateParser parser = new AdaptiveDateParser(4);
+		assertNull(parser.getLockedNotation());
+		assertEquals(parser.parseToInt("12/25/2012"), 20121225);
+		assertEquals(parser.parseToInt("2012-12-26"), 20121226);
+		assertEquals(parser.parseToInt("12/27/2012"), 20121227);
+		assertNull(parser.getLockedNotation());
+		assertEquals(parser.parseToInt("12/28/2012"), 20121228);
+		assertEquals(parser.getLockedNotation(), DateNotation.US);
+		assertEquals(parser.getMissCount(), 0L);
+	}
+
+	@Test
+	public void testMissFallsBackToFullDetection() {
+		final AdaptiveDateParser parser = new AdaptiveDateParser(2);
+		parser.parseToInt("2012-12-25");
+		parser.parseToInt("2012-12-26");
+		assertEquals(parser.getLockedNotation(), DateNotation.ISO8601);
+		final ParsedDate result = new ParsedDate();
+		assertTrue(parser.parse("x 20121227 x", 1, 10, result));
+		assertEquals(result.getNotation(), DateNotation.BASIC);
+		assertEquals(result.toPackedDate(), 20121227);
+		assertFalse(parser.parse("2012-02-30", result));
+		assertEquals(parser.getMissCount(), 2L);
+		assertEquals(parser.getInvalidCount(), 1L);
+		// Second consecutive miss unlocks the parser
+		assertNull(parser.getLockedNotation());
+		assertEquals(parser.getParseCount(), 4L);
+	}
+
+	@Test
+	public void testRelearnAfterUnlock() {
+		final AdaptiveDateParser parser = new AdaptiveDateParser(3);
+		for (int day = 10; day < 13; day++) {
+			parser.parseToEpochDay("2012/12/" + day);
+		}
+		assertEquals(parser.getLockedNotation(), DateNotation.US_REVERSE);
+		for (int day = 10; day < 16; day++) {
+			assertEquals(parser.parseToInt("201212" + day), 20121200 + day);
+		}
+		assertEquals(parser.getLockedNotation(), DateNotation.BASIC);
+		parser.reset();
+		assertNull(parser.getLockedNotation());
+		assertEquals(parser.getParseCount(), 0L);
+	}
+
+	@Test
+	public void testParseAgreesWithDateUtil() {
+		final AdaptiveDateParser parser = new AdaptiveDateParser(1);
+		final String[] values = { "2012-12-25", "12/25/2012", null, "12/25/20121", " 2012/12/25 ",
+		                          "2012-12-32", "20120229", "", "2012-12-25T10:00" };
+		final ParsedDate expected = new ParsedDate();
+		final ParsedDate actual = new ParsedDate();
+		for (String value : values) {
+			assertEquals(parser.parse(value, actual), DateUtil.tryParse(value, expected), value);
+			assertEquals(actual.getNotation(), expected.getNotation(), value);
+			assertEquals(actual.toPackedDate(), expected.toPackedDate(), value);
+			assertEquals(parser.parseToInt(value), DateUtil.tryParseToInt(value), value);
+			assertEquals(parser.parse((null == value) ? null : value.getBytes(), 0,
+			                          (null == value) ? 0 : value.length(), actual), expected.isValid(), value);
+		}
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testInvalidSampleSize() {
+		new AdaptiveDateParser(0);
+	}
+
+}
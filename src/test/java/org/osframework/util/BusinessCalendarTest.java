@@ -0,0 +1,159 @@
+/*
+ * File: BusinessCalendarTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>BusinessCalendar</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class BusinessCalendarTest {
+
+	private static final String HOLIDAYS = "# Sample holidays\n" +
+	                                       "\n" +
+	                                       "2012-01-02 New Year's Day (observed)\n" +
+	                                       "  12/25/2012\tChristmas Day\n" +
+	                                       "2012/12/26\n" +
+	                                       "20121229 falls on a Saturday\n";
+
+	@Test(dataProvider = "settlementData")
+	public void testSettlement(int packedDate, int days, int expected) throws IOException {
+		final BusinessCalendar calendar = new BusinessCalendar.Builder().load(new StringReader(HOLIDAYS)).build();
+		assertEquals(calendar.addWorkingDays(packedDate, days), expected);
+		assertEquals(calendar.workingDaysBetween(packedDate, expected), days);
+	}
+
+	@Test
+	public void testWorkingDay() throws IOException {
+		final BusinessCalendar calendar = new BusinessCalendar.Builder().load(new StringReader(HOLIDAYS)).build();
+		assertEquals(calendar.getHolidayCount(), 3);
+		assertTrue(calendar.isHoliday(20121225));
+		assertFalse(calendar.isHoliday(20121229));
+		assertFalse(calendar.isWorkingDay(20121229));
+		assertTrue(calendar.isWorkingDay(20121227));
+		assertEquals(calendar.nextWorkingDay(20121224), 20121227);
+		assertEquals(calendar.previousWorkingDay(20121227), 20121224);
+		assertEquals(calendar.addWorkingDays(20121225, 0), 20121225);
+		assertEquals(calendar.workingDaysBetween(20121222, 20121223), 0);
+		assertEquals(calendar.getFirstDate(), BusinessCalendar.DEFAULT_FIRST_DATE);
+		assertEquals(calendar.getLastDate(), BusinessCalendar.DEFAULT_LAST_DATE);
+	}
+
+	@Test
+	public void testAgainstDayByDay() {
+		final Random random = new Random(16);
+		final BusinessCalendar.Builder builder = new BusinessCalendar.Builder()
+		                                             .range(20000101, 20101231)
+		                                             .weekend(5, 6);
+		final int first = DateUtil.packedToEpochDay(20000101);
+		final int last = DateUtil.packedToEpochDay(20101231);
+		final boolean[] working = new boolean[last - first + 1];
+		for (int i = 0; i < working.length; i++) {
+			final int dayOfWeek = DateUtil.epochDayOfWeek(first + i);
+			working[i] = (5 != dayOfWeek && 6 != dayOfWeek);
+			if (0 == random.nextInt(20)) {
+				builder.holiday(DateUtil.epochDayToPacked(first + i));
+				working[i] = false;
+			}
+		}
+		final BusinessCalendar calendar = builder.build();
+		for (int n = 0; n < 2000; n++) {
+			final int from = random.nextInt(working.length);
+			final int to = random.nextInt(working.length);
+			final int fromDate = DateUtil.epochDayToPacked(first + from);
+			final int toDate = DateUtil.epochDayToPacked(first + to);
+			assertEquals(calendar.isWorkingDay(fromDate), working[from]);
+			int expected = 0;
+			for (int i = Math.min(from, to); i < Math.max(from, to); i++) {
+				if (working[(from <= to) ? i + 1 : i]) expected++;
+			}
+			expected = (from <= to) ? expected : -expected;
+			assertEquals(calendar.workingDaysBetween(fromDate, toDate), expected);
+			if (working[to]) {
+				assertEquals(calendar.addWorkingDays(fromDate, expected), (0 == expected) ? fromDate : toDate);
+			}
+		}
+	}
+
+	@Test
+	public void testLoadFile() throws IOException {
+		final File file = File.createTempFile("BusinessCalendarTest", ".txt");
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(HOLIDAYS.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		final BusinessCalendar calendar = new BusinessCalendar.Builder().range(20120101, 20121231).load(file).build();
+		assertEquals(calendar.getHolidayCount(), 3);
+		assertEquals(calendar.workingDaysBetween(20120101, 20121231), 258);
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testLoadInvalid() throws IOException {
+		new BusinessCalendar.Builder().load(new StringReader("2012-12-25\n2012-12-32 Bad\n"));
+	}
+
+	@Test(dataProvider = "outOfRangeData", expectedExceptions=IllegalArgumentException.class)
+	public void testOutOfRange(int packedDate, int days) {
+		new BusinessCalendar.Builder().range(20121201, 20121231).build().addWorkingDays(packedDate, days);
+	}
+
+	@DataProvider
+	public Object[][] settlementData() {
+		return new Object[][] {
+			{ 20121221, 1, 20121224 },
+			{ 20121221, 2, 20121227 },
+			{ 20121224, 3, 20121231 },
+			{ 20121225, 1, 20121227 },
+			{ 20121225, -1, 20121224 },
+			{ 20121230, -4, 20121221 },
+			{ 20111230, 1, 20120103 },
+			{ 20120103, -1, 20111230 },
+			{ 20120101, 258, 20121231 }
+		};
+	}
+
+	@DataProvider
+	public Object[][] outOfRangeData() {
+		return new Object[][] {
+			{ 20121130, 1 },
+			{ 20130101, -1 },
+			{ 20121231, 1 },
+			{ 20121203, -1 },
+			{ 20121201, 22 },
+			{ 20121231, Integer.MIN_VALUE }
+		};
+	}
+
+}
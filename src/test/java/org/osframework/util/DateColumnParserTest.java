@@ -0,0 +1,132 @@
+/*
+ * File: DateColumnParserTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateColumnParser</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateColumnParserTest {
+
+	@Test(dataProvider = "columnSizeData")
+	public void testParseToInt(int size) {
+		String[] values = createColumn(size);
+		int[] column = new int[size];
+		long[] validity = new long[DateColumnParser.bitmapLength(size)];
+		int invalid = DateColumnParser.parseToInt(values, column, validity);
+		int expectedInvalid = 0;
+		for (int i = 0; i < size; i++) {
+			boolean expectedValid = isExpectedValid(i);
+			assertEquals(DateColumnParser.isValid(validity, i), expectedValid, values[i]);
+			if (expectedValid) {
+				assertEquals(column[i], DateUtil.parseToInt(values[i]));
+			} else {
+				assertEquals(column[i], 0);
+				expectedInvalid++;
+			}
+		}
+		assertEquals(invalid, expectedInvalid);
+	}
+
+	@Test(dataProvider = "columnSizeData")
+	public void testParseToEpochDay(int size) {
+		String[] values = createColumn(size);
+		int[] column = new int[size];
+		long[] validity = new long[DateColumnParser.bitmapLength(size)];
+		DateColumnParser.parseToEpochDay(values, column, validity);
+		for (int i = 0; i < size; i++) {
+			if (isExpectedValid(i)) {
+				assertEquals(column[i], DateUtil.parseToEpochDay(values[i]));
+			}
+		}
+	}
+
+	@Test(dataProvider = "columnSizeData")
+	public void testParseToMillis(int size) {
+		String[] values = createColumn(size);
+		long[] column = new long[size];
+		long[] validity = new long[DateColumnParser.bitmapLength(size)];
+		DateColumnParser.parseToMillis(values, column, validity);
+		for (int i = 0; i < size; i++) {
+			if (isExpectedValid(i)) {
+				assertEquals(column[i], DateUtil.parseDate(values[i]).getTime());
+			}
+		}
+	}
+
+	@Test
+	public void testParseList() {
+		List<String> values = Arrays.asList("2012-12-25", null, "12/25/2012", "12.25.2012", "20121225");
+		int[] column = new int[values.size()];
+		long[] validity = new long[1];
+		int invalid = DateColumnParser.parseToInt(values, column, validity);
+		assertEquals(invalid, 2);
+		assertTrue(DateColumnParser.isValid(validity, 0));
+		assertFalse(DateColumnParser.isValid(validity, 1));
+		assertTrue(DateColumnParser.isValid(validity, 2));
+		assertFalse(DateColumnParser.isValid(validity, 3));
+		assertTrue(DateColumnParser.isValid(validity, 4));
+		assertEquals(column, new int[] { 20121225, 0, 20121225, 0, 20121225 });
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testParseBitmapTooSmall() {
+		DateColumnParser.parseToInt(new String[65], new int[65], new long[1]);
+	}
+
+	@DataProvider
+	public Object[][] columnSizeData() {
+		return new Object[][] {
+			{ 0 }, { 63 }, { 64 }, { 1000 },
+			{ DateColumnParser.PARALLEL_THRESHOLD + 1 },
+			{ 100003 }
+		};
+	}
+
+	private static boolean isExpectedValid(int i) {
+		return (0 != (i % 7)) && (0 != (i % 11));
+	}
+
+	private static String[] createColumn(int size) {
+		String[] values = new String[size];
+		for (int i = 0; i < size; i++) {
+			int packed = DateUtil.addDays(19700101, i % 30000);
+			String iso = DateUtil.formatDateToISO8601(DateUtil.parseDate(String.valueOf(packed)));
+			if (0 == (i % 7)) {
+				values[i] = (0 == (i % 2)) ? null : iso.replace('-', '.');
+			} else if (0 == (i % 11)) {
+				values[i] = "2011-02-29";
+			} else {
+				values[i] = (0 == (i % 3)) ? String.valueOf(packed) : iso;
+			}
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * File: DateColumnReaderTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.osframework.util.DateColumnReader.Handler;
+import org.osframework.util.DateColumnReader.Range;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateColumnReader</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateColumnReaderTest {
+
+	private static final String CSV = "id,name,created\r\n" +
+	                                  "1,alpha,2012-12-25\r\n" +
+	                                  "2,\"beta, gamma\",12/25/2012\r\n" +
+	                                  "\r\n" +
+	                                  "3,delta, \"2012/12/26\" \r\n" +
+	                                  "4,epsilon,2012-13-01\r\n" +
+	                                  "5,zeta\r\n" +
+	                                  "6,eta,20121227";
+
+	@Test(dataProvider = "windowData")
+	public void testReadHandler(int windowSize) throws IOException {
+		final File file = write(CSV);
+		final DateColumnReader reader = new DateColumnReader(file, ',', 2, true, windowSize);
+		final List<String> events = new ArrayList<String>();
+		final long invalid = reader.read(new Handler() {
+			public void date(long position, int packedDate) {
+				events.add(CSV.substring((int)position, (int)position + 1) + "=" + packedDate);
+			}
+			public void invalid(long position) {
+				events.add(CSV.substring((int)position, (int)position + 1) + "=invalid");
+			}
+		});
+		assertEquals(invalid, 2L);
+		assertEquals(events.toString(), "[1=20121225, 2=20121225, 3=20121226, 4=invalid, 5=invalid, 6=20121227]");
+		assertEquals(reader.countRecords(), 6L);
+	}
+
+	@Test(dataProvider = "windowData")
+	public void testReadRanges(int windowSize) throws IOException {
+		final File file = write(CSV);
+		final DateColumnReader reader = new DateColumnReader(file, ',', 2, true, windowSize);
+		final int[] count = new int[2];
+		final Handler handler = new Handler() {
+			public void date(long position, int packedDate) {
+				count[0]++;
+			}
+			public void invalid(long position) {
+				count[1]++;
+			}
+		};
+		final List<Range> ranges = reader.split(5);
+		assertEquals(ranges.get(0).getStart(), 0L);
+		assertEquals(ranges.get(ranges.size() - 1).getEnd(), file.length());
+		for (int i = 0; i < ranges.size(); i++) {
+			if (i > 0) {
+				assertEquals(ranges.get(i).getStart(), ranges.get(i - 1).getEnd());
+				assertEquals(CSV.charAt((int)ranges.get(i).getStart() - 1), '\n');
+			}
+			reader.read(ranges.get(i), handler);
+		}
+		assertEquals(count[0], 4);
+		assertEquals(count[1], 2);
+	}
+
+	@Test
+	public void testReadToIntParallel() throws IOException {
+		final int size = 100000;
+		final StringBuilder buf = new StringBuilder();
+		final int[] expected = new int[size];
+		for (int i = 0; i < size; i++) {
+			final int epochDay = (i * 37) % 20000;
+			expected[i] = (0 == i % 17) ? 0 : DateUtil.epochDayToPacked(epochDay);
+			buf.append(i).append('\t');
+			if (0 == expected[i]) {
+				buf.append("n/a");
+			} else if (0 == i % 2) {
+				DateUtil.formatPackedDate(expected[i], DateNotation.ISO8601, buf);
+			} else {
+				DateUtil.formatPackedDate(expected[i], DateNotation.US, buf);
+			}
+			buf.append("\tpadding padding padding\n");
+		}
+		final File file = write(buf.toString());
+		final DateColumnReader reader = new DateColumnReader(file, '\t', 1, false);
+		assertEquals(reader.countRecords(), (long)size);
+		final int[] column = new int[size];
+		final long[] validity = new long[DateColumnParser.bitmapLength(size)];
+		final int invalid = reader.readToInt(column, validity, new ForkJoinPool(4));
+		assertEquals(invalid, (size + 16) / 17);
+		for (int i = 0; i < size; i++) {
+			assertEquals(column[i], expected[i]);
+			assertEquals(DateColumnParser.isValid(validity, i), (0 != expected[i]));
+		}
+		final int[] epochDays = new int[size];
+		reader.readToEpochDay(epochDays, validity);
+		assertEquals(epochDays[1], 37);
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testReadToIntArrayTooSmall() throws IOException {
+		final DateColumnReader reader = new DateColumnReader(write(CSV), ',', 2, true);
+		reader.readToInt(new int[5], new long[1]);
+	}
+
+	@Test(expectedExceptions=IOException.class)
+	public void testRecordLongerThanWindow() throws IOException {
+		final DateColumnReader reader = new DateColumnReader(write(CSV), ',', 2, true, 8);
+		reader.countRecords();
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		final DateColumnReader reader = new DateColumnReader(write(""), 0);
+		assertEquals(reader.countRecords(), 0L);
+		assertEquals(reader.readToInt(new int[0], new long[0]), 0);
+		assertEquals(reader.split(4).size(), 1);
+	}
+
+	@Test
+	public void testFirstColumn() throws IOException {
+		final DateColumnReader reader = new DateColumnReader(write(" 2012-12-25 ,x\n2012-12-2,y\n"), 0);
+		final int[] column = new int[2];
+		final long[] validity = new long[1];
+		assertEquals(reader.readToInt(column, validity), 1);
+		assertEquals(column[0], 20121225);
+		assertTrue(DateColumnParser.isValid(validity, 0));
+		assertFalse(DateColumnParser.isValid(validity, 1));
+	}
+
+	@DataProvider
+	public Object[][] windowData() {
+		return new Object[][] {
+			{ DateColumnReader.DEFAULT_WINDOW_SIZE },
+			{ 32 },
+			{ 64 }
+		};
+	}
+
+	private static File write(String content) throws IOException {
+		final File file = File.createTempFile("DateColumnReaderTest", ".csv");
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("US-ASCII"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * File: DateColumnTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateColumn</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateColumnTest {
+
+	@Test(dataProvider = "spanData")
+	public void testAgainstSortedArray(int size, int span) {
+		final Random random = new Random(size ^ span);
+		final int[] expected = new int[size];
+		final DateColumn.Builder builder = new DateColumn.Builder();
+		for (int i = 0; i < size; i++) {
+			expected[i] = 15000 + random.nextInt(span);
+			builder.addEpochDay(expected[i]);
+		}
+		Arrays.sort(expected);
+		final DateColumn column = builder.build();
+		assertEquals(column.size(), size);
+		for (int i = 0; i < size; i++) {
+			assertEquals(column.getEpochDay(i), expected[i]);
+		}
+		for (int n = 0; n < 200; n++) {
+			final int from = 14990 + random.nextInt(span + 20);
+			final int to = from + random.nextInt(span / 4 + 1);
+			int lo = 0;
+			while (lo < size && expected[lo] < from) lo++;
+			int hi = lo;
+			while (hi < size && expected[hi] <= to) hi++;
+			final int fromDate = DateUtil.epochDayToPacked(from);
+			final int toDate = DateUtil.epochDayToPacked(to);
+			assertEquals(column.ceilingIndex(fromDate), lo);
+			assertEquals(column.countRange(fromDate, toDate), hi - lo);
+			final DateColumn.Cursor cursor = column.range(fromDate, toDate);
+			assertEquals(cursor.remaining(), hi - lo);
+			for (int i = lo; i < hi; i++) {
+				assertTrue(cursor.hasNext());
+				assertEquals(cursor.nextIndex(), i);
+				assertEquals(cursor.nextEpochDay(), expected[i]);
+			}
+			assertFalse(cursor.hasNext());
+		}
+	}
+
+	@Test
+	public void testBuilderStrings() {
+		final DateColumn column = new DateColumn.Builder()
+		                              .add("2012-12-25")
+		                              .add("12/24/2012")
+		                              .add(" 20121226 ")
+		                              .add("2012/12/25".getBytes(), 0, 10)
+		                              .add(20121201)
+		                              .build();
+		final DateColumn.Cursor cursor = column.cursor();
+		assertEquals(cursor.nextPackedDate(), 20121201);
+		assertEquals(cursor.nextPackedDate(), 20121224);
+		assertEquals(cursor.nextPackedDate(), 20121225);
+		assertEquals(cursor.nextPackedDate(), 20121225);
+		assertEquals(cursor.nextPackedDate(), 20121226);
+		assertFalse(cursor.hasNext());
+		assertEquals(column.countRange(20121225, 20121225), 2);
+		assertEquals(column.countRange(20121226, 20121225), 0);
+		assertEquals(column.getPackedDate(4), 20121226);
+	}
+
+	@Test
+	public void testCompression() {
+		final DateColumn.Builder builder = new DateColumn.Builder();
+		for (int i = 0; i < 100000; i++) {
+			builder.addEpochDay(15000 + (i / 20));
+		}
+		final DateColumn column = builder.build();
+		assertTrue(column.getEncodedSize() < 100000L * 4 / 8);
+	}
+
+	@Test
+	public void testEmpty() {
+		final DateColumn column = new DateColumn.Builder().build();
+		assertEquals(column.size(), 0);
+		assertEquals(column.countRange(20120101, 20121231), 0);
+		assertFalse(column.cursor().hasNext());
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testBuilderInvalid() {
+		new DateColumn.Builder().add("2012-12-32");
+	}
+
+	@Test(expectedExceptions=IndexOutOfBoundsException.class)
+	public void testIndexOutOfBounds() {
+		new DateColumn.Builder().add(20121225).build().getEpochDay(1);
+	}
+
+	@DataProvider
+	public Object[][] spanData() {
+		return new Object[][] {
+			{ 1, 1 },
+			{ 128, 1 },
+			{ 129, 31 },
+			{ 1000, 365 },
+			{ 5000, 36500 },
+			{ 20000, 2000000 }
+		};
+	}
+
+}
@@ -0,0 +1,189 @@
+/*
+ * File: DateEnginesTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Date;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateEngines</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateEnginesTest {
+
+	private final ClassLoader loader = DateEnginesTest.class.getClassLoader();
+
+	@Test
+	public void testDefault() {
+		assertTrue(DateUtil.getDateEngine() instanceof JodaDateEngine);
+		assertSame(DateUtil.getDateEngine(), DateEngines.ENGINE);
+	}
+
+	@Test(dataProvider = "selectData")
+	public void testSelect(String override, Class<?> expected) {
+		// Test configuration declares an unavailable engine and a missing
+		// class, both of which must be skipped
+		assertEquals(DateEngines.select(override, loader).getClass(), expected);
+	}
+
+	@Test
+	public void testSelectFastest() throws IOException {
+		final File dir = File.createTempFile("engines", "");
+		dir.delete();
+		final File file = new File(dir, "META-INF/services/" + DateEngine.class.getName());
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write((FastEngine.class.getName() + "\n").getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		file.deleteOnExit();
+		file.getParentFile().deleteOnExit();
+		file.getParentFile().getParentFile().deleteOnExit();
+		dir.deleteOnExit();
+		final ClassLoader fastLoader = new URLClassLoader(new URL[] { dir.toURI().toURL() }, loader);
+		// Available engine of priority above the Joda-Time engine wins
+		assertEquals(DateEngines.select(null, fastLoader).getClass(), FastEngine.class);
+		assertEquals(DateEngines.select("joda", fastLoader).getClass(), JodaDateEngine.class);
+	}
+
+	@Test
+	public void testJodaEngine() {
+		final DateEngine engine = new JodaDateEngine();
+		final DateTimeZone zone = DateTimeZone.getDefault();
+		final long millis = new DateTime(2012, 12, 25, 13, 45, 0, 0).getMillis();
+		assertEquals(engine.getOffset(millis), zone.getOffset(millis));
+		assertEquals(engine.startOfDay(millis), new DateTime(2012, 12, 25, 0, 0, 0, 0).getMillis());
+		assertEquals(engine.toMillis(2012, 12, 25, 49500000), millis);
+		assertEquals(engine.format(millis, DateNotation.US), "12/25/2012");
+		final long far = new DateTime(12012, 12, 25, 0, 0, 0, 0).getMillis();
+		assertEquals(engine.format(far, DateNotation.ISO8601), "12012-12-25");
+		assertEquals(DateUtil.formatDateToISO8601(new Date(far)), "12012-12-25");
+	}
+
+	@DataProvider
+	public Object[][] selectData() {
+		return new Object[][] {
+			{ null, JodaDateEngine.class },
+			{ "joda", JodaDateEngine.class },
+			{ " org.osframework.util.JodaDateEngine ", JodaDateEngine.class },
+			{ "unavailable", JodaDateEngine.class },
+			{ "no.such.Engine", JodaDateEngine.class },
+			{ UnregisteredEngine.class.getName(), UnregisteredEngine.class }
+		};
+	}
+
+	/**
+	 * Engine of highest priority which is never available.
+	 */
+	public static final class UnavailableEngine extends DelegatingEngine {
+		public UnavailableEngine() {
+			super("unavailable", Integer.MAX_VALUE, false);
+		}
+	}
+
+	/**
+	 * Available engine of higher priority than the Joda-Time engine, declared
+	 * only to the class loader of {@link #testSelectFastest()}.
+	 */
+	public static final class FastEngine extends DelegatingEngine {
+		public FastEngine() {
+			super("fast", 10, true);
+		}
+	}
+
+	/**
+	 * Engine which is not declared as a provider.
+	 */
+	public static final class UnregisteredEngine extends DelegatingEngine {
+		public UnregisteredEngine() {
+			super("unregistered", -1, true);
+		}
+	}
+
+	private static class DelegatingEngine implements DateEngine {
+
+		private final DateEngine delegate = new JodaDateEngine();
+		private final String name;
+		private final int priority;
+		private final boolean available;
+
+		DelegatingEngine(final String name, final int priority, final boolean available) {
+			this.name = name;
+			this.priority = priority;
+			this.available = available;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public boolean isAvailable() {
+			return available;
+		}
+
+		public int getOffset(long millis) {
+			return delegate.getOffset(millis);
+		}
+
+		public int getOffsetFromLocal(long localMillis) {
+			return delegate.getOffsetFromLocal(localMillis);
+		}
+
+		public long localToMillis(long localMillis) {
+			return delegate.localToMillis(localMillis);
+		}
+
+		public long toMillis(int year, int month, int day, int millisOfDay) {
+			return delegate.toMillis(year, month, day, millisOfDay);
+		}
+
+		public long startOfDay(long millis) {
+			return delegate.startOfDay(millis);
+		}
+
+		public void startOfDay(long[] millis) {
+			delegate.startOfDay(millis);
+		}
+
+		public String format(long millis, DateNotation notation) {
+			return delegate.format(millis, notation);
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * File: DateFormatRegistryTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.joda.time.DateTime;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateFormatRegistry</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateFormatRegistryTest {
+
+	@Test
+	public void testDefaultPatterns() {
+		final DateFormatRegistry registry = new DateFormatRegistry();
+		assertEquals(registry.getPatterns(), Arrays.asList("yyyy-MM-dd", "MM/dd/yyyy", "yyyy/MM/dd", "yyyyMMdd"));
+	}
+
+	@Test(dataProvider = "defaultData")
+	public void testDefaultAgreesWithDateUtil(String input) {
+		final DateFormatRegistry registry = new DateFormatRegistry();
+		assertEquals(registry.tryParseToInt(input), DateUtil.tryParseToInt(input));
+	}
+
+	@Test(dataProvider = "registeredData")
+	public void testRegistered(String input, String pattern, int expected) {
+		final DateFormatRegistry registry = new DateFormatRegistry()
+		                                        .register("dd.MM.yyyy")
+		                                        .register("yyyyMMddHHmmss")
+		                                        .register("dd-MMM-yyyy")
+		                                        .register("yyyy-MM-dd'T'HH:mm");
+		assertEquals(registry.getPattern(input), pattern);
+		assertEquals(registry.isDate(input), (null != pattern));
+		assertEquals(registry.tryParseToInt(input), expected);
+	}
+
+	@Test
+	public void testParseToMillis() {
+		final DateFormatRegistry registry = new DateFormatRegistry("yyyyMMddHHmmss", "dd MMM yyyy");
+		assertEquals(registry.parseToMillis("20121225183015"), new DateTime(2012, 12, 25, 18, 30, 15, 0).getMillis());
+		assertEquals(registry.parseDate("25 Dec 2012").getTime(), new DateTime(2012, 12, 25, 0, 0, 0, 0).getMillis());
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testParseToIntInvalid() {
+		new DateFormatRegistry().parseToInt("25.12.2012");
+	}
+
+	@Test(dataProvider = "invalidPatternData", expectedExceptions=IllegalArgumentException.class)
+	public void testRegisterInvalid(String pattern) {
+		new DateFormatRegistry().register(pattern);
+	}
+
+	@Test
+	public void testRegisterRejectedLeavesRegistryUnchanged() {
+		final DateFormatRegistry registry = new DateFormatRegistry();
+		try {
+			registry.register("ddMMyyyy");
+		} catch (IllegalArgumentException expected) {
+			// ambiguous with yyyyMMdd
+		}
+		assertEquals(registry.getPatterns().size(), 4);
+		assertEquals(registry.tryParseToInt("25122012"), DateUtil.INVALID_DATE);
+		assertTrue(registry.isDate("20121225"));
+	}
+
+	@Test
+	public void testNull() {
+		final DateFormatRegistry registry = new DateFormatRegistry();
+		assertFalse(registry.isDate(null));
+		assertNull(registry.getPattern(null));
+		assertEquals(registry.tryParseToInt(null), DateUtil.INVALID_DATE);
+	}
+
+	@DataProvider
+	public Object[][] defaultData() {
+		return new Object[][] {
+			{ "2012-12-25" },
+			{ " 12/25/2012\t" },
+			{ "2012/12/25" },
+			{ "20121225" },
+			{ "20120229" },
+			{ "20110229" },
+			{ "2012-12-32" },
+			{ "2012-12/25" },
+			{ "12-25-2012" },
+			{ "" }
+		};
+	}
+
+	@DataProvider
+	public Object[][] registeredData() {
+		return new Object[][] {
+			{ "25.12.2012", "dd.MM.yyyy", 20121225 },
+			{ "20121225183015", "yyyyMMddHHmmss", 20121225 },
+			{ "20121225243015", null, DateUtil.INVALID_DATE },
+			{ "25-Dec-2012", "dd-MMM-yyyy", 20121225 },
+			{ "25-DEC-2012", "dd-MMM-yyyy", 20121225 },
+			{ "25-Dex-2012", null, DateUtil.INVALID_DATE },
+			{ "2012-12-25T18:30", "yyyy-MM-dd'T'HH:mm", 20121225 },
+			{ "2012-12-25X18:30", null, DateUtil.INVALID_DATE },
+			{ "2012-12-25", "yyyy-MM-dd", 20121225 },
+			{ "31.04.2012", null, DateUtil.INVALID_DATE }
+		};
+	}
+
+	@DataProvider
+	public Object[][] invalidPatternData() {
+		return new Object[][] {
+			{ "MM-dd-yyyy'" },
+			{ "yy-MM-dd" },
+			{ "yyyy-MM" },
+			{ "yyyy-MM-dd-dd" },
+			{ "yyyy-MM-dd mm" },
+			{ "yyyy-MM-dd EEE" },
+			{ "ddMMyyyy" },
+			{ " yyyy.MM.dd" }
+		};
+	}
+
+}
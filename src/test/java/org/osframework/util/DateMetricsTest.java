@@ -0,0 +1,169 @@
+/*
+ * File: DateMetricsTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.osframework.util.DateMetrics.Operation;
+import org.osframework.util.DateMetrics.Snapshot;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateMetrics</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateMetricsTest {
+
+	private final DateMetrics metrics = DateMetrics.getInstance();
+
+	@BeforeMethod
+	public void enable() {
+		metrics.reset();
+		metrics.setEnabled(true);
+	}
+
+	@AfterMethod
+	public void disable() {
+		metrics.setEnabled(false);
+		metrics.reset();
+	}
+
+	@Test
+	public void testCounts() {
+		assertTrue(DateUtil.isDate("2012-12-25"));
+		assertFalse(DateUtil.isDate("2012-12-32"));
+		assertEquals(DateUtil.tryParseToInt("12/25/2012"), 20121225);
+		assertEquals(DateUtil.tryParseToInt("2012/12/25"), 20121225);
+		assertEquals(DateUtil.tryParseToInt("20121225"), 20121225);
+		assertEquals(DateUtil.tryParseToInt("garbage"), DateUtil.INVALID_DATE);
+		DateUtil.formatPackedDate(20121225, DateNotation.US, new StringBuilder());
+		DateUtil.tryParseDateTimeToMillis("2012-12-25T13:45Z");
+		DateUtil.formatDateTime(0L, 0, new StringBuilder());
+
+		final Snapshot snapshot = metrics.snapshot();
+		assertEquals(snapshot.getCalls(Operation.VALIDATE), 2L);
+		assertEquals(snapshot.getCalls(Operation.PARSE), 4L);
+		assertEquals(snapshot.getCalls(Operation.FORMAT), 1L);
+		assertEquals(snapshot.getCalls(Operation.PARSE_DATE_TIME), 1L);
+		assertEquals(snapshot.getCalls(Operation.FORMAT_DATE_TIME), 1L);
+		assertEquals(snapshot.getRejections(Operation.VALIDATE), 1L);
+		assertEquals(snapshot.getRejections(Operation.PARSE), 1L);
+		assertEquals(snapshot.getRejections(), 2L);
+		// Formatted dates are not hits
+		assertEquals(snapshot.getHits(DateNotation.ISO8601), 2L);
+		assertEquals(snapshot.getHits(DateNotation.US), 1L);
+		assertEquals(snapshot.getHits(DateNotation.US_REVERSE), 1L);
+		assertEquals(snapshot.getHits(DateNotation.BASIC), 1L);
+		assertEquals(metrics.getParseCalls(), 4L);
+		assertEquals(metrics.getUsHits(), 1L);
+	}
+
+	@Test
+	public void testAdaptiveRetryCountedOnce() {
+		final AdaptiveDateParser parser = new AdaptiveDateParser(1);
+		assertEquals(parser.parseToInt("2012-12-25"), 20121225);
+		assertEquals(parser.getLockedNotation(), DateNotation.ISO8601);
+		// Miss in the locked notation is retried in every notation
+		assertEquals(parser.parseToInt("12/25/2012"), 20121225);
+
+		final Snapshot snapshot = metrics.snapshot();
+		assertEquals(snapshot.getCalls(Operation.PARSE), 2L);
+		assertEquals(snapshot.getRejections(), 0L);
+		assertEquals(snapshot.getHits(DateNotation.ISO8601), 1L);
+		assertEquals(snapshot.getHits(DateNotation.US), 1L);
+	}
+
+	@Test
+	public void testCacheCountedOnce() {
+		final DateParseCache cache = new DateParseCache(16);
+		assertEquals(cache.tryParseToInt("2012-12-25"), 20121225);
+		assertEquals(cache.tryParseToInt("2012-12-25"), 20121225);
+		assertTrue(cache.isDate("2012-12-25"));
+		assertFalse(cache.isDate("garbage"));
+
+		final Snapshot snapshot = metrics.snapshot();
+		assertEquals(snapshot.getCalls(Operation.PARSE), 2L);
+		assertEquals(snapshot.getCalls(Operation.VALIDATE), 2L);
+		assertEquals(snapshot.getRejections(Operation.VALIDATE), 1L);
+		assertEquals(snapshot.getHits(DateNotation.ISO8601), 3L);
+	}
+
+	@Test
+	public void testDisabled() {
+		metrics.setEnabled(false);
+		assertFalse(metrics.isEnabled());
+		DateUtil.isDate("2012-12-25");
+		assertEquals(metrics.getValidateCalls(), 0L);
+	}
+
+	@Test
+	public void testConcurrentSampling() throws InterruptedException {
+		final int threads = 4;
+		final int calls = DateMetrics.SAMPLE_INTERVAL * 500;
+		final Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < calls; i++) {
+						DateUtil.tryParseToInt("2012-12-25");
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		final Snapshot snapshot = metrics.snapshot();
+		assertEquals(snapshot.getCalls(Operation.PARSE), (long)threads * calls);
+		assertEquals(snapshot.getHits(DateNotation.ISO8601), (long)threads * calls);
+		// Every stripe samples one call in SAMPLE_INTERVAL
+		assertEquals(snapshot.getSampledCalls(Operation.PARSE), (long)threads * 500);
+		assertTrue(snapshot.getMeanLatencyNanos(Operation.PARSE) > 0.0);
+		assertTrue(snapshot.getLatencyPercentileNanos(Operation.PARSE, 50.0) <=
+		           snapshot.getLatencyPercentileNanos(Operation.PARSE, 100.0));
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name = new ObjectName(DateMetrics.OBJECT_NAME);
+		metrics.registerMBean();
+		metrics.registerMBean();
+		try {
+			DateUtil.isDate("2012-12-25");
+			assertEquals(server.getAttribute(name, "ValidateCalls"), Long.valueOf(1L));
+			assertEquals(server.getAttribute(name, "Enabled"), Boolean.TRUE);
+		} finally {
+			metrics.unregisterMBean();
+		}
+		assertFalse(server.isRegistered(name));
+	}
+
+}
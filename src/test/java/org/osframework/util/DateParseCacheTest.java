@@ -0,0 +1,160 @@
+/*
+ * File: DateParseCacheTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.osframework.util.DateParseCache.EvictionPolicy;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateParseCache</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateParseCacheTest {
+
+	@Test(dataProvider = "inputData")
+	public void testAgreesWithDateUtil(String input) {
+		final DateParseCache cache = new DateParseCache(100);
+		for (int i = 0; i < 2; i++) {
+			assertEquals(cache.isDate(input), DateUtil.isDate(input));
+			assertEquals(cache.tryParseToInt(input), DateUtil.tryParseToInt(input));
+			if (DateUtil.INVALID_DATE != DateUtil.tryParseToInt(input)) {
+				assertEquals(cache.parseToInt(input), DateUtil.parseToInt(input));
+				assertEquals(cache.parseToEpochDay(input), DateUtil.parseToEpochDay(input));
+				assertEquals(cache.parseDate(input), DateUtil.parseDate(input));
+			}
+		}
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testParseDateInvalid() {
+		final DateParseCache cache = new DateParseCache(100);
+		assertFalse(cache.isDate("12.25.2012"));
+		cache.parseDate("12.25.2012");
+	}
+
+	@Test
+	public void testParseDateReturnsNewInstance() {
+		final DateParseCache cache = new DateParseCache(100);
+		final Date d1 = cache.parseDate("2012-12-25");
+		d1.setTime(0L);
+		final Date d2 = cache.parseDate("2012-12-25");
+		assertNotSame(d2, d1);
+		assertEquals(d2, DateUtil.parseDate("2012-12-25"));
+	}
+
+	@Test
+	public void testCounters() {
+		final DateParseCache cache = new DateParseCache(100);
+		cache.isDate("2012-12-25");
+		cache.isDate("2012-12-25");
+		cache.isDate("2012-12-26");
+		cache.isDate("2012-12-25");
+		assertEquals(cache.getMissCount(), 2L);
+		assertEquals(cache.getHitCount(), 2L);
+		assertEquals(cache.getHitRate(), 0.5d);
+		assertEquals(cache.size(), 2);
+		cache.clear();
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test(dataProvider = "policyData")
+	public void testEviction(EvictionPolicy policy, boolean expectRetained) {
+		final DateParseCache cache = new DateParseCache(2, policy, 1);
+		cache.parseToInt("2012-12-25");
+		cache.parseToInt("2012-12-26");
+		cache.parseToInt("2012-12-25");
+		cache.parseToInt("2012-12-27");
+		assertEquals(cache.getEvictionCount(), 1L);
+		assertEquals(cache.size(), 2);
+		final long misses = cache.getMissCount();
+		cache.parseToInt("2012-12-25");
+		assertEquals((cache.getMissCount() == misses), expectRetained);
+	}
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+		final DateParseCache cache = new DateParseCache(64);
+		final AtomicInteger failures = new AtomicInteger();
+		final Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						final int packed = DateUtil.addDays(20120101, i % 100);
+						if (cache.parseToInt(String.valueOf(packed)) != packed) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(failures.get(), 0);
+		assertTrue(cache.size() <= 64);
+		assertEquals(cache.getHitCount() + cache.getMissCount(), 160000L);
+	}
+
+	@Test(dataProvider = "sizeData")
+	public void testMaximumSize(int maximumSize, int concurrencyLevel) {
+		final DateParseCache cache = new DateParseCache(maximumSize, EvictionPolicy.FIFO, concurrencyLevel);
+		for (int i = 0; i < 2000; i++) {
+			cache.tryParseToInt(String.valueOf(DateUtil.addDays(20120101, i)));
+		}
+		// Every segment is full, and together they hold the maximum size
+		assertEquals(cache.size(), maximumSize);
+		assertEquals(cache.getMaximumSize(), maximumSize);
+	}
+
+	@DataProvider
+	public Object[][] sizeData() {
+		return new Object[][] {
+			{ 1, 16 }, { 17, 16 }, { 24, 16 }, { 31, 16 }, { 100, 3 }, { 1000, 16 }
+		};
+	}
+
+	@DataProvider
+	public Object[][] inputData() {
+		return new Object[][] {
+			{ "2012-12-25" }, { "12/25/2012" }, { "20121225" }, { "12/25/20121" },
+			{ "2012-12-25T10:00" }, { "2012-02-30" }, { "" }, { null }
+		};
+	}
+
+	@DataProvider
+	public Object[][] policyData() {
+		return new Object[][] {
+			{ EvictionPolicy.LRU, true },
+			{ EvictionPolicy.FIFO, false }
+		};
+	}
+
+}
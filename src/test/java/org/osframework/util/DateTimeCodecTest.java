@@ -0,0 +1,175 @@
+/*
+ * File: DateTimeCodecTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateTimeCodec</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateTimeCodecTest {
+
+	@Test(dataProvider = "parseData")
+	public void testParse(String input, long expectedMillis) {
+		assertEquals(DateUtil.tryParseDateTimeToMillis(input), expectedMillis);
+		assertEquals(DateUtil.isDateTime(input), (DateUtil.INVALID_DATE_TIME != expectedMillis));
+		if (DateUtil.INVALID_DATE_TIME != expectedMillis) {
+			assertEquals(DateUtil.parseDateTimeToMillis(input), expectedMillis);
+			final byte[] bytes = ("[" + input + "]").getBytes();
+			assertEquals(DateUtil.parseDateTimeToMillis(bytes, 1, input.length()), expectedMillis);
+		}
+	}
+
+	@Test
+	public void testParseToNanos() {
+		assertEquals(DateUtil.parseDateTimeToNanos("2012-12-25T13:45:10.123456789Z"), 1356443110123456789L);
+		assertEquals(DateUtil.parseDateTimeToNanos("1969-12-31T23:59:59.999999999Z"), -1L);
+		assertEquals(DateUtil.parseDateTimeToNanos("2012-12-25T19:15:10.5+05:30"), 1356443110500000000L);
+		assertEquals(DateUtil.parseDateTimeToNanos("2262-04-11T23:47:16.854775807Z"), Long.MAX_VALUE);
+		assertEquals(DateUtil.parseDateTimeToNanos("1677-09-21T00:12:43.145224193Z"), Long.MIN_VALUE + 1);
+	}
+
+	@Test(dataProvider = "nanosRangeData", expectedExceptions=IllegalArgumentException.class)
+	public void testParseToNanosOutOfRange(String input) {
+		DateUtil.parseDateTimeToNanos(input);
+	}
+
+	@Test
+	public void testParseDefaultZone() {
+		final DateTimeZone saved = DateTimeZone.getDefault();
+		DateTimeZone.setDefault(DateTimeZone.forID("America/New_York"));
+		try {
+			assertEquals(DateUtil.parseDateTimeToMillis("2012-12-25 13:45"),
+			             new DateTime(2012, 12, 25, 13, 45, 0, 0).getMillis());
+			// 02:30 does not exist on the day daylight saving time begins
+			assertFalse(DateUtil.isDateTime("2012-03-11T02:30"));
+			// 01:30 occurs twice on the day daylight saving time ends
+			assertEquals(DateUtil.parseDateTimeToMillis("2012-11-04T01:30"),
+			             DateUtil.parseDateTimeToMillis("2012-11-04T01:30-04:00"));
+		} finally {
+			DateTimeZone.setDefault(saved);
+		}
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testParseInvalid() {
+		DateUtil.parseDateTimeToMillis("2012-12-25T24:00Z");
+	}
+
+	@Test(dataProvider = "formatData")
+	public void testFormat(long millis, int offsetSeconds, String expected) {
+		assertEquals(DateUtil.formatDateTime(millis, offsetSeconds, new StringBuilder()).toString(), expected);
+		final char[] chars = new char[DateUtil.MAX_DATE_TIME_LENGTH + 1];
+		assertEquals(DateUtil.formatDateTime(millis, offsetSeconds, chars, 1), expected.length() + 1);
+		assertEquals(new String(chars, 1, expected.length()), expected);
+		final byte[] bytes = new byte[expected.length()];
+		assertEquals(DateUtil.formatDateTime(millis, offsetSeconds, bytes, 0), expected.length());
+		assertEquals(new String(bytes), expected);
+		assertEquals(DateUtil.parseDateTimeToMillis(expected), millis);
+	}
+
+	@Test(dataProvider = "invalidOffsetData", expectedExceptions=IllegalArgumentException.class)
+	public void testFormatInvalidOffset(int offsetSeconds) {
+		DateUtil.formatDateTime(0L, offsetSeconds, new StringBuilder());
+	}
+
+	@Test(expectedExceptions=IndexOutOfBoundsException.class)
+	public void testFormatBufferTooSmall() {
+		DateUtil.formatDateTime(0L, 3600, new char[DateUtil.MAX_DATE_TIME_LENGTH - 1], 0);
+	}
+
+	@Test
+	public void testNull() {
+		assertFalse(DateUtil.isDateTime(null));
+		assertEquals(DateUtil.tryParseDateTimeToMillis(null), DateUtil.INVALID_DATE_TIME);
+		assertTrue(DateUtil.isDateTime(" 2012-12-25T13:45:10Z\n"));
+	}
+
+	@DataProvider
+	public Object[][] parseData() {
+		return new Object[][] {
+			{ "2012-12-25T13:45:10.123Z", 1356443110123L },
+			{ "2012-12-25t13:45:10,123z", 1356443110123L },
+			{ "2012-12-25 13:45:10.1234567Z", 1356443110123L },
+			{ "2012-12-25T13:45:10.1Z", 1356443110100L },
+			{ "2012-12-25T13:45:10Z", 1356443110000L },
+			{ "2012-12-25T13:45Z", 1356443100000L },
+			{ "2012-12-25T19:15:10.123+05:30", 1356443110123L },
+			{ "2012-12-25T19:15:10.123+0530", 1356443110123L },
+			{ "2012-12-25T08:45:10.123-05", 1356443110123L },
+			{ "2012-12-24T19:45:10.123-18:00", 1356443110123L },
+			{ "1583-01-01T00:00Z", -12212553600000L },
+			{ "1582-12-31T00:00Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-02-30T13:45Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T24:00Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:60Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:60Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:10.Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:10.1234567891Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:10+18:01", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:10-19", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:10+05:3", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:10+5", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:1Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25T13:45:10ZZ", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25X13:45Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012/12/25T13:45Z", DateUtil.INVALID_DATE_TIME },
+			{ "2012-12-25", DateUtil.INVALID_DATE_TIME },
+			{ "", DateUtil.INVALID_DATE_TIME }
+		};
+	}
+
+	@DataProvider
+	public Object[][] nanosRangeData() {
+		return new Object[][] {
+			{ "2262-04-11T23:47:16.854775808Z" },
+			{ "1677-09-21T00:12:43.145224192Z" },
+			{ "1600-01-01T00:00Z" }
+		};
+	}
+
+	@DataProvider
+	public Object[][] formatData() {
+		return new Object[][] {
+			{ 1356443110123L, 0, "2012-12-25T13:45:10.123Z" },
+			{ 1356443110123L, 19800, "2012-12-25T19:15:10.123+05:30" },
+			{ 1356443110123L, -64800, "2012-12-24T19:45:10.123-18:00" },
+			{ -1L, 0, "1969-12-31T23:59:59.999Z" },
+			{ -12212553600000L, 60, "1583-01-01T00:01:00.000+00:01" }
+		};
+	}
+
+	@DataProvider
+	public Object[][] invalidOffsetData() {
+		return new Object[][] {
+			{ 30 },
+			{ 64860 },
+			{ -64860 }
+		};
+	}
+
+}
@@ -19,8 +19,12 @@ package org.osframework.util;
 
 import static org.osframework.testng.Assert.assertSameDay;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -101,6 +105,241 @@ public class DateUtilTest {
 		DateUtil.parseDate(input);
 	}
 
+	@Test(dataProvider = "packedDateData")
+	public void testParseToInt(String input, int expectedPacked, int expectedEpochDay) {
+		int actual = DateUtil.parseToInt(input);
+		assertEquals(actual, expectedPacked);
+	}
+
+	@Test(dataProvider = "packedDateData")
+	public void testParseToEpochDay(String input, int expectedPacked, int expectedEpochDay) {
+		int actual = DateUtil.parseToEpochDay(input);
+		assertEquals(actual, expectedEpochDay);
+	}
+
+	@Test(dataProvider = "packedDateData")
+	public void testPackedToEpochDay(String input, int expectedPacked, int expectedEpochDay) {
+		assertEquals(DateUtil.packedToEpochDay(expectedPacked), expectedEpochDay);
+		assertEquals(DateUtil.epochDayToPacked(expectedEpochDay), expectedPacked);
+	}
+
+	@Test(dataProvider = "packedDateData")
+	public void testPackedToMillis(String input, int expectedPacked, int expectedEpochDay) {
+		long millis = DateUtil.packedToMillis(expectedPacked);
+		assertEquals(millis, DateUtil.parseDate(input).getTime());
+		assertEquals(DateUtil.millisToPacked(millis), expectedPacked);
+		assertEquals(DateUtil.millisToEpochDay(millis), expectedEpochDay);
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testParseToIntYearOutOfRange() {
+		DateUtil.parseToInt("12/25/20121");
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testPackedToEpochDayInvalidArg() {
+		DateUtil.packedToEpochDay(20110229);
+	}
+
+	@Test
+	public void testIsPackedDate() {
+		assertTrue(DateUtil.isPackedDate(20120229));
+		assertTrue(DateUtil.isPackedDate(DateUtil.MIN_PACKED_DATE));
+		assertTrue(DateUtil.isPackedDate(DateUtil.MAX_PACKED_DATE));
+		assertFalse(DateUtil.isPackedDate(20110229));
+		assertFalse(DateUtil.isPackedDate(20121301));
+		assertFalse(DateUtil.isPackedDate(20121200));
+		assertFalse(DateUtil.isPackedDate(-20121225));
+	}
+
+	@Test
+	public void testPackedArithmetic() {
+		assertEquals(DateUtil.addDays(20121225, 7), 20130101);
+		assertEquals(DateUtil.addDays(20130301, -1), 20130228);
+		assertEquals(DateUtil.addMonths(20120131, 1), 20120229);
+		assertEquals(DateUtil.addMonths(20120131, -2), 20111130);
+		assertEquals(DateUtil.addMonths(20121225, 12), 20131225);
+		assertEquals(DateUtil.daysBetween(20121225, 20130101), 7);
+		assertEquals(DateUtil.daysBetween(20130101, 20121225), -7);
+		assertEquals(DateUtil.dayOfWeek(20121225), 2);
+		assertEquals(DateUtil.dayOfWeek(20121230), 7);
+		assertEquals(DateUtil.epochDayOfWeek(0), 4);
+		assertEquals(DateUtil.epochDayOfWeek(-1), 3);
+	}
+
+	@Test(dataProvider = "tryParseData")
+	public void testTryParse(String input, DateNotation expectedNotation, int expectedPacked) {
+		ParsedDate result = new ParsedDate();
+		boolean parsed = DateUtil.tryParse(input, result);
+		assertEquals(parsed, (null != expectedNotation));
+		assertEquals(result.isValid(), parsed);
+		assertEquals(result.getNotation(), expectedNotation);
+		assertEquals(result.toPackedDate(), expectedPacked);
+		assertEquals(DateUtil.tryParseToInt(input), expectedPacked);
+		assertEquals(DateUtil.detectNotation(input), expectedNotation);
+		if (parsed) {
+			assertEquals(result.toMillis(), DateUtil.parseDate(input).getTime());
+		}
+		if (DateUtil.INVALID_DATE != expectedPacked) {
+			assertEquals(result.getYear() * 10000 + result.getMonth() * 100 + result.getDay(), expectedPacked);
+			assertEquals(DateUtil.tryParseToEpochDay(input), DateUtil.parseToEpochDay(input));
+		} else {
+			assertEquals(DateUtil.tryParseToEpochDay(input), DateUtil.INVALID_DATE);
+		}
+	}
+
+	@Test
+	public void testTryParseReuse() {
+		ParsedDate result = new ParsedDate();
+		assertTrue(DateUtil.tryParse("x 12/25/2012 x", 1, 12, result));
+		assertEquals(result.getNotation(), DateNotation.US);
+		assertFalse(DateUtil.tryParse("x 12/25/2012 x".toCharArray(), 0, 12, result));
+		assertEquals(result.getYear(), 0);
+		assertNull(result.getNotation());
+		assertTrue(DateUtil.tryParse("2012/12/25".getBytes(), 0, 10, result));
+		assertEquals(result.getNotation(), DateNotation.US_REVERSE);
+	}
+
+	@Test(expectedExceptions=IllegalStateException.class)
+	public void testTryParseInvalidToMillis() {
+		ParsedDate result = new ParsedDate();
+		DateUtil.tryParse("2012-02-30", result);
+		result.toMillis();
+	}
+
+	@DataProvider
+	public Object[][] tryParseData() {
+		return new Object[][] {
+			{ "2012-12-25", DateNotation.ISO8601, 20121225 },
+			{ " 12/25/2012 ", DateNotation.US, 20121225 },
+			{ "2012/12/25", DateNotation.US_REVERSE, 20121225 },
+			{ "20121225", DateNotation.BASIC, 20121225 },
+			{ "12/25/20121", DateNotation.US, DateUtil.INVALID_DATE },
+			{ "12.25.2012", null, DateUtil.INVALID_DATE },
+			{ "2012-02-30", null, DateUtil.INVALID_DATE },
+			{ "", null, DateUtil.INVALID_DATE },
+			{ null, null, DateUtil.INVALID_DATE }
+		};
+	}
+
+	@Test(dataProvider = "formatPackedDateData")
+	public void testFormatPackedDate(int packedDate, DateNotation notation, String expected) throws Exception {
+		char[] chars = new char[12];
+		assertEquals(DateUtil.formatPackedDate(packedDate, notation, chars, 1), 1 + expected.length());
+		assertEquals(new String(chars, 1, expected.length()), expected);
+		byte[] bytes = new byte[12];
+		assertEquals(DateUtil.formatPackedDate(packedDate, notation, bytes, 2), 2 + expected.length());
+		assertEquals(new String(bytes, 2, expected.length(), "US-ASCII"), expected);
+		StringBuilder buf = new StringBuilder("x");
+		assertEquals(DateUtil.formatPackedDate(packedDate, notation, buf).toString(), "x" + expected);
+		StringBuffer out = new StringBuffer();
+		DateUtil.formatPackedDate(packedDate, notation, out);
+		assertEquals(out.toString(), expected);
+		long millis = DateUtil.packedToMillis(packedDate) + 43200000L;
+		assertEquals(DateUtil.formatMillis(millis, notation, new StringBuilder()).toString(), expected);
+	}
+
+	@Test(expectedExceptions=IndexOutOfBoundsException.class)
+	public void testFormatPackedDateOverflow() {
+		DateUtil.formatPackedDate(20121225, DateNotation.ISO8601, new char[12], 3);
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testFormatPackedDateInvalidArg() {
+		DateUtil.formatPackedDate(20121232, DateNotation.ISO8601, new StringBuilder());
+	}
+
+	@DataProvider
+	public Object[][] formatPackedDateData() {
+		return new Object[][] {
+			{ 20121225, DateNotation.ISO8601, "2012-12-25" },
+			{ 20121225, DateNotation.US, "12/25/2012" },
+			{ 20121225, DateNotation.US_REVERSE, "2012/12/25" },
+			{ 20121225, DateNotation.BASIC, "20121225" },
+			{ 8010203, DateNotation.ISO8601, "0801-02-03" },
+			{ 99991231, DateNotation.US, "12/31/9999" }
+		};
+	}
+
+	@Test(dataProvider = "sliceData")
+	public void testIsDateSlice(String record, int offset, int length, boolean expected) throws Exception {
+		byte[] bytes = record.getBytes("US-ASCII");
+		assertEquals(DateUtil.isDate(new StringBuilder(record), offset, length), expected);
+		assertEquals(DateUtil.isDate(record.toCharArray(), offset, length), expected);
+		assertEquals(DateUtil.isDate(bytes, offset, length), expected);
+		assertEquals(DateUtil.isDate(ByteBuffer.wrap(bytes), offset, length), expected);
+	}
+
+	@Test(dataProvider = "sliceData")
+	public void testParseToIntSlice(String record, int offset, int length, boolean expected) throws Exception {
+		if (!expected) return;
+		byte[] bytes = record.getBytes("US-ASCII");
+		assertEquals(DateUtil.parseToInt(record, offset, length), 20121225);
+		assertEquals(DateUtil.parseToInt(record.toCharArray(), offset, length), 20121225);
+		assertEquals(DateUtil.parseToInt(bytes, offset, length), 20121225);
+		assertEquals(DateUtil.parseToInt(ByteBuffer.wrap(bytes), offset, length), 20121225);
+		assertEquals(DateUtil.parseToEpochDay(bytes, offset, length), 15699);
+		assertSameDay(DateUtil.parseDate(bytes, offset, length), DateUtil.parseDate("2012-12-25"));
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testParseToIntSliceInvalid() {
+		DateUtil.parseToInt("id=2012-13-25;", 3, 10);
+	}
+
+	@Test(expectedExceptions=IndexOutOfBoundsException.class)
+	public void testIsDateSliceOutOfBounds() {
+		DateUtil.isDate(new byte[8], 4, 8);
+	}
+
+	@Test(dataProvider = "calendarData")
+	public void testCalendar(int year, int month, boolean leap, int length, int dayOfYear) {
+		assertEquals(DateUtil.isLeapYear(year), leap);
+		assertEquals(DateUtil.lengthOfMonth(year, month), length);
+		assertEquals(DateUtil.dayOfYear((year * 10000) + (month * 100) + length), dayOfYear);
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testLengthOfMonthInvalid() {
+		DateUtil.lengthOfMonth(2012, 13);
+	}
+
+	@DataProvider
+	public Object[][] calendarData() {
+		return new Object[][] {
+			{ 2012, 2, true, 29, 60 },
+			{ 2013, 2, false, 28, 59 },
+			{ 1900, 12, false, 31, 365 },
+			{ 2000, 12, true, 31, 366 },
+			{ 1583, 4, false, 30, 120 },
+			{ 0, 3, true, 31, 91 }
+		};
+	}
+
+	@DataProvider
+	public Object[][] sliceData() {
+		return new Object[][] {
+			{ "id=2012-12-25;", 3, 10, true },
+			{ "7|12/25/2012|x", 2, 10, true },
+			{ "7| 2012/12/25 |x", 2, 12, true },
+			{ "2012122520121226", 0, 8, false },
+			{ "id=2012-12-2;", 3, 9, false },
+			{ "id=2012-13-25;", 3, 10, false }
+		};
+	}
+
+	@DataProvider
+	public Object[][] packedDateData() {
+		return new Object[][] {
+			{ "1970-01-01", 19700101, 0 },
+			{ "12/31/1969", 19691231, -1 },
+			{ "2012/12/25", 20121225, 15699 },
+			{ "20000229", 20000229, 11016 },
+			{ "00000101", DateUtil.MIN_PACKED_DATE, DateUtil.MIN_EPOCH_DAY },
+			{ "9999-12-31", DateUtil.MAX_PACKED_DATE, DateUtil.MAX_EPOCH_DAY }
+		};
+	}
+
 	@DataProvider
 	public Object[][] isDateData() {
 		Object[] set1 = new Object[] { "2012-12-25", true };
@@ -113,10 +352,16 @@ public class DateUtilTest {
 		Object[] set8 = new Object[] { "2012-02-29", true };
 		Object[] set9 = new Object[] { "2011-02-29", false };
 		Object[] set10 = new Object[] { "2012-11-31", false };
+		Object[] set11 = new Object[] { " 2012-12-25T10:15 ", true };
+		Object[] set12 = new Object[] { "1582-12-31", false };
+		Object[] set13 = new Object[] { "02/29/2011", false };
+		Object[] set14 = new Object[] { "20121225", false };
+		Object[] set15 = new Object[] { "2012-12/25", false };
 		
 		return new Object[][] {
 			set1, set2, set3, set4, set5,
-			set6, set7, set8, set9, set10
+			set6, set7, set8, set9, set10,
+			set11, set12, set13, set14, set15
 		};
 	}
 
@@ -167,23 +412,27 @@ public class DateUtilTest {
 		Calendar c1 = Calendar.getInstance();
 		c1.set(2012, Calendar.DECEMBER, 25);
 		
-		Object[] set1, set2, set3, set4;
-		set1 = set2 = set3 = set4 = null;
+		Object[] set1, set2, set3, set4, set5, set6;
+		set1 = set2 = set3 = set4 = set5 = set6 = null;
 		
 		if ("testParseDateValid".equals(method.getName())) {
 			set1 = new Object[] { "20121225", c1.getTime() };
 			set2 = new Object[] { "2012-12-25", c1.getTime() };
 			set3 = new Object[] { "12/25/2012", c1.getTime() };
 			set4 = new Object[] { "2012/12/25", c1.getTime() };
+			set5 = new Object[] { " 20121225\t", c1.getTime() };
+			set6 = new Object[] { "\n2012-12-25 ", c1.getTime() };
 		} else if ("testParseDateInvalid".equals(method.getName())) {
 			set1 = new Object[] { null };
 			set2 = new Object[] { "  " };
 			set3 = new Object[] { 1234 };
 			set4 = new Object[] { "12.25.2012" };
+			set5 = new Object[] { "2012-12-25T10:15" };
+			set6 = new Object[] { "20121325" };
 		}
 		
 		return new Object[][] {
-			set1, set2, set3, set4,
+			set1, set2, set3, set4, set5, set6
 		};
 	}
 
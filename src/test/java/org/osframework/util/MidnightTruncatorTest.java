@@ -0,0 +1,105 @@
+/*
+ * File: MidnightTruncatorTest.java
+ *
+ * Copyright 2012 OSFramework Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.Date;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>MidnightTruncator</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class MidnightTruncatorTest {
+
+	@Test(dataProvider = "truncateData")
+	public void testTruncate(String zoneId, String input, String expected) {
+		final DateTimeZone zone = DateTimeZone.forID(zoneId);
+		final MidnightTruncator truncator = MidnightTruncator.getInstance(zone);
+		final long millis = new DateTime(input, zone).getMillis();
+		final long midnight = new DateTime(expected, zone).getMillis();
+		assertEquals(truncator.truncate(millis), midnight);
+		// Second call is answered from the cached period
+		assertEquals(truncator.truncate(millis), midnight);
+		assertEquals(DateUtil.forceMidnight(millis, zone), midnight);
+	}
+
+	@Test
+	public void testTruncateArray() {
+		final DateTimeZone zone = DateTimeZone.forID("America/New_York");
+		final long[] millis = new long[1000];
+		final long[] expected = new long[millis.length];
+		DateTime dt = new DateTime(2012, 1, 1, 13, 47, 12, 345, zone);
+		for (int i = 0; i < millis.length; i++) {
+			millis[i] = dt.getMillis();
+			expected[i] = dt.withTimeAtStartOfDay().getMillis();
+			dt = dt.plusHours(7).plusMillis(1);
+		}
+		MidnightTruncator.getInstance(zone).truncate(millis, 1, millis.length - 1);
+		assertEquals(millis[0], new DateTime(2012, 1, 1, 13, 47, 12, 345, zone).getMillis());
+		for (int i = 1; i < millis.length; i++) {
+			assertEquals(millis[i], expected[i]);
+		}
+	}
+
+	@Test(expectedExceptions=IndexOutOfBoundsException.class)
+	public void testTruncateArrayOutOfBounds() {
+		MidnightTruncator.getDefault().truncate(new long[4], 2, 4);
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testGetInstanceNullArg() {
+		MidnightTruncator.getInstance(null);
+	}
+
+	@Test
+	public void testGetInstanceShared() {
+		final DateTimeZone zone = DateTimeZone.forID("Europe/Paris");
+		assertSame(MidnightTruncator.getInstance(zone), MidnightTruncator.getInstance(zone));
+		assertSame(MidnightTruncator.getInstance(zone).getZone(), zone);
+	}
+
+	@Test
+	public void testForceMidnightDate() {
+		final DateTime dt = new DateTime(2012, 12, 25, 18, 30, 15, 999);
+		final Date midnight = DateUtil.forceMidnight(dt.toDate());
+		assertEquals(midnight.getTime(), new DateTime(2012, 12, 25, 0, 0, 0, 0).getMillis());
+	}
+
+	@DataProvider
+	public Object[][] truncateData() {
+		return new Object[][] {
+			{ "UTC", "2012-12-25T18:30:15.999", "2012-12-25T00:00:00.000" },
+			{ "UTC", "1969-12-31T23:59:59.999", "1969-12-31T00:00:00.000" },
+			{ "Asia/Kolkata", "2012-12-25T00:00:00.000", "2012-12-25T00:00:00.000" },
+			{ "America/New_York", "2012-03-11T03:30:00.000", "2012-03-11T00:00:00.000" },
+			{ "America/New_York", "2012-11-04T23:59:59.999", "2012-11-04T00:00:00.000" },
+			// Midnight skipped; day begins at 01:00
+			{ "America/Sao_Paulo", "2012-10-21T12:00:00.000", "2012-10-21T01:00:00.000" },
+			{ "America/Sao_Paulo", "2013-02-16T23:30:00.000", "2013-02-16T00:00:00.000" }
+		};
+	}
+
+}
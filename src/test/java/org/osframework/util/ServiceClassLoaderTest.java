@@ -18,11 +18,37 @@
 package org.osframework.util;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.osframework.util.impl.DummyServiceDefaultImpl;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 /**
@@ -32,6 +58,8 @@ import org.testng.annotations.Test;
  */
 public class ServiceClassLoaderTest {
 
+	private final ExecutorService pool = Executors.newFixedThreadPool(3);
+
 	@Test
 	public void testLoad() {
 		final ServiceClassLoader<DummyService> scl = ServiceClassLoader.load(DummyService.class);
@@ -41,4 +69,268 @@ public class ServiceClassLoaderTest {
 		assertEquals(cls, DummyServiceDefaultImpl.class, ("Expected " + DummyServiceDefaultImpl.class.getName()));
 	}
 
+	@Test
+	public void testConcurrentIteration() throws Exception {
+		final CountingClassLoader loader = new CountingClassLoader();
+		final ServiceClassLoader<DummyService> scl = ServiceClassLoader.load(DummyService.class, loader);
+		final int threads = 8;
+		final CyclicBarrier start = new CyclicBarrier(threads);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int t = 0; t < threads; t++) {
+			final boolean reloader = (0 == t);
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < 200; i++) {
+							if (reloader && 0 == i % 50) scl.reload();
+							final List<Class<?>> found = new ArrayList<Class<?>>();
+							for (Class<? extends DummyService> cls : scl) {
+								found.add(cls);
+							}
+							assertEquals(found, Collections.<Class<?>>singletonList(DummyServiceDefaultImpl.class));
+						}
+					} catch (Throwable th) {
+						failure.compareAndSet(null, th);
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		done.await();
+		if (null != failure.get()) throw new AssertionError(failure.get());
+		// One lookup for the initial discovery, plus one per reload
+		assertTrue(loader.lookups.get() <= 5, "Lookups repeated: " + loader.lookups.get());
+	}
+
+	@Test
+	public void testIteratorsShareDiscovery() {
+		final CountingClassLoader loader = new CountingClassLoader();
+		final ServiceClassLoader<DummyService> scl = ServiceClassLoader.load(DummyService.class, loader);
+		final Iterator<Class<? extends DummyService>> first = scl.iterator();
+		final Iterator<Class<? extends DummyService>> second = scl.iterator();
+		assertEquals(first.next(), DummyServiceDefaultImpl.class);
+		assertEquals(second.next(), DummyServiceDefaultImpl.class);
+		assertTrue(!first.hasNext() && !second.hasNext());
+		assertEquals(loader.lookups.get(), 1);
+	}
+
+	@Test
+	public void testCache() {
+		final CountingClassLoader loader = new CountingClassLoader();
+		final ServiceClassLoader<DummyService> scl = ServiceClassLoader.load(DummyService.class, loader);
+		assertSame(ServiceClassLoader.load(DummyService.class, loader), scl);
+		assertNotSame(ServiceClassLoader.load(DummyService.class, new CountingClassLoader()), scl);
+		assertNotSame(ServiceClassLoader.load(Runnable.class, loader), scl);
+		assertEquals(scl.iterator().next(), DummyServiceDefaultImpl.class);
+		// Discovered providers are reused by later lookups
+		assertEquals(ServiceClassLoader.load(DummyService.class, loader).iterator().next(),
+		             DummyServiceDefaultImpl.class);
+		assertEquals(loader.lookups.get(), 1);
+
+		ServiceClassLoader.invalidate(DummyService.class, loader);
+		final ServiceClassLoader<DummyService> reloaded = ServiceClassLoader.load(DummyService.class, loader);
+		assertNotSame(reloaded, scl);
+		ServiceClassLoader.invalidate(loader);
+		assertNotSame(ServiceClassLoader.load(DummyService.class, loader), reloaded);
+		ServiceClassLoader.invalidateAll();
+		assertSame(ServiceClassLoader.loadInstalled(DummyService.class), ServiceClassLoader.loadInstalled(DummyService.class));
+	}
+
+	@Test(dataProvider = "executorData")
+	public void testDiscoverAllMatchesLazyIteration(Executor executor) throws IOException {
+		final URL[] urls = {
+			configDir("org.osframework.util.impl.DummyServiceDefaultImpl\n# comment\n"),
+			configDir("org.osframework.util.impl.DummyServiceDefaultImpl\n" +
+			          OtherImpl.class.getName() + "\n" + OtherImpl.class.getName() + "\n"),
+			configDir("not a class name\n"),
+			configDir("org.osframework.util.NoSuchImpl\n"),
+			configDir(ThirdImpl.class.getName() + "  # trailing comment\n" + OtherImpl.class.getName() + "\n")
+		};
+		final ClassLoader parent = ServiceClassLoaderTest.class.getClassLoader();
+
+		final List<String> lazyErrors = new ArrayList<String>();
+		final List<Class<?>> lazy = new ArrayList<Class<?>>();
+		drain(ServiceClassLoader.load(DummyService.class, new URLClassLoader(urls, parent)), lazy, lazyErrors);
+
+		String eagerError = null;
+		final ServiceClassLoader<DummyService> scl = ServiceClassLoader.load(DummyService.class,
+		                                                                     new URLClassLoader(urls, parent));
+		try {
+			scl.discoverAll(executor);
+		} catch (ServiceConfigurationError sce) {
+			eagerError = sce.getMessage();
+		}
+		final List<String> eagerErrors = new ArrayList<String>();
+		final List<Class<?>> eager = new ArrayList<Class<?>>();
+		drain(scl, eager, eagerErrors);
+
+		assertEquals(lazy, Arrays.<Class<?>>asList(DummyServiceDefaultImpl.class, OtherImpl.class, ThirdImpl.class));
+		assertEquals(eager, lazy);
+		assertEquals(lazyErrors.size(), 2);
+		assertTrue(lazyErrors.get(0).endsWith(":1: Illegal configuration-file syntax"), lazyErrors.get(0));
+		assertEquals(eagerErrors, lazyErrors);
+		assertEquals(eagerError, lazyErrors.get(0));
+	}
+
+	@Test
+	public void testErrorReplayedToEveryIterator() throws IOException {
+		final URLClassLoader loader = new URLClassLoader(new URL[] {
+			configDir("org.osframework.util.NoSuchImpl\n" + OtherImpl.class.getName() + "\n")
+		}, ServiceClassLoaderTest.class.getClassLoader());
+		for (int i = 0; i < 2; i++) {
+			final List<String> errors = new ArrayList<String>();
+			final List<Class<?>> found = new ArrayList<Class<?>>();
+			drain(ServiceClassLoader.load(DummyService.class, loader), found, errors);
+			assertEquals(errors.size(), 1);
+			assertTrue(errors.get(0).endsWith("Provider org.osframework.util.NoSuchImpl not found"), errors.get(0));
+			assertEquals(found.get(found.size() - 1), OtherImpl.class);
+		}
+	}
+
+	@Test
+	public void testUnreachableLoaderCollected() throws Exception {
+		final WeakReference<ClassLoader> ref = loadFromDiscardedLoader();
+		for (int i = 0; i < 50 && null != ref.get(); i++) {
+			System.gc();
+			Thread.sleep(20L);
+		}
+		assertNull(ref.get(), "Class loader not collected");
+	}
+
+	@AfterClass
+	public void shutdownPool() {
+		pool.shutdownNow();
+	}
+
+	@DataProvider
+	public Object[][] executorData() {
+		return new Object[][] {
+			{ pool },
+			{ new Executor() {
+				public void execute(Runnable command) {
+					throw new RejectedExecutionException();
+				}
+			} }
+		};
+	}
+
+	@Test(dataProvider = "configData")
+	public void testParse(String config, List<Class<?>> expected, String error) throws IOException {
+		final URLClassLoader loader = new URLClassLoader(new URL[] { configDir(config) },
+		                                                 ServiceClassLoaderTest.class.getClassLoader());
+		final List<Class<?>> found = new ArrayList<Class<?>>();
+		String message = null;
+		try {
+			for (Class<? extends DummyService> cls : ServiceClassLoader.load(DummyService.class, loader)) {
+				found.add(cls);
+			}
+		} catch (ServiceConfigurationError sce) {
+			message = sce.getMessage();
+		}
+		if (null == error) {
+			assertEquals(message, null);
+			assertEquals(found.subList(found.size() - expected.size(), found.size()), expected);
+		} else {
+			assertTrue(null != message && message.endsWith(error), message);
+		}
+	}
+
+	@DataProvider
+	public Object[][] configData() {
+		final String other = OtherImpl.class.getName();
+		final String third = ThirdImpl.class.getName();
+		final List<Class<?>> both = Arrays.<Class<?>>asList(OtherImpl.class, ThirdImpl.class);
+		return new Object[][] {
+			{ other + "\r\n" + third + "\r\n", both, null },
+			{ other + "\r" + third, both, null },
+			{ "\n\n# comment only\n" + other + " \t# trailing\n\t" + third + "\t\n" + other + "\n", both, null },
+			{ "", Collections.<Class<?>>emptyList(), null },
+			{ other + "\n# comment\n\r\nmy\tImpl\n", null, ":4: Illegal configuration-file syntax" },
+			{ "org.osframework.util.Bad-Impl", null, ":1: Illegal provider-class name: org.osframework.util.Bad-Impl" },
+			{ "1Impl\n", null, ":1: Illegal provider-class name: 1Impl" },
+			{ "\uFEFF" + other + "\n", null, ":1: Illegal provider-class name: \uFEFF" + other },
+			{ "org.osframework.util.Impl\u00E9\n", null, "Provider org.osframework.util.Impl\u00E9 not found" }
+		};
+	}
+
+	public static class OtherImpl extends DummyServiceDefaultImpl {}
+
+	public static class ThirdImpl extends DummyServiceDefaultImpl {}
+
+	public static class Task implements Runnable {
+		public void run() {}
+	}
+
+	private static <S> void drain(ServiceClassLoader<S> scl, List<Class<?>> found, List<String> errors) {
+		final Iterator<Class<? extends S>> it = scl.iterator();
+		while (true) {
+			try {
+				if (!it.hasNext()) break;
+				found.add(it.next());
+			} catch (ServiceConfigurationError sce) {
+				errors.add(sce.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Discover a provider defined by a new class loader, then invalidate
+	 * and discard the loader.
+	 */
+	private static WeakReference<ClassLoader> loadFromDiscardedLoader() throws IOException {
+		final URL classes = ServiceClassLoaderTest.class.getProtectionDomain().getCodeSource().getLocation();
+		final URLClassLoader loader = new URLClassLoader(new URL[] {
+			configDir(Runnable.class, Task.class.getName()), classes
+		}, null);
+		final Class<? extends Runnable> cls = ServiceClassLoader.load(Runnable.class, loader).iterator().next();
+		assertEquals(cls.getName(), Task.class.getName());
+		assertSame(cls.getClassLoader(), loader);
+		ServiceClassLoader.invalidate(loader);
+		return new WeakReference<ClassLoader>(loader);
+	}
+
+	private static URL configDir(String config) throws IOException {
+		return configDir(DummyService.class, config);
+	}
+
+	private static URL configDir(Class<?> service, String config) throws IOException {
+		final File dir = File.createTempFile("services", "");
+		dir.delete();
+		final File file = new File(dir, "META-INF/services/" + service.getName());
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(config.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		file.deleteOnExit();
+		file.getParentFile().deleteOnExit();
+		file.getParentFile().getParentFile().deleteOnExit();
+		dir.deleteOnExit();
+		return dir.toURI().toURL();
+	}
+
+	/**
+	 * Class loader which counts lookups of provider-configuration files.
+	 */
+	private static final class CountingClassLoader extends ClassLoader {
+
+		final AtomicInteger lookups = new AtomicInteger();
+
+		CountingClassLoader() {
+			super(ServiceClassLoaderTest.class.getClassLoader());
+		}
+
+		@Override
+		public Enumeration<URL> getResources(String name) throws IOException {
+			if (name.startsWith("META-INF/services/")) lookups.incrementAndGet();
+			return super.getResources(name);
+		}
+	}
+
 }
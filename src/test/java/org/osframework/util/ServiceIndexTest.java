@@ -0,0 +1,142 @@
+/*
+ * File: ServiceIndexTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osframework.util.impl.DummyServiceDefaultImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>ServiceIndex</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class ServiceIndexTest {
+
+	@AfterMethod
+	public void clear() {
+		ServiceIndex.clear();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final ServiceIndex index = index(true, DummyService.class.getName(), "a.B", "c.D$E");
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		index.write(out);
+		final ServiceIndex read = ServiceIndex.read(new ByteArrayInputStream(out.toByteArray()));
+		assertTrue(read.isComplete());
+		assertEquals(read.getProviders(DummyService.class.getName()), Arrays.asList("a.B", "c.D$E"));
+		assertEquals(read.getProviders("no.Such"), Collections.emptyList());
+	}
+
+	@Test(expectedExceptions=IOException.class)
+	public void testTruncated() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		index(true, "a.B", "c.D").write(out);
+		ServiceIndex.read(new ByteArrayInputStream(out.toByteArray(), 0, out.size() - 1));
+	}
+
+	@Test
+	public void testCompleteIndexReplacesScan() throws IOException {
+		final File dir = indexDir(index(true, DummyService.class.getName(), IndexedImpl.class.getName()));
+		final URLClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() }, null);
+		final ServiceIndex index = ServiceIndex.forLoader(loader);
+		assertTrue(index.isComplete());
+		final ClassLoader parent = new URLClassLoader(new URL[] { dir.toURI().toURL() },
+		                                              ServiceIndexTest.class.getClassLoader());
+		// Configuration file on the parent class path is not scanned for a
+		// service type listed in a complete index
+		assertEquals(providers(ServiceClassLoader.load(DummyService.class, parent)),
+		             Collections.<Class<?>>singletonList(IndexedImpl.class));
+	}
+
+	@Test
+	public void testCompleteIndexScansUnlistedService() throws IOException {
+		final File dir = indexDir(index(true, "a.B", "c.D"));
+		final ClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() },
+		                                              ServiceIndexTest.class.getClassLoader());
+		assertTrue(ServiceIndex.forLoader(loader).isComplete());
+		assertEquals(providers(ServiceClassLoader.load(DummyService.class, loader)),
+		             Collections.<Class<?>>singletonList(DummyServiceDefaultImpl.class));
+		// Core date engine is declared only in a plain configuration file
+		assertEquals(ServiceClassLoader.load(DateEngine.class, loader).iterator().next(), JodaDateEngine.class);
+	}
+
+	@Test
+	public void testPartialIndexFallsBackToScan() throws IOException {
+		final File dir = indexDir(index(false, "a.B", "c.D"));
+		final ClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() },
+		                                              ServiceIndexTest.class.getClassLoader());
+		assertNull(ServiceIndex.forLoader(loader));
+		assertEquals(providers(ServiceClassLoader.load(DummyService.class, loader)),
+		             Collections.<Class<?>>singletonList(DummyServiceDefaultImpl.class));
+	}
+
+	public static class IndexedImpl extends DummyServiceDefaultImpl {}
+
+	private static ServiceIndex index(boolean complete, String service, String... providers) {
+		final Map<String, List<String>> map = new LinkedHashMap<String, List<String>>();
+		map.put(service, Arrays.asList(providers));
+		return new ServiceIndex(map, complete);
+	}
+
+	private static File indexDir(ServiceIndex index) throws IOException {
+		final File dir = File.createTempFile("index", "");
+		dir.delete();
+		final File file = new File(dir, ServiceIndex.RESOURCE);
+		file.getParentFile().mkdirs();
+		file.deleteOnExit();
+		file.getParentFile().deleteOnExit();
+		dir.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			index.write(out);
+		} finally {
+			out.close();
+		}
+		return dir;
+	}
+
+	private static List<Class<?>> providers(ServiceClassLoader<?> scl) {
+		final List<Class<?>> classes = new ArrayList<Class<?>>();
+		for (Class<?> cls : scl) {
+			classes.add(cls);
+		}
+		return classes;
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * File: SwarScannerTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>SwarScanner</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class SwarScannerTest {
+
+	@Test(dataProvider = "notationData")
+	public void testEveryDate(DateNotation notation, int format) {
+		final byte[] buf = new byte[notation.getLength()];
+		final Random random = new Random(format);
+		for (int epochDay = DateUtil.MIN_EPOCH_DAY; epochDay <= DateUtil.MAX_EPOCH_DAY; epochDay++) {
+			final int packedDate = DateUtil.epochDayToPacked(epochDay);
+			DateUtil.formatPackedDate(packedDate, notation, buf, 0);
+			final long expected = DateUtil.scanFields(buf, 0, buf.length, format, true);
+			assertEquals(DateUtil.toPacked(expected), packedDate);
+			assertEquals(SwarScanner.scan(buf, 0, buf.length, format), expected);
+			if (0 == epochDay % 97) {
+				assertEquals(SwarScanner.scan(new String(buf, StandardCharsets.US_ASCII), 0, buf.length, format), expected);
+				assertEquals(SwarScanner.scan(ByteBuffer.wrap(buf), 0, buf.length, format), expected);
+				assertEquals(SwarScanner.scan(ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN), 0, buf.length, format), expected);
+			}
+			// Corrupt one character; both scanners must agree on the result
+			final int index = random.nextInt(buf.length);
+			final byte saved = buf[index];
+			buf[index] = (byte)random.nextInt(256);
+			assertEquals(SwarScanner.scan(buf, 0, buf.length, format), DateUtil.scanFields(buf, 0, buf.length, format, true));
+			buf[index] = saved;
+		}
+	}
+
+	@Test(dataProvider = "invalidData")
+	public void testInvalid(String input, int format) {
+		assertEquals(SwarScanner.scan(input, 0, input.length(), format), DateUtil.SCAN_FAILED);
+		assertEquals(DateUtil.scanFields(input, 0, input.length(), format, true), DateUtil.SCAN_FAILED);
+	}
+
+	@Test
+	public void testUnsupported() {
+		assertEquals(SwarScanner.scan("12/25/2012", 0, 10, DateUtil.DATE_US), SwarScanner.UNSUPPORTED);
+		assertEquals(SwarScanner.scan("2012-12-251", 0, 11, DateUtil.DATE_ISO8601), SwarScanner.UNSUPPORTED);
+		assertEquals(SwarScanner.scan("2012122", 0, 7, DateUtil.DATE_BASIC), SwarScanner.UNSUPPORTED);
+		// Non-ASCII characters must not be folded into a digit
+		assertEquals(SwarScanner.scan("2012122\u0135", 0, 8, DateUtil.DATE_BASIC), SwarScanner.UNSUPPORTED);
+	}
+
+	@DataProvider
+	public Object[][] notationData() {
+		return new Object[][] {
+			{ DateNotation.BASIC, DateUtil.DATE_BASIC },
+			{ DateNotation.ISO8601, DateUtil.DATE_ISO8601 },
+			{ DateNotation.US_REVERSE, DateUtil.DATE_US_REVERSE }
+		};
+	}
+
+	@DataProvider
+	public Object[][] invalidData() {
+		return new Object[][] {
+			{ "20110229", DateUtil.DATE_BASIC },
+			{ "20121200", DateUtil.DATE_BASIC },
+			{ "20121301", DateUtil.DATE_BASIC },
+			{ "2012:225", DateUtil.DATE_BASIC },
+			{ "2012-12/25", DateUtil.DATE_ISO8601 },
+			{ "2012/12/25", DateUtil.DATE_ISO8601 },
+			{ "2012/04/31", DateUtil.DATE_US_REVERSE },
+			{ "2012/0a/01", DateUtil.DATE_US_REVERSE }
+		};
+	}
+
+}
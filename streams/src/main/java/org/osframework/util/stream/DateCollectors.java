@@ -0,0 +1,145 @@
+/*
+ * File: DateCollectors.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.stream;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+import org.apache.commons.lang.Validate;
+import org.osframework.util.AdaptiveDateParser;
+import org.osframework.util.DateColumn;
+import org.osframework.util.DateUtil;
+import org.osframework.util.ParsedDate;
+
+/**
+ * Collectors which parse a stream of dates. Each container of a collection,
+ * one per thread of a parallel stream, owns its own
+ * {@link AdaptiveDateParser} and a growable <code>int</code> buffer, so
+ * that parsing neither allocates per element nor contends between threads.
+ * Values which are not dates are passed to a reject consumer, which must be
+ * thread-safe if the stream is parallel.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateCollectors {
+
+	/**
+	 * Private constructor - this class cannot be instantiated.
+	 */
+	private DateCollectors() {}
+
+	/**
+	 * Get a collector which parses dates into a {@link DateColumn}.
+	 * 
+	 * @param rejects consumer of values which are not dates
+	 * @return date column collector
+	 * @throws IllegalArgumentException if rejects argument is null
+	 */
+	public static Collector<CharSequence, ?, DateColumn> toDateColumn(final Consumer<? super CharSequence> rejects) {
+		return collector(rejects, Collector.Characteristics.UNORDERED, acc -> {
+			final DateColumn.Builder builder = new DateColumn.Builder();
+			for (int i = 0; i < acc.size; i++) {
+				builder.addEpochDay(acc.values[i]);
+			}
+			return builder.build();
+		});
+	}
+
+	/**
+	 * Get a collector which parses dates into an array of epoch day values,
+	 * in encounter order.
+	 * 
+	 * @param rejects consumer of values which are not dates
+	 * @return epoch day array collector
+	 * @throws IllegalArgumentException if rejects argument is null
+	 */
+	public static Collector<CharSequence, ?, int[]> toEpochDays(final Consumer<? super CharSequence> rejects) {
+		return collector(rejects, null, acc -> Arrays.copyOf(acc.values, acc.size));
+	}
+
+	/**
+	 * Get a collector which parses dates into an array of packed date values
+	 * (<code>yyyyMMdd</code>), in encounter order.
+	 * 
+	 * @param rejects consumer of values which are not dates
+	 * @return packed date array collector
+	 * @throws IllegalArgumentException if rejects argument is null
+	 */
+	public static Collector<CharSequence, ?, int[]> toPackedDates(final Consumer<? super CharSequence> rejects) {
+		return collector(rejects, null, acc -> {
+			final int[] dates = new int[acc.size];
+			for (int i = 0; i < dates.length; i++) {
+				dates[i] = DateUtil.epochDayToPacked(acc.values[i]);
+			}
+			return dates;
+		});
+	}
+
+	private static <R> Collector<CharSequence, ?, R> collector(final Consumer<? super CharSequence> rejects,
+	                                                            final Collector.Characteristics characteristic,
+	                                                            final Function<Accumulator, R> finisher) {
+		Validate.notNull(rejects, "Rejects argument cannot be null");
+		final Collector.Characteristics[] characteristics = (null == characteristic)
+		                                                    ? new Collector.Characteristics[0]
+		                                                    : new Collector.Characteristics[] { characteristic };
+		return Collector.of(() -> new Accumulator(rejects),
+		                    Accumulator::accept,
+		                    Accumulator::combine,
+		                    finisher,
+		                    characteristics);
+	}
+
+	/**
+	 * Mutable result container: a parser and a buffer of epoch days.
+	 */
+	private static final class Accumulator {
+
+		private final Consumer<? super CharSequence> rejects;
+		private final AdaptiveDateParser parser = new AdaptiveDateParser();
+		private final ParsedDate parsed = new ParsedDate();
+		private int[] values = new int[64];
+		private int size;
+
+		Accumulator(final Consumer<? super CharSequence> rejects) {
+			this.rejects = rejects;
+		}
+
+		void accept(CharSequence s) {
+			final int epochDay = parser.parse(s, parsed) ? parsed.toEpochDay() : DateUtil.INVALID_DATE;
+			if (DateUtil.INVALID_DATE == epochDay) {
+				rejects.accept(s);
+				return;
+			}
+			if (size == values.length) values = Arrays.copyOf(values, size << 1);
+			values[size++] = epochDay;
+		}
+
+		Accumulator combine(Accumulator other) {
+			if (size + other.size > values.length) {
+				values = Arrays.copyOf(values, Math.max(size + other.size, size << 1));
+			}
+			System.arraycopy(other.values, 0, values, size, other.size);
+			size += other.size;
+			return this;
+		}
+
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * File: DateRejects.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.stream;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Thread-safe side channel for values which could not be parsed. A
+ * <code>DateRejects</code> counts every value it accepts and keeps the first
+ * few as samples, so that it may be shared by every thread of a parallel
+ * stream without contention.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateRejects implements Consumer<CharSequence> {
+
+	/**
+	 * Default number of rejected values kept as samples.
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 16;
+
+	private final LongAdder count;
+	private final AtomicInteger sampled;
+	private final AtomicReferenceArray<String> samples;
+
+	/**
+	 * Construct a <code>DateRejects</code> which keeps the default number of
+	 * samples.
+	 */
+	public DateRejects() {
+		this(DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 * Construct a <code>DateRejects</code> which keeps the specified number
+	 * of samples.
+	 * 
+	 * @param sampleSize maximum number of rejected values to keep
+	 * @throws IllegalArgumentException if sampleSize is negative
+	 */
+	public DateRejects(final int sampleSize) {
+		Validate.isTrue(sampleSize >= 0, "Sample size cannot be negative: ", sampleSize);
+		this.count = new LongAdder();
+		this.sampled = new AtomicInteger();
+		this.samples = new AtomicReferenceArray<String>(sampleSize);
+	}
+
+	/**
+	 * Record a rejected value.
+	 * 
+	 * @param value value which could not be parsed; may be <code>null</code>
+	 */
+	@Override
+	public void accept(CharSequence value) {
+		count.increment();
+		if (sampled.get() < samples.length()) {
+			final int i = sampled.getAndIncrement();
+			if (i < samples.length()) {
+				samples.set(i, String.valueOf(value));
+			}
+		}
+	}
+
+	/**
+	 * Get the number of rejected values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Get the sampled rejected values, in the order they were recorded. When
+	 * values are rejected concurrently the samples are the first to claim a
+	 * slot, which need not be the first in encounter order.
+	 * 
+	 * @return array of at most the sample size values
+	 */
+	public String[] getSamples() {
+		final int n = Math.min(sampled.get(), samples.length());
+		final String[] result = new String[n];
+		int size = 0;
+		for (int i = 0; i < n; i++) {
+			final String s = samples.get(i);
+			// Slot claimed, but not yet written
+			if (null != s) result[size++] = s;
+		}
+		return (size == n) ? result : Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Discard the count and every sample.
+	 */
+	public void reset() {
+		count.reset();
+		for (int i = 0; i < samples.length(); i++) {
+			samples.set(i, null);
+		}
+		sampled.set(0);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("org.osframework.util.stream.DateRejects[")
+		                              .append("count=").append(getCount())
+		                              .append("]");
+		return buf.toString();
+	}
+
+}
@@ -0,0 +1,247 @@
+/*
+ * File: DateStreams.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.stream;
+
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.lang.Validate;
+import org.osframework.util.AdaptiveDateParser;
+import org.osframework.util.DateUtil;
+
+/**
+ * Static utility methods which parse dates within streams. Unlike a call to
+ * <code>DateUtil.parseDate</code> inside <code>map</code>, these methods
+ * produce primitive values, reuse the parse state of the current thread and
+ * never throw on invalid input: every value which cannot be parsed is passed
+ * to a reject consumer, such as a {@link DateRejects}, and dropped from the
+ * stream. A reject consumer used with a parallel stream must be thread-safe.
+ * <p>Mapping functions return a sentinel value for invalid input, which the
+ * stream methods filter out: {@link DateUtil#INVALID_DATE} for dates and
+ * {@link DateUtil#INVALID_DATE_TIME} for date-times.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DateStreams {
+
+	/**
+	 * Private constructor - this class cannot be instantiated.
+	 */
+	private DateStreams() {}
+
+	/**
+	 * Get a function which parses a date to a packed date value
+	 * (<code>yyyyMMdd</code>). The function is thread-safe; each thread uses
+	 * its own {@link AdaptiveDateParser}.
+	 * 
+	 * @param rejects consumer of values which are not dates
+	 * @return packed date function, returning {@link DateUtil#INVALID_DATE}
+	 *         for a rejected value
+	 * @throws IllegalArgumentException if rejects argument is null
+	 */
+	public static ToIntFunction<CharSequence> packedDateFunction(final Consumer<? super CharSequence> rejects) {
+		return dateFunction(rejects, false);
+	}
+
+	/**
+	 * Get a function which parses a date to an epoch day value. The function
+	 * is thread-safe; each thread uses its own {@link AdaptiveDateParser}.
+	 * 
+	 * @param rejects consumer of values which are not dates
+	 * @return epoch day function, returning {@link DateUtil#INVALID_DATE}
+	 *         for a rejected value
+	 * @throws IllegalArgumentException if rejects argument is null
+	 */
+	public static ToIntFunction<CharSequence> epochDayFunction(final Consumer<? super CharSequence> rejects) {
+		return dateFunction(rejects, true);
+	}
+
+	/**
+	 * Get a function which parses an ISO-8601 date-time to milliseconds since
+	 * the epoch. The function is thread-safe.
+	 * 
+	 * @param rejects consumer of values which are not date-times
+	 * @return millisecond function, returning
+	 *         {@link DateUtil#INVALID_DATE_TIME} for a rejected value
+	 * @throws IllegalArgumentException if rejects argument is null
+	 * @see DateUtil#tryParseDateTimeToMillis(CharSequence)
+	 */
+	public static ToLongFunction<CharSequence> millisFunction(final Consumer<? super CharSequence> rejects) {
+		Validate.notNull(rejects, "Rejects argument cannot be null");
+		return s -> {
+			final long millis = DateUtil.tryParseDateTimeToMillis(s);
+			if (DateUtil.INVALID_DATE_TIME == millis) rejects.accept(s);
+			return millis;
+		};
+	}
+
+	/**
+	 * Parse a stream of dates to packed date values.
+	 * 
+	 * @param dates stream of dates
+	 * @param rejects consumer of values which are not dates
+	 * @return stream of packed date values, in the order of the dates
+	 * @throws IllegalArgumentException if any argument is null
+	 */
+	public static IntStream parseToPackedDates(Stream<? extends CharSequence> dates,
+	                                           Consumer<? super CharSequence> rejects) {
+		Validate.notNull(dates, "Stream argument cannot be null");
+		return dates.mapToInt(packedDateFunction(rejects)).filter(DateStreams::isValid);
+	}
+
+	/**
+	 * Parse a stream of dates to epoch day values.
+	 * 
+	 * @param dates stream of dates
+	 * @param rejects consumer of values which are not dates
+	 * @return stream of epoch day values, in the order of the dates
+	 * @throws IllegalArgumentException if any argument is null
+	 */
+	public static IntStream parseToEpochDays(Stream<? extends CharSequence> dates,
+	                                         Consumer<? super CharSequence> rejects) {
+		Validate.notNull(dates, "Stream argument cannot be null");
+		return dates.mapToInt(epochDayFunction(rejects)).filter(DateStreams::isValid);
+	}
+
+	/**
+	 * Parse a stream of ISO-8601 date-times to milliseconds since the epoch.
+	 * 
+	 * @param dateTimes stream of date-times
+	 * @param rejects consumer of values which are not date-times
+	 * @return stream of millisecond values, in the order of the date-times
+	 * @throws IllegalArgumentException if any argument is null
+	 */
+	public static LongStream parseToMillis(Stream<? extends CharSequence> dateTimes,
+	                                       Consumer<? super CharSequence> rejects) {
+		Validate.notNull(dateTimes, "Stream argument cannot be null");
+		return dateTimes.mapToLong(millisFunction(rejects)).filter(m -> DateUtil.INVALID_DATE_TIME != m);
+	}
+
+	/**
+	 * Create a stream of the packed date values of one field of the records
+	 * in an ASCII byte array. The stream is sequential; when made parallel
+	 * it splits the array on record boundaries.
+	 * 
+	 * @param bytes byte array of newline-terminated records
+	 * @param delimiter ASCII field delimiter
+	 * @param column zero-based index of date field
+	 * @param rejects consumer of fields which are missing or not dates
+	 * @return stream of packed date values, in record order
+	 * @throws IllegalArgumentException if bytes or rejects argument is null,
+	 *         delimiter is not ASCII or is a line terminator, or column is
+	 *         negative
+	 */
+	public static IntStream packedDates(byte[] bytes, char delimiter, int column,
+	                                    Consumer<? super CharSequence> rejects) {
+		Validate.notNull(bytes, "Buffer argument cannot be null");
+		return records(bytes, null, bytes.length, delimiter, column, false, rejects);
+	}
+
+	/**
+	 * Create a stream of the packed date values of one field of the records
+	 * in a character sequence. The stream is sequential; when made parallel
+	 * it splits the sequence on record boundaries.
+	 * 
+	 * @param chars character sequence of newline-terminated records
+	 * @param delimiter ASCII field delimiter
+	 * @param column zero-based index of date field
+	 * @param rejects consumer of fields which are missing or not dates
+	 * @return stream of packed date values, in record order
+	 * @throws IllegalArgumentException if chars or rejects argument is null,
+	 *         delimiter is not ASCII or is a line terminator, or column is
+	 *         negative
+	 */
+	public static IntStream packedDates(CharSequence chars, char delimiter, int column,
+	                                    Consumer<? super CharSequence> rejects) {
+		Validate.notNull(chars, "Buffer argument cannot be null");
+		return records(null, chars, chars.length(), delimiter, column, false, rejects);
+	}
+
+	/**
+	 * Create a stream of the epoch day values of one field of the records in
+	 * an ASCII byte array. The stream is sequential; when made parallel it
+	 * splits the array on record boundaries.
+	 * 
+	 * @param bytes byte array of newline-terminated records
+	 * @param delimiter ASCII field delimiter
+	 * @param column zero-based index of date field
+	 * @param rejects consumer of fields which are missing or not dates
+	 * @return stream of epoch day values, in record order
+	 * @throws IllegalArgumentException if bytes or rejects argument is null,
+	 *         delimiter is not ASCII or is a line terminator, or column is
+	 *         negative
+	 */
+	public static IntStream epochDays(byte[] bytes, char delimiter, int column,
+	                                  Consumer<? super CharSequence> rejects) {
+		Validate.notNull(bytes, "Buffer argument cannot be null");
+		return records(bytes, null, bytes.length, delimiter, column, true, rejects);
+	}
+
+	/**
+	 * Create a stream of the epoch day values of one field of the records in
+	 * a character sequence. The stream is sequential; when made parallel it
+	 * splits the sequence on record boundaries.
+	 * 
+	 * @param chars character sequence of newline-terminated records
+	 * @param delimiter ASCII field delimiter
+	 * @param column zero-based index of date field
+	 * @param rejects consumer of fields which are missing or not dates
+	 * @return stream of epoch day values, in record order
+	 * @throws IllegalArgumentException if chars or rejects argument is null,
+	 *         delimiter is not ASCII or is a line terminator, or column is
+	 *         negative
+	 */
+	public static IntStream epochDays(CharSequence chars, char delimiter, int column,
+	                                  Consumer<? super CharSequence> rejects) {
+		Validate.notNull(chars, "Buffer argument cannot be null");
+		return records(null, chars, chars.length(), delimiter, column, true, rejects);
+	}
+
+	private static IntStream records(byte[] bytes, CharSequence chars, int length,
+	                                 char delimiter, int column, boolean epochDays,
+	                                 Consumer<? super CharSequence> rejects) {
+		Validate.isTrue(delimiter < 0x80 && '\n' != delimiter && '\r' != delimiter,
+		                "Invalid delimiter: ", delimiter);
+		Validate.isTrue(column >= 0, "Column cannot be negative: ", column);
+		Validate.notNull(rejects, "Rejects argument cannot be null");
+		return StreamSupport.intStream(new RecordSpliterator(bytes, chars, 0, length, delimiter,
+		                                                     column, epochDays, rejects), false);
+	}
+
+	private static ToIntFunction<CharSequence> dateFunction(final Consumer<? super CharSequence> rejects,
+	                                                        final boolean epochDays) {
+		Validate.notNull(rejects, "Rejects argument cannot be null");
+		final ThreadLocal<AdaptiveDateParser> parsers = ThreadLocal.withInitial(AdaptiveDateParser::new);
+		return s -> {
+			final AdaptiveDateParser parser = parsers.get();
+			final int value = epochDays ? parser.parseToEpochDay(s) : parser.parseToInt(s);
+			if (DateUtil.INVALID_DATE == value) rejects.accept(s);
+			return value;
+		};
+	}
+
+	private static boolean isValid(int value) {
+		return DateUtil.INVALID_DATE != value;
+	}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * File: RecordSpliterator.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.stream;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import org.osframework.util.AdaptiveDateParser;
+import org.osframework.util.DateUtil;
+import org.osframework.util.ParsedDate;
+
+/**
+ * Spliterator of the dates in one field of the newline-terminated records of
+ * an ASCII byte array or a character sequence. Records are separated by
+ * <code>'\n'</code>, optionally preceded by <code>'\r'</code>; fields are
+ * separated by a single delimiter character, without quoting. Empty records
+ * are skipped, and a record whose field is missing or is not a date is
+ * passed to the reject consumer and skipped.
+ * <p>A spliterator splits at the first record boundary after the middle of
+ * its range, so that no record is ever divided between splits. Each split
+ * owns its own {@link AdaptiveDateParser}.</p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class RecordSpliterator implements Spliterator.OfInt {
+
+	/**
+	 * Smallest range, in characters, which will be split.
+	 */
+	static final int MIN_SPLIT = 4096;
+
+	private final byte[] bytes;
+	private final CharSequence chars;
+	private final char delimiter;
+	private final int column;
+	private final boolean epochDays;
+	private final Consumer<? super CharSequence> rejects;
+	private final AdaptiveDateParser parser;
+	private final ParsedDate parsed;
+	private final int end;
+	private int index;
+
+	/**
+	 * Construct a spliterator over a range of a byte array or a character
+	 * sequence; exactly one of the two must be given.
+	 */
+	RecordSpliterator(final byte[] bytes, final CharSequence chars, final int from, final int to,
+	                  final char delimiter, final int column, final boolean epochDays,
+	                  final Consumer<? super CharSequence> rejects) {
+		this.bytes = bytes;
+		this.chars = chars;
+		this.index = from;
+		this.end = to;
+		this.delimiter = delimiter;
+		this.column = column;
+		this.epochDays = epochDays;
+		this.rejects = rejects;
+		this.parser = new AdaptiveDateParser();
+		this.parsed = new ParsedDate();
+	}
+
+	@Override
+	public boolean tryAdvance(IntConsumer action) {
+		while (index < end) {
+			final int value = next();
+			if (DateUtil.INVALID_DATE != value) {
+				action.accept(value);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(IntConsumer action) {
+		while (index < end) {
+			final int value = next();
+			if (DateUtil.INVALID_DATE != value) action.accept(value);
+		}
+	}
+
+	@Override
+	public Spliterator.OfInt trySplit() {
+		if (end - index < MIN_SPLIT) return null;
+		final int mid = indexOf('\n', index + ((end - index) >>> 1), end) + 1;
+		if (mid >= end) return null;
+		final Spliterator.OfInt prefix = new RecordSpliterator(bytes, chars, index, mid, delimiter,
+		                                                       column, epochDays, rejects);
+		index = mid;
+		return prefix;
+	}
+
+	/**
+	 * Get an estimate of the number of remaining dates, which is the number
+	 * of remaining characters.
+	 */
+	@Override
+	public long estimateSize() {
+		return end - index;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL | IMMUTABLE;
+	}
+
+	/**
+	 * Consume the next record.
+	 * 
+	 * @return date of record, or {@link DateUtil#INVALID_DATE} if record is
+	 *         empty or has been rejected
+	 */
+	private int next() {
+		final int start = index;
+		int eol = indexOf('\n', start, end);
+		index = (eol < end) ? eol + 1 : end;
+		if (eol > start && '\r' == charAt(eol - 1)) eol--;
+		if (eol == start) return DateUtil.INVALID_DATE;
+
+		int from = start;
+		for (int c = 0; c < column; c++) {
+			final int d = indexOf(delimiter, from, eol);
+			if (d == eol) return reject(start, eol);
+			from = d + 1;
+		}
+		final int to = indexOf(delimiter, from, eol);
+		final boolean valid = (null != bytes)
+		                      ? parser.parse(bytes, from, to - from, parsed)
+		                      : parser.parse(chars, from, to - from, parsed);
+		if (valid) {
+			final int value = epochDays ? parsed.toEpochDay() : parsed.toPackedDate();
+			if (DateUtil.INVALID_DATE != value) return value;
+		}
+		return reject(from, to);
+	}
+
+	private int reject(int from, int to) {
+		rejects.accept((null != bytes)
+		               ? new String(bytes, from, to - from, StandardCharsets.ISO_8859_1)
+		               : chars.subSequence(from, to));
+		return DateUtil.INVALID_DATE;
+	}
+
+	/**
+	 * Find a character in a range.
+	 * 
+	 * @return index of character, or <code>to</code> if not found
+	 */
+	private int indexOf(char c, int from, int to) {
+		if (null != bytes) {
+			final byte b = (byte)c;
+			while (from < to && bytes[from] != b) from++;
+		} else {
+			while (from < to && chars.charAt(from) != c) from++;
+		}
+		return from;
+	}
+
+	private char charAt(int i) {
+		return (null != bytes) ? (char)(bytes[i] & 0xFF) : chars.charAt(i);
+	}
+
+}
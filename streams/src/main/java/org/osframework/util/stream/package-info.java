@@ -0,0 +1,28 @@
+/*
+ * File: package-info.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * <code>java.util.stream</code> integration of the date utilities. Dates are
+ * parsed to primitive <code>int</code> and <code>long</code> values by
+ * functions, collectors and record spliterators which keep one parser per
+ * thread or per split, and which pass values they cannot parse to a reject
+ * consumer such as {@link org.osframework.util.stream.DateRejects} rather
+ * than throwing an exception. This package requires Java 8.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+package org.osframework.util.stream;
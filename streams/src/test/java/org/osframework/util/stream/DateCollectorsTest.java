@@ -0,0 +1,73 @@
+/*
+ * File: DateCollectorsTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.stream;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.osframework.util.DateColumn;
+import org.osframework.util.DateNotation;
+import org.osframework.util.DateUtil;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateCollectors</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateCollectorsTest {
+
+	private static final DateNotation[] NOTATIONS = DateNotation.values();
+
+	@Test
+	public void testToPackedDates() {
+		final DateRejects rejects = new DateRejects();
+		final int[] dates = Stream.of("2012-12-25", "bad", "12/24/2012", "10000-01-01")
+		                          .collect(DateCollectors.toPackedDates(rejects));
+		assertEquals(dates, new int[] { 20121225, 20121224 });
+		assertEquals(rejects.getCount(), 2L);
+	}
+
+	@Test
+	public void testParallel() {
+		final Random random = new Random(42L);
+		final List<String> dates = new ArrayList<String>();
+		final int[] expected = new int[50000];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = random.nextInt(30000);
+			dates.add(DateUtil.formatPackedDate(DateUtil.epochDayToPacked(expected[i]), NOTATIONS[random.nextInt(4)],
+			                                    new StringBuilder()).toString());
+			if (0 == i % 100) dates.add("");
+		}
+		final DateRejects rejects = new DateRejects();
+		assertEquals(dates.parallelStream().collect(DateCollectors.toEpochDays(rejects)), expected);
+		assertEquals(rejects.getCount(), 500L);
+
+		final DateColumn column = dates.parallelStream().collect(DateCollectors.toDateColumn(rejects));
+		assertEquals(column.size(), expected.length);
+		Arrays.sort(expected);
+		assertEquals(column.getEpochDay(0), expected[0]);
+		assertEquals(column.getEpochDay(expected.length - 1), expected[expected.length - 1]);
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * File: DateRejectsTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.stream;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateRejects</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateRejectsTest {
+
+	@Test
+	public void testSampleBound() {
+		final DateRejects rejects = new DateRejects(3);
+		IntStream.range(0, 10000).parallel().forEach(i -> rejects.accept(Integer.toString(i)));
+		assertEquals(rejects.getCount(), 10000L);
+		assertEquals(rejects.getSamples().length, 3);
+		rejects.reset();
+		assertEquals(rejects.getCount(), 0L);
+		assertEquals(rejects.getSamples().length, 0);
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testNegativeSampleSize() {
+		new DateRejects(-1);
+	}
+
+}
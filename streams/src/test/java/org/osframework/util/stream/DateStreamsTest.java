@@ -0,0 +1,129 @@
+/*
+ * File: DateStreamsTest.java
+ * 
+ * Copyright 2012 OSFramework Project.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osframework.util.stream;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.osframework.util.DateNotation;
+import org.osframework.util.DateUtil;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for <code>DateStreams</code>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class DateStreamsTest {
+
+	private static final DateNotation[] NOTATIONS = DateNotation.values();
+
+	@Test
+	public void testParseToPackedDates() {
+		final DateRejects rejects = new DateRejects();
+		final int[] dates = DateStreams.parseToPackedDates(Stream.of("2012-12-25", "12/24/2012", "bad", "20121226", null),
+		                                                   rejects).toArray();
+		assertEquals(dates, new int[] { 20121225, 20121224, 20121226 });
+		assertEquals(rejects.getCount(), 2L);
+		assertEquals(rejects.getSamples(), new String[] { "bad", "null" });
+	}
+
+	@Test
+	public void testParseToEpochDays() {
+		final DateRejects rejects = new DateRejects();
+		final int[] days = DateStreams.parseToEpochDays(Stream.of("1970-01-01", "1970-01-32", "01/02/1970"), rejects)
+		                              .toArray();
+		assertEquals(days, new int[] { 0, 1 });
+		assertEquals(rejects.getCount(), 1L);
+	}
+
+	@Test
+	public void testParseToMillis() {
+		final DateRejects rejects = new DateRejects();
+		final long[] millis = DateStreams.parseToMillis(Stream.of("1970-01-01T00:00:01Z", "1970-01-01T25:00Z"), rejects)
+		                                 .toArray();
+		assertEquals(millis, new long[] { 1000L });
+		assertEquals(rejects.getSamples(), new String[] { "1970-01-01T25:00Z" });
+	}
+
+	@Test
+	public void testRecords() {
+		final String text = "id,date\n1,2012-12-25\r\n\n2,12/24/2012\n3\n4,2012-13-01,x\n5,20121226";
+		final DateRejects rejects = new DateRejects();
+		assertEquals(DateStreams.packedDates(text, ',', 1, rejects).toArray(),
+		             new int[] { 20121225, 20121224, 20121226 });
+		assertEquals(rejects.getSamples(), new String[] { "date", "3", "2012-13-01" });
+		rejects.reset();
+		assertEquals(DateStreams.epochDays(text.getBytes(StandardCharsets.US_ASCII), ',', 1, rejects).toArray(),
+		             new int[] { 15699, 15698, 15700 });
+		assertEquals(rejects.getCount(), 3L);
+	}
+
+	@Test(dataProvider = "parallelData")
+	public void testParallelRecords(int records, boolean bytes) {
+		final Random random = new Random(records);
+		final StringBuilder buf = new StringBuilder();
+		final int[] expected = new int[records];
+		int size = 0, invalid = 0;
+		for (int i = 0; i < records; i++) {
+			buf.append(i).append('|');
+			if (0 == random.nextInt(50)) {
+				buf.append("not a date");
+				invalid++;
+			} else {
+				final int date = DateUtil.epochDayToPacked(random.nextInt(30000));
+				DateUtil.formatPackedDate(date, NOTATIONS[random.nextInt(4)], buf);
+				expected[size++] = date;
+			}
+			buf.append('|').append(random.nextInt()).append('\n');
+		}
+		final DateRejects rejects = new DateRejects();
+		final int[] actual = (bytes
+		                      ? DateStreams.packedDates(buf.toString().getBytes(StandardCharsets.US_ASCII), '|', 1, rejects)
+		                      : DateStreams.packedDates(buf, '|', 1, rejects)).parallel().toArray();
+		assertEquals(actual, Arrays.copyOf(expected, size));
+		assertEquals(rejects.getCount(), (long)invalid);
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testInvalidDelimiter() {
+		DateStreams.packedDates("", '\n', 0, new DateRejects());
+	}
+
+	@Test(expectedExceptions=IllegalArgumentException.class)
+	public void testNullRejects() {
+		DateStreams.packedDateFunction(null);
+	}
+
+	@DataProvider
+	public Object[][] parallelData() {
+		return new Object[][] {
+			{ 0, true },
+			{ 1, false },
+			{ 1000, true },
+			{ 100000, true },
+			{ 100000, false }
+		};
+	}
+
+}